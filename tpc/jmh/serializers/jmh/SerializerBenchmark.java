@@ -0,0 +1,154 @@
+package serializers.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import serializers.BenchmarkRunner;
+import serializers.CheckingObjectSerializer;
+import serializers.ObjectSerializer;
+
+/**
+ * JMH counterpart of the hand-rolled loops in {@link BenchmarkRunner}: one
+ * benchmark per registered serializer (through the <code>name</code>
+ * parameter) for each of object creation, serialization, deserialization and
+ * deserialization followed by access to <code>media.uri</code>, to the media
+ * message, or to all fields.
+ *<p>
+ * Results are returned from each benchmark method (or sunk into a
+ * {@link Blackhole}) so JIT can not eliminate the work, each serializer is
+ * measured in its own forked JVMs, and every thread gets its own serializer
+ * instance since many of them keep per-instance buffers and sizing hints.
+ *<p>
+ * The parameter list has to be kept in sync with
+ * {@link BenchmarkRunner#SERIALIZERS}; a subset can be selected from the
+ * command line with <code>-p name=protobuf,thrift</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class SerializerBenchmark
+{
+  @Param({
+    "avro-generic",
+    "avro-specific",
+    "avro-generic (reuse)",
+    "avro-specific (reuse)",
+    "avro-pojo",
+    "activemq protobuf",
+    "protobuf",
+    "protobuf (reused buffers)",
+    "thrift",
+    "thrift-compact",
+    "thrift (memory)",
+    "thrift-compact (memory)",
+    "hessian",
+    "kryo",
+    "kryo-optimized",
+    "kryo-compressed",
+    "MessagePack (buggy)",
+    "manual",
+    "direct buffer",
+    "asm-generated",
+    "java",
+    "java (externalizable)",
+    "scala",
+    "json (jackson)",
+    "json/jackson-databind",
+    "JsonMarshaller",
+    "protostuff-json",
+    "protostuff-numeric-json",
+    "json/google-gson",
+    "stax/woodstox",
+    "stax/aalto",
+    "binaryxml/FI",
+    "xstream (stax with conv)",
+    "javolution xmlformat",
+    "sbinary"
+  })
+  public String name;
+
+  private ObjectSerializer<Object> serializer;
+  private CheckingObjectSerializer<Object> checkingSerializer;
+
+  private Object object;
+  private byte[] array;
+
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void setup() throws Exception
+  {
+    serializer = BenchmarkRunner.createSerializer(name);
+    if (serializer instanceof CheckingObjectSerializer) {
+      checkingSerializer = (CheckingObjectSerializer<Object>) serializer;
+    }
+    object = serializer.create();
+    array = serializer.serialize(object);
+  }
+
+  @Benchmark
+  public Object create() throws Exception
+  {
+    return serializer.create();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception
+  {
+    return serializer.serialize(object);
+  }
+
+  @Benchmark
+  public Object deserialize() throws Exception
+  {
+    return serializer.deserialize(array);
+  }
+
+  @Benchmark
+  public void deserializeAndCheckMediaUri(Blackhole bh) throws Exception
+  {
+    Object obj = serializer.deserialize(array);
+    if (checkingSerializer != null) {
+      checkingSerializer.checkMediaUri(obj);
+    }
+    bh.consume(obj);
+  }
+
+  @Benchmark
+  public void deserializeAndCheckMediaField(Blackhole bh) throws Exception
+  {
+    Object obj = serializer.deserialize(array);
+    if (checkingSerializer != null) {
+      checkingSerializer.checkMediaField(obj);
+    }
+    bh.consume(obj);
+  }
+
+  /**
+   * Same as {@link #deserialize} for serializers that can not check fields,
+   * like the "and Check All" column of {@link BenchmarkRunner}.
+   */
+  @Benchmark
+  public void deserializeAndCheckAllFields(Blackhole bh) throws Exception
+  {
+    Object obj = serializer.deserialize(array);
+    if (checkingSerializer != null) {
+      checkingSerializer.checkAllFields(obj);
+    }
+    bh.consume(obj);
+  }
+}
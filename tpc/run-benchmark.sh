@@ -4,4 +4,4 @@
 # of memory allocation
 
 java -Xmx16m -server \
--cp build:$(find lib -name "*.jar" | tr '\n' ':') serializers.BenchmarkRunner
+-cp build:$(find lib -name "*.jar" | tr '\n' ':') serializers.BenchmarkRunner "$@"
@@ -0,0 +1,11 @@
+#!/bin/sh
+
+# JMH version of run-benchmark.sh; build first with
+#   ant -Djmh.lib=<dir with JMH jars> jmh
+# Forked JVMs inherit the flags below. Any arguments are passed on to JMH,
+# for example "-p name=protobuf,thrift" to run just those serializers.
+
+JMH_LIB=${JMH_LIB:-jmh-lib}
+
+java -Xmx16m -server \
+-cp build-jmh:build:$(find lib $JMH_LIB -name "*.jar" | tr '\n' ':') org.openjdk.jmh.Main "$@"
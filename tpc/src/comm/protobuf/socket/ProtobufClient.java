@@ -1,16 +1,14 @@
 package comm.protobuf.socket;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 
-import serializers.ObjectSerializer;
 import serializers.ProtobufSerializer;
-import serializers.protobuf.MediaContentHolder.MediaContent;
 import serializers.protobuf.MediaContentHolder.MediaServer;
 import serializers.protobuf.MediaContentHolder.MediaServer.Stub;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcChannel;
@@ -20,19 +18,24 @@ import com.google.protobuf.Descriptors.MethodDescriptor;
 public class ProtobufClient
 {
   private Stub _newStub;
-  private final ObjectSerializer<MediaContent> _serializer = new ProtobufSerializer();
+  // creates requests, and frames them for all message types
+  private final ProtobufSerializer _serializer;
 
-  public ProtobufClient (Stub newStub)
+  public ProtobufClient (Stub newStub, ProtobufSerializer serializer)
   {
     _newStub = newStub;
+    _serializer = serializer;
   }
 
   public static void main (String... args)
       throws Exception
   {
     Socket socket = new Socket("127.0.0.1", 7777);
-    final DataInputStream dis = new DataInputStream(socket.getInputStream());
-    final DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+    // calls are written whole (method index, length and message), so there is nothing to wait for before sending
+    socket.setTcpNoDelay(true);
+    final CodedInputStream in = CodedInputStream.newInstance(socket.getInputStream());
+    final OutputStream out = socket.getOutputStream();
+    final ProtobufSerializer serializer = new ProtobufSerializer("protobuf", true);
     RpcChannel channel = new RpcChannel()
     {
       public void callMethod (MethodDescriptor method,
@@ -44,14 +47,8 @@ public class ProtobufClient
         try
         {
           //System.out.println("calling");
-          dos.writeInt(method.getIndex());
-          byte[] array = request.toByteArray();
-          dos.writeInt(array.length);
-          dos.write(array);
-          int size = dis.readInt();
-          array = new byte[size];
-          dis.readFully(array);
-          done.run(responsePrototype.newBuilderForType().mergeFrom(array).build());
+          serializer.writeFramed(method.getIndex(), request, out);
+          done.run(ProtobufSerializer.readFramed(in, responsePrototype.newBuilderForType()));
           //System.out.println("done");
         }
         catch (IOException e)
@@ -61,7 +58,7 @@ public class ProtobufClient
       }
     };
 
-    ProtobufClient pc = new ProtobufClient(MediaServer.newStub(channel));
+    ProtobufClient pc = new ProtobufClient(MediaServer.newStub(channel), serializer);
     pc.start();
   }
 
@@ -1,19 +1,17 @@
 package comm.protobuf.socket;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 
 import javax.net.ServerSocketFactory;
 
-import serializers.ObjectSerializer;
 import serializers.ProtobufSerializer;
 import serializers.protobuf.MediaContentHolder.MediaContent;
 import serializers.protobuf.MediaContentHolder.MediaServer;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
@@ -21,7 +19,7 @@ import com.google.protobuf.Descriptors.MethodDescriptor;
 
 public class ProtobufServer extends MediaServer
 {
-  private final ObjectSerializer<MediaContent> _serializer = new ProtobufSerializer();
+  private final ProtobufSerializer _serializer = new ProtobufSerializer("protobuf", true);
 
   @Override
   public void updateMedia (RpcController controller, MediaContent request, RpcCallback<MediaContent> done)
@@ -61,19 +59,19 @@ public class ProtobufServer extends MediaServer
     System.out.println("listening");
     final Socket socket = serverSocket.accept();
     System.out.println("accepted");
+    // responses are written whole, so there is nothing to wait for before sending
+    socket.setTcpNoDelay(true);
     try
     {
       RpcCallback<Message> done = new RpcCallback<Message>()
       {
-        DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+        OutputStream out = socket.getOutputStream();
 
         public void run (Message content)
         {
           try
           {
-              byte[] array = _serializer.serialize((MediaContent) content);
-            dos.writeInt(array.length);
-            dos.write(array);
+            _serializer.writeFramed(content, out);
           }
           catch (Exception e)
           {
@@ -81,14 +79,12 @@ public class ProtobufServer extends MediaServer
           }
         }
       };
-      DataInputStream dis = new DataInputStream(socket.getInputStream());
+      CodedInputStream in = CodedInputStream.newInstance(socket.getInputStream());
       while (true)
       {
-        int index = dis.readInt();
+        int index = ProtobufSerializer.readInt(in);
         MethodDescriptor method = getDescriptor().getMethods().get(index);
-        byte[] array = new byte[dis.readInt()];
-        dis.readFully(array);
-        Message request = getRequestPrototype(method).newBuilderForType().mergeFrom(array).build();
+        Message request = ProtobufSerializer.readFramed(in, getRequestPrototype(method).newBuilderForType());
         callMethod(method, null, request, done);
       }
     }
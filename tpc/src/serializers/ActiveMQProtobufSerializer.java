@@ -1,6 +1,8 @@
 package serializers;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import serializers.activemq.protobuf.MediaContentHolder.Image;
@@ -13,16 +15,32 @@ import serializers.activemq.protobuf.MediaContentHolder.Media.Player;
 import serializers.activemq.protobuf.MediaContentHolder.MediaContent.MediaContentBean;
 import serializers.activemq.protobuf.MediaContentHolder.MediaContent.MediaContentBuffer;
 
-public class ActiveMQProtobufSerializer implements CheckingObjectSerializer<MediaContent> {
+public class ActiveMQProtobufSerializer implements CheckingObjectSerializer<MediaContent>, OutputStreamSerializer<MediaContent>,
+                                                   ByteBufferDeserializer<MediaContent> {
 
     public MediaContent deserialize(byte[] array) throws Exception {
         return MediaContentBuffer.parseUnframed(array);
     }
 
+    public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+        if (buffer.hasArray()) {
+            return MediaContentBuffer.parseUnframed(new org.apache.activemq.util.buffer.Buffer(buffer.array(), buffer.arrayOffset() + offset, length));
+        }
+        // parsing is lazy and needs an array to keep; reading into beans instead would give
+        // objects that are not equal to the ones parsed from arrays
+        byte[] array = new byte[length];
+        ByteBufferInputStream.slice(buffer, offset, length).get(array);
+        return MediaContentBuffer.parseUnframed(array);
+    }
+
     public byte[] serialize(MediaContent content) throws IOException {
         return content.freeze().toUnframedByteArray();
     }
 
+    public void serialize(MediaContent content, OutputStream out) throws IOException {
+        content.freeze().writeUnframed(out);
+    }
+
     public MediaContent create() {
         MediaContentBean content = new MediaContentBean()
         .setMedia(
@@ -95,6 +113,13 @@ public class ActiveMQProtobufSerializer implements CheckingObjectSerializer<Medi
         assetEquals(media.getHeight(), 0);
     }
 
+    /**
+     * Decodes only the media message, and not the images.
+     */
+    public void checkMediaUri(MediaContent content) {
+        assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+    }
+
     static private void assetEquals(Object expected, Object actual) {
         if( !expected.equals(actual) ) {
             throw new RuntimeException(""+expected+"!="+actual);
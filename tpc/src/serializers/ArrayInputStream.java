@@ -0,0 +1,53 @@
+package serializers;
+
+import java.io.InputStream;
+
+/**
+ * Reads given range of a <code>byte[]</code>, like
+ * {@link java.io.ByteArrayInputStream}, except that the array can be
+ * replaced between messages, so that one stream (and whatever decoder
+ * reads from it) can be kept for all of them.
+ */
+public class ArrayInputStream extends InputStream
+{
+  private byte[] _array = new byte[0];
+  private int _position, _end;
+
+  public void setInput(byte[] array, int offset, int length)
+  {
+    _array = array;
+    _position = offset;
+    _end = offset + length;
+  }
+
+  public int read()
+  {
+    return (_position < _end) ? (_array[_position++] & 0xFF) : -1;
+  }
+
+  public int read(byte[] b, int off, int len)
+  {
+    if (len == 0) {
+      return 0;
+    }
+    int count = Math.min(len, _end - _position);
+    if (count <= 0) {
+      return -1;
+    }
+    System.arraycopy(_array, _position, b, off, count);
+    _position += count;
+    return count;
+  }
+
+  public long skip(long n)
+  {
+    int count = (int) Math.min(Math.max(n, 0L), _end - _position);
+    _position += count;
+    return count;
+  }
+
+  public int available()
+  {
+    return _end - _position;
+  }
+}
@@ -0,0 +1,159 @@
+package serializers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import serializers.StreamingObjectSerializer.RecordReader;
+import serializers.StreamingObjectSerializer.RecordWriter;
+import serializers.columnar.Column;
+import serializers.columnar.ColumnarBatchCodec;
+import serializers.java.MediaContent;
+import serializers.payload.PayloadConverter;
+import serializers.payload.PayloadConverters;
+import serializers.payload.PayloadGenerator;
+
+/**
+ * Compares writing a batch of records with {@link ColumnarBatchCodec} with
+ * writing the same records one by one with each (row) serializer, each
+ * record framed by its length (see {@link LengthPrefixedStreams}), and
+ * reports bytes per record and records per second for writing, reading
+ * back, and scanning just the media uris. Row formats have to decode whole
+ * records to get at one field, so their scan rate is their read rate; the
+ * columnar batch only decodes the one column.
+ *<p>
+ * Records are all distinct documents from {@link PayloadGenerator}, since
+ * repeating a small set of them would flatter dictionary encoding. The
+ * batch is kept in memory, so has to fit in the heap along with the
+ * records. Rates are the best of {@link #PASSES} passes, after one to warm
+ * up and to check that what is read back is what was written.
+ */
+class BatchBenchmark
+{
+  final static int PASSES = 5;
+
+  private final List<MediaContent> _records;
+
+  BatchBenchmark(int records)
+  {
+    _records = new ArrayList<MediaContent>(records);
+    for (int i = 0; i < records; ++i) {
+      _records.add(new PayloadGenerator(PayloadGenerator.DEFAULT_SEED + i, 2, 2, 16, 1000000L).generate());
+    }
+  }
+
+  void printHeader()
+  {
+    System.out.printf("%-24s, %-16s, %12s, %12s, %12s, %12s\n",
+                      " ",
+                      "Layout",
+                      "Bytes/rec",
+                      "Write rec/s",
+                      "Read rec/s",
+                      "Uri scan/s");
+  }
+
+  void runColumnar() throws Exception
+  {
+    ColumnarBatchCodec codec = new ColumnarBatchCodec();
+    int count = _records.size();
+    double[] best = null;
+    for (int pass = 0; pass <= PASSES; ++pass)
+    {
+      long start = System.nanoTime();
+      byte[] batch = codec.encode(_records);
+      long writeTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      List<MediaContent> records = codec.decode(batch);
+      long readTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      String[] uris = codec.readStrings(batch, Column.MEDIA_URI);
+      long scanTime = System.nanoTime() - start;
+
+      if (pass == 0) {
+        for (int i = 0; i < count; ++i) {
+          if (!records.get(i).equals(_records.get(i)) || !uris[i].equals(_records.get(i).getMedia().getUri())) {
+            throw new Exception("Columnar batch read back record #"+i+" different from the one written");
+          }
+        }
+      } else {
+        best = best(best, writeTime, readTime, scanTime, batch.length);
+      }
+    }
+    print("columnar", "batch", best);
+  }
+
+  @SuppressWarnings("unchecked")
+  void run(ObjectSerializer<Object> serializer) throws Exception
+  {
+    PayloadConverter<Object> converter = (PayloadConverter<Object>) PayloadConverters.converterFor(serializer.create());
+    if (converter == null) {
+      System.err.println("WARN: no payload converter for '"+serializer.getName()+"', skipping");
+      return;
+    }
+    int count = _records.size();
+    Object[] records = new Object[count];
+    for (int i = 0; i < count; ++i) {
+      records[i] = converter.convert(_records.get(i));
+    }
+    boolean verify = ScalingBenchmark.hasEquals(records[0]);
+
+    GrowableByteArrayOutputStream out = new GrowableByteArrayOutputStream(64 * 1024);
+    ArrayInputStream in = new ArrayInputStream();
+    double[] best = null;
+    for (int pass = 0; pass <= PASSES; ++pass)
+    {
+      out.reset();
+      long start = System.nanoTime();
+      RecordWriter<Object> writer = LengthPrefixedStreams.newWriter(serializer, out);
+      for (int i = 0; i < count; ++i)
+        writer.write(records[i]);
+      writer.flush();
+      long writeTime = System.nanoTime() - start;
+
+      in.setInput(out.getBuffer(), 0, out.size());
+      start = System.nanoTime();
+      RecordReader<Object> reader = LengthPrefixedStreams.newReader(serializer, in);
+      for (int i = 0; i < count; ++i)
+      {
+        Object obj = reader.read();
+        if (pass == 0 && verify && !obj.equals(records[i])) {
+          throw new Exception("Serializer '"+serializer.getName()+"' read back record #"+i+" different from the one written");
+        }
+      }
+      long readTime = System.nanoTime() - start;
+
+      if (pass > 0) {
+        best = best(best, writeTime, readTime, readTime, out.size());
+      }
+    }
+    print(serializer.getName(), "length-prefixed", best);
+  }
+
+  /**
+   * @return Shortest write, read and scan times so far, and size
+   */
+  private static double[] best(double[] best, long writeTime, long readTime, long scanTime, int bytes)
+  {
+    if (best == null) {
+      return new double[] { writeTime, readTime, scanTime, bytes };
+    }
+    best[0] = Math.min(best[0], writeTime);
+    best[1] = Math.min(best[1], readTime);
+    best[2] = Math.min(best[2], scanTime);
+    return best;
+  }
+
+  private void print(String name, String layout, double[] result)
+  {
+    int count = _records.size();
+    System.out.printf("%-24s, %-16s, %12.1f, %12.0f, %12.0f, %12.0f\n",
+                      name,
+                      layout,
+                      result[3] / count,
+                      count / (result[0] / 1000000000.0),
+                      count / (result[1] / 1000000000.0),
+                      count / (result[2] / 1000000000.0));
+  }
+}
@@ -0,0 +1,122 @@
+package serializers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Map;
+
+import serializers.BenchmarkRunner.measurements;
+
+/**
+ * Measurements of a single serializer from {@link BenchmarkRunner}: values of
+ * the main table plus latency histograms. Can be written to and read back from
+ * a file, which is how results get from a forked child JVM to the parent.
+ *<p>
+ * File format is tab-separated lines: <code>name</code> followed by the
+ * serializer name, <code>value</code> followed by measurement name and value,
+ * <code>trials</code> followed by measurement name and space-separated
+ * results of individual trials, and <code>latency</code> followed by
+ * measurement name and {@link LatencyHistogram#encode encoded histogram}.
+ */
+class BenchmarkResult
+{
+  final String name;
+  final EnumMap<measurements, Double> values = new EnumMap<measurements, Double>(measurements.class);
+  final EnumMap<measurements, LatencyHistogram> latencies = new EnumMap<measurements, LatencyHistogram>(measurements.class);
+  /**
+   * Results of individual trials, for measurements that take the best of
+   * several; used to tell real differences from noise.
+   */
+  final EnumMap<measurements, double[]> trials = new EnumMap<measurements, double[]>(measurements.class);
+
+  BenchmarkResult(String name)
+  {
+    this.name = name;
+  }
+
+  double get(measurements m)
+  {
+    Double value = values.get(m);
+    return (value == null) ? Double.NaN : value;
+  }
+
+  /**
+   * Creates and registers array for results of individual trials of given
+   * measurement.
+   */
+  double[] newTrials(measurements m, int count)
+  {
+    double[] results = new double[count];
+    trials.put(m, results);
+    return results;
+  }
+
+  void write(File file) throws IOException
+  {
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      out.println("name\t"+name);
+      for (Map.Entry<measurements, Double> entry : values.entrySet())
+        out.println("value\t"+entry.getKey().name()+"\t"+entry.getValue());
+      for (Map.Entry<measurements, double[]> entry : trials.entrySet())
+      {
+        StringBuilder sb = new StringBuilder();
+        for (double d : entry.getValue())
+          sb.append(sb.length() == 0 ? "" : " ").append(d);
+        out.println("trials\t"+entry.getKey().name()+"\t"+sb);
+      }
+      for (Map.Entry<measurements, LatencyHistogram> entry : latencies.entrySet())
+        out.println("latency\t"+entry.getKey().name()+"\t"+entry.getValue().encode());
+      if (out.checkError()) {
+        throw new IOException("Failed to write results to "+file);
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  static BenchmarkResult read(File file) throws IOException
+  {
+    BenchmarkResult result = null;
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try
+    {
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+        String[] parts = line.split("\t");
+        if (parts[0].equals("name")) {
+          result = new BenchmarkResult(parts[1]);
+        } else if (result == null) {
+          throw new IOException("Results in "+file+" do not start with a name");
+        } else if (parts[0].equals("value")) {
+          result.values.put(measurements.valueOf(parts[1]), Double.valueOf(parts[2]));
+        } else if (parts[0].equals("trials")) {
+          String[] values = parts[2].split(" ");
+          double[] results = result.newTrials(measurements.valueOf(parts[1]), values.length);
+          for (int i = 0; i < values.length; ++i)
+            results[i] = Double.parseDouble(values[i]);
+        } else if (parts[0].equals("latency")) {
+          result.latencies.put(measurements.valueOf(parts[1]), LatencyHistogram.decode(parts[2]));
+        } else {
+          throw new IOException("Unrecognized line in "+file+": '"+line+"'");
+        }
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    if (result == null) {
+      throw new IOException("No results in "+file);
+    }
+    return result;
+  }
+}
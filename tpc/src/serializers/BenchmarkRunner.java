@@ -1,18 +1,32 @@
 package serializers;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import org.apache.avro.generic.GenericRecord;
+
+import serializers.asm.AsmSerializer;
 import serializers.avro.AvroGenericSerializer;
+import serializers.avro.AvroPojoSerializer;
 import serializers.avro.specific.AvroSpecificSerializer;
+import serializers.compression.Codec;
+import serializers.compression.Codecs;
+import serializers.compression.CompressedSerializer;
+import serializers.java.MediaContent;
+import serializers.kryo.KryoCompressedSerializer;
 import serializers.kryo.KryoOptimizedSerializer;
 import serializers.kryo.KryoSerializer;
 
@@ -22,76 +36,496 @@ public class BenchmarkRunner
   public final static int TRIALS = 20;
 
   /**
-   * Number of milliseconds to warm up for each operation type for each serializer. Let's
-   * start with 3 seconds.
+   * Number of milliseconds to warm up for each operation type for each serializer, for
+   * modes that use fixed warm-up time; main measurements use {@link WarmupController}
+   * instead.
    */
   final static long WARMUP_MSECS = 3000;
 
-  @SuppressWarnings("unchecked")
-  private Set<ObjectSerializer> _serializers = new LinkedHashSet<ObjectSerializer>();
+  /**
+   * Where serialized data starts in the direct buffer that deserialization
+   * from buffers reads, so that serializers can't assume it is at 0.
+   */
+  final static int BUFFER_OFFSET = 16;
 
-  public static void main(String... args) throws Exception
-  {
-    BenchmarkRunner runner = new BenchmarkRunner();
+  private final WarmupController _warmup = new WarmupController();
+  private final JitMonitor _jit = new JitMonitor();
+
+  private Set<ObjectSerializer<Object>> _serializers = new LinkedHashSet<ObjectSerializer<Object>>();
+
+  /**
+   * Factories for all serializers to benchmark, keyed by serializer name, in the
+   * order results are reported.
+   */
+  final static Map<String, SerializerFactory<?>> SERIALIZERS = new LinkedHashMap<String, SerializerFactory<?>>();
 
+  static
+  {
     // binary codecs first
-    runner.addObjectSerializer(new AvroGenericSerializer());
-    runner.addObjectSerializer(new AvroSpecificSerializer());
-    runner.addObjectSerializer(new ActiveMQProtobufSerializer());
-    runner.addObjectSerializer(new ProtobufSerializer());
-    runner.addObjectSerializer(new ThriftSerializer());
-    runner.addObjectSerializer(new HessianSerializer());
-    runner.addObjectSerializer(new KryoSerializer());
-    runner.addObjectSerializer(new KryoOptimizedSerializer());
-    runner.addObjectSerializer(new MessagePackSerializer());
+    register("avro-generic", new SerializerFactory<GenericRecord>() { public AvroGenericSerializer create() { return new AvroGenericSerializer(); } });
+    register("avro-specific", new SerializerFactory<serializers.avro.specific.MediaContent>() {
+      public AvroSpecificSerializer create()
+      {
+        return new AvroSpecificSerializer();
+      }
+    });
+    register("avro-generic (reuse)", new SerializerFactory<GenericRecord>() {
+      public AvroGenericSerializer create()
+      {
+        return new AvroGenericSerializer("avro-generic (reuse)", true);
+      }
+    });
+    register("avro-specific (reuse)", new SerializerFactory<serializers.avro.specific.MediaContent>() {
+      public AvroSpecificSerializer create()
+      {
+        return new AvroSpecificSerializer("avro-specific (reuse)", true);
+      }
+    });
+    register("avro-pojo", new SerializerFactory<MediaContent>() { public AvroPojoSerializer create() { return new AvroPojoSerializer(); } });
+    register("activemq protobuf", new SerializerFactory<serializers.activemq.protobuf.MediaContentHolder.MediaContent>() {
+      public ActiveMQProtobufSerializer create()
+      {
+        return new ActiveMQProtobufSerializer();
+      }
+    });
+    register("protobuf", new SerializerFactory<serializers.protobuf.MediaContentHolder.MediaContent>() {
+      public ProtobufSerializer create()
+      {
+        return new ProtobufSerializer();
+      }
+    });
+    register("protobuf (reused buffers)", new SerializerFactory<serializers.protobuf.MediaContentHolder.MediaContent>() {
+      public ProtobufSerializer create()
+      {
+        return new ProtobufSerializer("protobuf (reused buffers)", true);
+      }
+    });
+    register("thrift", new SerializerFactory<serializers.thrift.MediaContent>() { public ThriftSerializer create() { return new ThriftSerializer(); } });
+    register("thrift-compact", new SerializerFactory<serializers.thrift.MediaContent>() {
+      public ThriftSerializer create()
+      {
+        return new ThriftSerializer("thrift-compact", new ThriftCompactProtocol.Factory(), false);
+      }
+    });
+    register("thrift (memory)", new SerializerFactory<serializers.thrift.MediaContent>() {
+      public ThriftSerializer create()
+      {
+        return new ThriftSerializer("thrift (memory)", new com.facebook.thrift.protocol.TBinaryProtocol.Factory(), true);
+      }
+    });
+    register("thrift-compact (memory)", new SerializerFactory<serializers.thrift.MediaContent>() {
+      public ThriftSerializer create()
+      {
+        return new ThriftSerializer("thrift-compact (memory)", new ThriftCompactProtocol.Factory(), true);
+      }
+    });
+    register("hessian", new SerializerFactory<MediaContent>() { public HessianSerializer create() { return new HessianSerializer(); } });
+    register("kryo", new SerializerFactory<serializers.kryo.MediaContent>() { public KryoSerializer create() { return new KryoSerializer(); } });
+    register("kryo-optimized", new SerializerFactory<serializers.kryo.MediaContent>() {
+      public KryoOptimizedSerializer create()
+      {
+        return new KryoOptimizedSerializer();
+      }
+    });
+    register("kryo-compressed", new SerializerFactory<serializers.kryo.MediaContent>() {
+      public KryoCompressedSerializer create()
+      {
+        return new KryoCompressedSerializer();
+      }
+    });
+    register("MessagePack (buggy)", new SerializerFactory<MediaContent>() { public MessagePackSerializer create() { return new MessagePackSerializer(); } });
+    // hand-written for this schema, as a baseline for the others
+    register("manual", new SerializerFactory<MediaContent>() { public ManualSerializer create() { return new ManualSerializer(); } });
+    register("direct buffer", new SerializerFactory<MediaContent>() { public DirectBufferSerializer create() { return new DirectBufferSerializer(); } });
+    register("asm-generated", new SerializerFactory<MediaContent>() { public AsmSerializer create() throws Exception { return new AsmSerializer(); } });
 
     // then language default serializers
-    runner.addObjectSerializer(new JavaSerializer());
+    register("java", new SerializerFactory<MediaContent>() { public JavaSerializer create() { return new JavaSerializer(); } });
 
-    runner.addObjectSerializer(new JavaExtSerializer());
-    runner.addObjectSerializer(new ScalaSerializer());
+    register("java (externalizable)", new SerializerFactory<serializers.extjava.MediaContent>() {
+      public JavaExtSerializer create()
+      {
+        return new JavaExtSerializer();
+      }
+    });
+    register("scala", new SerializerFactory<serializers.scala.MediaContent>() { public ScalaSerializer create() { return new ScalaSerializer(); } });
 
     // then Json
-    runner.addObjectSerializer(new JsonSerializer());
-    runner.addObjectSerializer(new JsonDataBindingSerializer());
+    register("json (jackson)", new SerializerFactory<MediaContent>() { public JsonSerializer create() { return new JsonSerializer(); } });
+    register("json/jackson-databind", new SerializerFactory<MediaContent>() {
+      public JsonDataBindingSerializer create()
+      {
+        return new JsonDataBindingSerializer();
+      }
+    });
 
-    runner.addObjectSerializer(new JsonMarshallerSerializer());
+    register("JsonMarshaller", new SerializerFactory<MediaContent>() { public JsonMarshallerSerializer create() { return new JsonMarshallerSerializer(); } });
 
-    runner.addObjectSerializer(new ProtostuffJsonSerializer());
-    runner.addObjectSerializer(new ProtostuffNumericJsonSerializer());
+    register("protostuff-json", new SerializerFactory<serializers.protobuf.MediaContentHolder.MediaContent>() {
+      public ProtostuffJsonSerializer create()
+      {
+        return new ProtostuffJsonSerializer();
+      }
+    });
+    register("protostuff-numeric-json", new SerializerFactory<serializers.protobuf.MediaContentHolder.MediaContent>() {
+      public ProtostuffNumericJsonSerializer create()
+      {
+        return new ProtostuffNumericJsonSerializer();
+      }
+    });
     // this is pretty slow; so slow that it's almost not worth keeping but:
-    runner.addObjectSerializer(new GsonSerializer());
+    register("json/google-gson", new SerializerFactory<MediaContent>() { public GsonSerializer create() { return new GsonSerializer(); } });
 
     // then xml via stax, textual and binary
-    runner.addObjectSerializer(new StaxSerializer("stax/woodstox",
-                                                  new com.ctc.wstx.stax.WstxInputFactory(),
-                                                  new com.ctc.wstx.stax.WstxOutputFactory()));
-    runner.addObjectSerializer(new StaxSerializer("stax/aalto",
-                                                  new com.fasterxml.aalto.stax.InputFactoryImpl(),
-                                                  new com.fasterxml.aalto.stax.OutputFactoryImpl()));
+    register("stax/woodstox", new SerializerFactory<MediaContent>() {
+      public StaxSerializer create()
+      {
+        return new StaxSerializer("stax/woodstox",
+                                  new com.ctc.wstx.stax.WstxInputFactory(),
+                                  new com.ctc.wstx.stax.WstxOutputFactory());
+      }
+    });
+    register("stax/aalto", new SerializerFactory<MediaContent>() {
+      public StaxSerializer create()
+      {
+        return new StaxSerializer("stax/aalto",
+                                  new com.fasterxml.aalto.stax.InputFactoryImpl(),
+                                  new com.fasterxml.aalto.stax.OutputFactoryImpl());
+      }
+    });
 
-    runner.addObjectSerializer(new StaxSerializer("binaryxml/FI",
-                                                  new com.sun.xml.fastinfoset.stax.factory.StAXInputFactory(),
-                                                  new com.sun.xml.fastinfoset.stax.factory.StAXOutputFactory()));
+    register("binaryxml/FI", new SerializerFactory<MediaContent>() {
+      public StaxSerializer create()
+      {
+        return new StaxSerializer("binaryxml/FI",
+                                  new com.sun.xml.fastinfoset.stax.factory.StAXInputFactory(),
+                                  new com.sun.xml.fastinfoset.stax.factory.StAXOutputFactory());
+      }
+    });
 
     // No point in running all 4 variants: let's just use fastest one:
-    //runner.addObjectSerializer(new XStreamSerializer("xstream (xpp)", false, null, null));
-    //runner.addObjectSerializer(new XStreamSerializer("xstream (xpp with conv)", true, null, null));
-    //runner.addObjectSerializer(new XStreamSerializer("xstream (stax)", false, new com.ctc.wstx.stax.WstxInputFactory(), new com.ctc.wstx.stax.WstxOutputFactory()));
-    runner.addObjectSerializer(new XStreamSerializer("xstream (stax with conv)",
-                                                     true,
-                                                     new com.ctc.wstx.stax.WstxInputFactory(),
-                                                     new com.ctc.wstx.stax.WstxOutputFactory()));
-    runner.addObjectSerializer(new JavolutionXMLFormatSerializer());
+    //register("xstream (xpp)", ... new XStreamSerializer("xstream (xpp)", false, null, null));
+    //register("xstream (xpp with conv)", ... new XStreamSerializer("xstream (xpp with conv)", true, null, null));
+    //register("xstream (stax)", ... new XStreamSerializer("xstream (stax)", false, new com.ctc.wstx.stax.WstxInputFactory(), new com.ctc.wstx.stax.WstxOutputFactory()));
+    register("xstream (stax with conv)", new SerializerFactory<MediaContent>() {
+      public XStreamSerializer create() throws Exception
+      {
+        return new XStreamSerializer("xstream (stax with conv)",
+                                     true,
+                                     new com.ctc.wstx.stax.WstxInputFactory(),
+                                     new com.ctc.wstx.stax.WstxOutputFactory());
+      }
+    });
+    register("javolution xmlformat", new SerializerFactory<MediaContent>() {
+      public JavolutionXMLFormatSerializer create()
+      {
+        return new JavolutionXMLFormatSerializer();
+      }
+    });
 
-    runner.addObjectSerializer(new SbinarySerializer());
+    register("sbinary", new SerializerFactory<serializers.scala.MediaContent>() { public SbinarySerializer create() { return new SbinarySerializer(); } });
+  }
 
-    System.out.println("Starting");
-    runner.start();
+  private static void register(String name, SerializerFactory<?> factory)
+  {
+    SERIALIZERS.put(name, factory);
+  }
+
+  /**
+   * @param name Name of a registered serializer, optionally followed by '+'
+   *   and name of one of {@link Codecs} (like "protobuf+lzf") to compress its
+   *   output
+   */
+  static SerializerFactory<?> factoryFor(String name)
+  {
+    int plus = name.lastIndexOf('+');
+    if (plus > 0 && !SERIALIZERS.containsKey(name)) {
+      SerializerFactory<?> base = factoryFor(name.substring(0, plus));
+      String codecName = name.substring(plus + 1);
+      if (Codecs.forName(codecName) == null) {
+        throw new IllegalArgumentException("Unknown codec '"+codecName+"'; known ones: "+codecNames());
+      }
+      return compressed(base, codecName);
+    }
+    SerializerFactory<?> factory = SERIALIZERS.get(name);
+    if (factory == null) {
+      throw new IllegalArgumentException("Unknown serializer '"+name+"'; known ones: "+SERIALIZERS.keySet());
+    }
+    return factory;
   }
 
+  private static <T> SerializerFactory<T> compressed(final SerializerFactory<T> base, final String codecName)
+  {
+    return new SerializerFactory<T>() {
+      public ObjectSerializer<T> create() throws Exception
+      {
+        return CompressedSerializer.wrap(base.create(), Codecs.forName(codecName));
+      }
+    };
+  }
+
+  private static List<String> codecNames()
+  {
+    List<String> names = new ArrayList<String>();
+    for (Codec codec : Codecs.all())
+      names.add(codec.getName());
+    return names;
+  }
+
+  /**
+   * Constructs a new instance of the named serializer; only that serializer's
+   * classes get loaded and initialized.
+   */
   @SuppressWarnings("unchecked")
-  private void addObjectSerializer(ObjectSerializer serializer)
+  public static ObjectSerializer<Object> createSerializer(String name) throws Exception
+  {
+    ObjectSerializer<Object> serializer = (ObjectSerializer<Object>) factoryFor(name).create();
+    if (!name.equals(serializer.getName())) {
+      throw new IllegalStateException("Serializer registered as '"+name+"' calls itself '"+serializer.getName()+"'");
+    }
+    return serializer;
+  }
+
+  /**
+   * Arguments are names of serializers to run (default: all of them), each
+   * optionally with a codec to compress its output with (like
+   * <code>json (jackson)+deflate-6</code>; see {@link Codecs}), and
+   * options:
+   *<ul>
+   * <li><code>-threads=N</code>: instead of the single-threaded measurements,
+   *   measure throughput with 1, 2, 4 ... N threads, each with its own
+   *   serializer instance
+   *  </li>
+   * <li><code>-shared</code>: with <code>-threads</code>, compare each thread
+   *   having its own instance with all threads sharing one serializer that
+   *   creates instances per call, keeps them in thread-locals or pools them
+   *   (see {@link ConcurrentObjectSerializer})
+   *  </li>
+   * <li><code>-gc=SECONDS</code>: instead of the single-threaded measurements,
+   *   round-trip objects through each serializer for given time without forcing
+   *   any GCs, and report resulting garbage collection activity
+   *  </li>
+   * <li><code>-scaling</code>: instead of the single-threaded measurements,
+   *   report size and throughput for generated documents of varying shape
+   *   (see {@link ScalingBenchmark})
+   *  </li>
+   * <li><code>-stream=N</code>: instead of the single-threaded measurements,
+   *   write N objects to one stream and read them back (see
+   *   {@link StreamingBenchmark}); <code>-stream-sink=file</code> (default) or
+   *   <code>-stream-sink=memory</code> selects where the stream goes
+   *  </li>
+   * <li><code>-batch=N</code>: instead of the single-threaded measurements,
+   *   write N distinct objects as one columnar batch and one by one with
+   *   each serializer, and read them back, whole and just their media uris
+   *   (see {@link BatchBenchmark})
+   *  </li>
+   * <li><code>-compression</code>: instead of the single-threaded
+   *   measurements, report CPU time and bytes saved by compressing each
+   *   serializer's output with each codec (see {@link CompressionBenchmark})
+   *  </li>
+   * <li><code>-fork</code>: run the single-threaded measurements for each
+   *   serializer in a new JVM, with the same JVM flags and classpath, so that
+   *   serializers run earlier do not affect JIT decisions for later ones
+   *  </li>
+   * <li><code>-jit-log</code>: with <code>-fork</code>, also run child JVMs
+   *   with <code>-XX:+PrintCompilation</code> and summarize what got compiled
+   *   (see {@link CompilationLog})
+   *  </li>
+   * <li><code>-json=FILE</code>, <code>-csv=FILE</code>: also write results of
+   *   the single-threaded measurements, with JVM version and flags, to given
+   *   file (see {@link ResultsFile})
+   *  </li>
+   * <li><code>-baseline=FILE</code>: compare results of the single-threaded
+   *   measurements with ones earlier written with <code>-json</code>, and exit
+   *   with status 1 if any got significantly slower (see {@link RegressionCheck})
+   *  </li>
+   * <li><code>-coldstart[=RUNS]</code>: instead of the single-threaded
+   *   measurements, measure time to construct each serializer and to do the
+   *   first serialization and deserialization in new JVMs (5 by default; see
+   *   {@link ColdStartBenchmark})
+   *  </li>
+   * <li><code>-coldstart-child=FILE</code>: used by <code>-coldstart</code>
+   *  </li>
+   * <li><code>-child=FILE</code>: used by <code>-fork</code>; measure the single
+   *   given serializer and write results to given file instead of printing them
+   *  </li>
+   *</ul>
+   */
+  public static void main(String... args) throws Exception
+  {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    int threads = 0;
+    int gcSeconds = 0;
+    boolean scaling = false;
+    boolean shared = false;
+    boolean compression = false;
+    boolean fork = false;
+    int streamRecords = 0;
+    boolean streamToFile = true;
+    int batchRecords = 0;
+    String childFile = null;
+    String jsonFile = null;
+    String csvFile = null;
+    String baselineFile = null;
+    int coldStartRuns = 0;
+    String coldStartChildFile = null;
+    boolean jitLog = false;
+    List<String> names = new ArrayList<String>();
+
+    for (String arg : args)
+    {
+      if (arg.startsWith("-threads=")) {
+        threads = Integer.parseInt(arg.substring("-threads=".length()));
+      } else if (arg.startsWith("-gc=")) {
+        gcSeconds = Integer.parseInt(arg.substring("-gc=".length()));
+      } else if (arg.equals("-shared")) {
+        shared = true;
+      } else if (arg.equals("-scaling")) {
+        scaling = true;
+      } else if (arg.equals("-compression")) {
+        compression = true;
+      } else if (arg.startsWith("-stream=")) {
+        streamRecords = Integer.parseInt(arg.substring("-stream=".length()));
+      } else if (arg.startsWith("-stream-sink=")) {
+        String sink = arg.substring("-stream-sink=".length());
+        if (!sink.equals("file") && !sink.equals("memory")) {
+          throw new IllegalArgumentException("Unknown stream sink '"+sink+"', should be 'file' or 'memory'");
+        }
+        streamToFile = sink.equals("file");
+      } else if (arg.startsWith("-batch=")) {
+        batchRecords = Integer.parseInt(arg.substring("-batch=".length()));
+      } else if (arg.equals("-fork")) {
+        fork = true;
+      } else if (arg.equals("-jit-log")) {
+        jitLog = true;
+      } else if (arg.startsWith("-json=")) {
+        jsonFile = arg.substring("-json=".length());
+      } else if (arg.startsWith("-csv=")) {
+        csvFile = arg.substring("-csv=".length());
+      } else if (arg.startsWith("-baseline=")) {
+        baselineFile = arg.substring("-baseline=".length());
+      } else if (arg.equals("-coldstart")) {
+        coldStartRuns = 5;
+      } else if (arg.startsWith("-coldstart=")) {
+        coldStartRuns = Integer.parseInt(arg.substring("-coldstart=".length()));
+      } else if (arg.startsWith("-coldstart-child=")) {
+        coldStartChildFile = arg.substring("-coldstart-child=".length());
+      } else if (arg.startsWith("-child=")) {
+        childFile = arg.substring("-child=".length());
+      } else if (arg.startsWith("-")) {
+        throw new IllegalArgumentException("Unknown option '"+arg+"'");
+      } else {
+        factoryFor(arg);
+        names.add(arg);
+      }
+    }
+    if (coldStartChildFile != null) {
+      // before anything else, so that nothing of the serializer is loaded yet
+      ColdStartBenchmark.runChild(names.get(0), new File(coldStartChildFile));
+      return;
+    }
+    if (names.isEmpty())
+      names.addAll(SERIALIZERS.keySet());
+
+    if (coldStartRuns > 0) {
+      System.out.println("Starting cold start runs, median of "+coldStartRuns+" JVMs each");
+      ColdStartBenchmark coldStart = new ColdStartBenchmark(coldStartRuns);
+      coldStart.printHeader();
+      for (String name : names)
+        coldStart.run(name);
+      return;
+    }
+
+    if (threads > 0) {
+      System.out.println("Starting throughput runs, up to "+threads+" threads");
+      ThroughputBenchmark throughput = new ThroughputBenchmark(threads);
+      if (shared) {
+        throughput.printSharedHeader();
+        for (String name : names)
+          throughput.runShared(name, factoryFor(name));
+      } else {
+        throughput.printHeader();
+        for (String name : names)
+          throughput.run(name, factoryFor(name));
+      }
+      return;
+    }
+
+    // read baseline first, so that a bad file is found before spending time on measurements
+    List<BenchmarkResult> baseline = (baselineFile == null) ? null : ResultsFile.readJson(new File(baselineFile));
+    if (jitLog && !fork) {
+      throw new IllegalArgumentException("-jit-log only works with -fork");
+    }
+    if (fork) {
+      System.out.println("Starting, one JVM per serializer");
+      report(startForked(names, jitLog), jsonFile, csvFile, baseline);
+      return;
+    }
+
+    for (String name : names)
+      runner.addObjectSerializer(createSerializer(name));
+
+    if (childFile != null) {
+      runner.startChild(new File(childFile));
+      return;
+    }
+
+    if (gcSeconds > 0) {
+      System.out.println("Starting GC impact runs, "+gcSeconds+" seconds each");
+      runner.startGcImpact(gcSeconds * 1000L);
+      return;
+    }
+    if (streamRecords > 0) {
+      System.out.println("Starting streaming runs, "+streamRecords+" records each, to "+(streamToFile ? "file" : "memory"));
+      StreamingBenchmark streaming = new StreamingBenchmark(streamRecords, streamToFile);
+      streaming.printHeader();
+      for (ObjectSerializer<Object> serializer : runner._serializers)
+        streaming.run(serializer);
+      return;
+    }
+    if (batchRecords > 0) {
+      System.out.println("Starting batch runs, "+batchRecords+" records each");
+      BatchBenchmark batch = new BatchBenchmark(batchRecords);
+      batch.printHeader();
+      batch.runColumnar();
+      for (ObjectSerializer<Object> serializer : runner._serializers)
+        batch.run(serializer);
+      return;
+    }
+    if (compression) {
+      System.out.println("Starting compression runs");
+      CompressionBenchmark compressionBenchmark = new CompressionBenchmark();
+      compressionBenchmark.printHeader();
+      for (ObjectSerializer<Object> serializer : runner._serializers)
+        compressionBenchmark.run(serializer);
+      return;
+    }
+    if (scaling) {
+      System.out.println("Starting scaling runs");
+      new ScalingBenchmark().run(runner._serializers);
+      return;
+    }
+
+    System.out.println("Starting");
+    report(runner.start(), jsonFile, csvFile, baseline);
+  }
+
+  private static void report(List<BenchmarkResult> results, String jsonFile, String csvFile, List<BenchmarkResult> baseline)
+    throws Exception
+  {
+    if (jsonFile != null) {
+      ResultsFile.writeJson(new File(jsonFile), results);
+    }
+    if (csvFile != null) {
+      ResultsFile.writeCsv(new File(csvFile), results);
+    }
+    if (baseline != null && RegressionCheck.compare(baseline, results) > 0) {
+      // so that scripts can fail the build
+      System.exit(1);
+    }
+  }
+
+  private void addObjectSerializer(ObjectSerializer<Object> serializer)
   {
     _serializers.add(serializer);
   }
@@ -123,35 +557,132 @@ public class BenchmarkRunner
   }
   
   
-  private <T> double serializeSameObject(ObjectSerializer<T> serializer, int iterations) throws Exception
+  /**
+   * @param latencies Histogram to record time of each serialization in; if null
+   *   (as when measuring allocation and CPU time), loop is timed as a whole
+   */
+  private <T> double serializeSameObject(ObjectSerializer<T> serializer, int iterations, LatencyHistogram latencies) throws Exception
   {
     // let's reuse same instance to reduce overhead
     T obj = serializer.create();
+    if (latencies == null) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+      {
+        serializer.serialize(obj);
+      }
+      return iterationTime(System.nanoTime() - start, iterations);
+    }
     long delta = 0;
     for (int i = 0; i < iterations; i++)
     {
       long start = System.nanoTime();
       serializer.serialize(obj);
-      delta += System.nanoTime() - start;
-      if (i % 1000 == 0)
-        doGc();
+      long time = System.nanoTime() - start;
+      delta += time;
+      latencies.record(time);
     }
     return iterationTime(delta, iterations);
   }  
 
-  private <T> double deserializeNoFieldAccess(ObjectSerializer<T> serializer, int iterations) throws Exception
+  /**
+   * Serializes into given buffer, which is reset before each object but
+   * otherwise reused.
+   */
+  private <T> double serializeSameObjectToStream(OutputStreamSerializer<T> serializer, int iterations, GrowableByteArrayOutputStream out)
+    throws Exception
+  {
+    T obj = serializer.create();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      out.reset();
+      serializer.serialize(obj, out);
+    }
+    return iterationTime(System.nanoTime() - start, iterations);
+  }
+
+  /**
+   * Serializes into the buffer of given stream, which is cleared before each
+   * object but otherwise reused.
+   */
+  private <T> double serializeSameObjectToBuffer(OutputStreamSerializer<T> serializer, int iterations, ByteBufferOutputStream out)
+    throws Exception
+  {
+    T obj = serializer.create();
+    ByteBuffer buffer = out.getBuffer();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      buffer.clear();
+      serializer.serialize(obj, out);
+    }
+    return iterationTime(System.nanoTime() - start, iterations);
+  }
+
+  /**
+   * Deserializes from the part of given buffer that {@link #toDirectBuffer} put data in.
+   */
+  private <T> double deserializeFromBuffer(ByteBufferDeserializer<T> serializer, int iterations, ByteBuffer buffer)
+    throws Exception
+  {
+    int length = buffer.limit() - BUFFER_OFFSET;
+    T result = null;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      result = serializer.deserialize(buffer, BUFFER_OFFSET, length);
+    }
+    return iterationTime(System.nanoTime() - start, iterations);
+  }
+
+  /**
+   * Deserializes each object into the one deserialized before it.
+   */
+  private <T> double deserializeReusing(ReusingDeserializer<T> serializer, int iterations) throws Exception
   {
     byte[] array = serializer.serialize(serializer.create());
+    T result = serializer.deserialize(array, null);
     long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      result = serializer.deserialize(array, result);
+    }
+    return iterationTime(System.nanoTime() - start, iterations);
+  }
+
+  /**
+   * @param latencies Histogram to record time of each deserialization in; if null
+   *   (as when warming up), loop is timed as a whole
+   */
+  private <T> double deserializeNoFieldAccess(ObjectSerializer<T> serializer, int iterations, LatencyHistogram latencies) throws Exception
+  {
+    byte[] array = serializer.serialize(serializer.create());
     T result = null;
+    if (latencies == null) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+      {
+        result = serializer.deserialize(array);
+      }
+      return iterationTime(System.nanoTime()-start, iterations);
+    }
+    long delta = 0;
     for (int i = 0; i < iterations; i++)
     {
+      long start = System.nanoTime();
       result = serializer.deserialize(array);
+      long time = System.nanoTime() - start;
+      delta += time;
+      latencies.record(time);
     }
-    return iterationTime(System.nanoTime()-start, iterations);
+    return iterationTime(delta, iterations);
   }
 
-  private <T> double deserializeAndCheckAllFields(CheckingObjectSerializer<T> serializer, int iterations) throws Exception
+  /**
+   * @param latencies Histogram to record time of each operation in; may be null (when warming up)
+   */
+  private <T> double deserializeAndCheckAllFields(CheckingObjectSerializer<T> serializer, int iterations, LatencyHistogram latencies) throws Exception
   {
     byte[] array = serializer.serialize(serializer.create());
     long delta = 0;
@@ -160,11 +691,28 @@ public class BenchmarkRunner
       long start = System.nanoTime();
       T obj = serializer.deserialize(array);
       serializer.checkAllFields(obj);
-      delta += System.nanoTime() - start;
+      long time = System.nanoTime() - start;
+      delta += time;
+      if (latencies != null)
+        latencies.record(time);
     }
     return iterationTime(delta, iterations);
   }  
   
+  private <T> double deserializeAndCheckMediaUri(CheckingObjectSerializer<T> serializer, int iterations) throws Exception
+  {
+    byte[] array = serializer.serialize(serializer.create());
+    long delta = 0;
+    for (int i = 0; i < iterations; i++)
+    {
+      long start = System.nanoTime();
+      T obj = serializer.deserialize(array);
+      serializer.checkMediaUri(obj);
+      delta += System.nanoTime() - start;
+    }
+    return iterationTime(delta, iterations);
+  }
+
   private <T> double deserializeAndCheckMediaField(CheckingObjectSerializer<T> serializer, int iterations) throws Exception
   {
     byte[] array = serializer.serialize(serializer.create());
@@ -196,13 +744,101 @@ public class BenchmarkRunner
 
   enum measurements
   {
-    timeCreate, timeSerializeDifferentObjects, timeSerializeSameObject, timeDeserializeNoFieldAccess, timeDeserializeAndCheckMediaField, timeDeserializeAndCheckAllFields, totalTime, length
+    timeCreate, timeSerializeDifferentObjects, timeSerializeSameObject, timeDeserializeNoFieldAccess, timeDeserializeAndCheckMediaField, timeDeserializeAndCheckAllFields, totalTime, length,
+    // per-operation cost from thread counters, averaged over a plain loop (no per-operation timing) of serializing
+    // same object and deserializing without field access
+    bytesAllocatedSerialize, bytesAllocatedDeserialize, cpuTimeSerialize, cpuTimeDeserialize,
+    // milliseconds it took for timing to become stable (see WarmupController)
+    warmupCreate, warmupSerialize, warmupDeserialize,
+    // JIT compilation time (msecs) and code cache growth (kilobytes) during warm-ups vs. rest of the measurements
+    jitTimeWarmup, jitTimeMeasure, codeCacheWarmup, codeCacheMeasure,
+    // serializing same object into a reused buffer (see OutputStreamSerializer), instead of to a new array
+    timeSerializeToStream, bytesAllocatedSerializeToStream,
+    // deserializing from part of a direct buffer (see ByteBufferDeserializer), instead of from an array
+    timeDeserializeFromBuffer, bytesAllocatedDeserializeFromBuffer,
+    // deserializing and reading just media.uri, which formats that decode lazily can do without decoding the rest
+    timeDeserializeAndCheckMediaUri,
+    // deserializing into the object of the previous call (see ReusingDeserializer), instead of a new one
+    timeDeserializeReuse, bytesAllocatedDeserializeReuse,
+    // serializing same object into a reused direct buffer, through a ByteBufferOutputStream
+    timeSerializeToDirectBuffer, bytesAllocatedSerializeToDirectBuffer
   }
 
-  @SuppressWarnings("unchecked")
-  private void start() throws Exception
+  private List<BenchmarkResult> start() throws Exception
   {
-    System.out.printf("%-24s, %15s, %15s, %15s, %15s, %15s, %15s, %15s, %10s\n",
+    printHeader();
+    List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+    for (ObjectSerializer<Object> serializer : _serializers)
+    {
+      BenchmarkResult result = measure(serializer);
+      printRow(result);
+      results.add(result);
+    }
+    printResults(results);
+    return results;
+  }
+
+  /**
+   * Same as {@link #start}, but measures each serializer in a child JVM of
+   * its own, so that classes loaded, JIT profiles and heap state left by one
+   * serializer do not affect the others, and order of serializers does not
+   * matter. Results are passed back in a temporary file.
+   */
+  private static List<BenchmarkResult> startForked(List<String> names, boolean jitLog) throws Exception
+  {
+    printHeader();
+    List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+    Map<String, CompilationLog> compilationLogs = new LinkedHashMap<String, CompilationLog>();
+    for (String name : names)
+    {
+      File file = File.createTempFile("tpc-", ".result");
+      File logFile = File.createTempFile("tpc-", ".log");
+      try
+      {
+        List<String> jvmArgs = jitLog ? CompilationLog.jvmArgs(logFile) : Collections.<String>emptyList();
+        int exitCode = ForkedJvm.run(jvmArgs, "-child="+file.getPath(), name);
+        if (exitCode != 0) {
+          System.err.println("WARN: child JVM for '"+name+"' exited with code "+exitCode+", skipping");
+          continue;
+        }
+        BenchmarkResult result = BenchmarkResult.read(file);
+        printRow(result);
+        results.add(result);
+        if (jitLog) {
+          compilationLogs.put(name, CompilationLog.parse(logFile));
+        }
+      }
+      finally
+      {
+        file.delete();
+        logFile.delete();
+      }
+    }
+    printResults(results);
+    if (jitLog) {
+      CompilationLog.printHeader();
+      for (Entry<String, CompilationLog> entry : compilationLogs.entrySet())
+        entry.getValue().print(entry.getKey());
+      System.out.println();
+    }
+    return results;
+  }
+
+  /**
+   * Measures the only serializer of this runner and writes results to given
+   * file, for {@link #startForked} running in the parent JVM.
+   */
+  private void startChild(File file) throws Exception
+  {
+    if (_serializers.size() != 1) {
+      throw new IllegalArgumentException("Child JVM must be given exactly one serializer, got "+_serializers.size());
+    }
+    measure(_serializers.iterator().next()).write(file);
+  }
+
+  private static void printHeader()
+  {
+    System.out.printf("%-24s, %15s, %15s, %15s, %15s, %15s, %15s, %15s, %10s, %12s, %12s, %12s, %12s\n",
                       " ",
                       "Object create",
                       "Serialize",
@@ -211,89 +847,510 @@ public class BenchmarkRunner
                       "and Check Media",
                       "and Check All",
                       "Total Time",
-                      "Serialized Size");
+                      "Serialized Size",
+                      "Ser. Alloc",
+                      "Deser. Alloc",
+                      "Ser. CPU",
+                      "Deser. CPU");
+  }
+
+  private static void printRow(BenchmarkResult result)
+  {
+    System.out.printf("%-24s, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %10d, %12.1f, %12.1f, %12.1f, %12.1f\n",
+                      result.name,
+                      result.get(measurements.timeCreate),
+                      result.get(measurements.timeSerializeDifferentObjects),
+                      result.get(measurements.timeSerializeSameObject),
+                      result.get(measurements.timeDeserializeNoFieldAccess),
+                      result.get(measurements.timeDeserializeAndCheckMediaField),
+                      result.get(measurements.timeDeserializeAndCheckAllFields),
+                      result.get(measurements.totalTime),
+                      (long) result.get(measurements.length),
+                      result.get(measurements.bytesAllocatedSerialize),
+                      result.get(measurements.bytesAllocatedDeserialize),
+                      result.get(measurements.cpuTimeSerialize),
+                      result.get(measurements.cpuTimeDeserialize));
+  }
+
+  private static void printResults(List<BenchmarkResult> results)
+  {
     EnumMap<measurements, Map<String, Double>> values = new EnumMap<measurements, Map<String, Double>>(measurements.class);
     for (measurements m : measurements.values())
       values.put(m, new HashMap<String, Double>());
-
-    for (ObjectSerializer serializer : _serializers)
+    Map<String, EnumMap<measurements, LatencyHistogram>> latencies = new LinkedHashMap<String, EnumMap<measurements, LatencyHistogram>>();
+    for (BenchmarkResult result : results)
     {
-      /*
-       * Should only warm things for the serializer that we test next: HotSpot JIT will
-       * otherwise spent most of its time optimizing slower ones... Use
-       * -XX:CompileThreshold=1 to hint the JIT to start immediately
-       *
-       * Actually: 1 is often not a good value -- threshold is the number
-       * of samples needed to trigger inlining, and there's no point in
-       * inlining everything. Default value is in thousands, so lowering
-       * it to, say, 1000 is usually better.
-       */
-      warmCreation(serializer);
-      doGc();
-      double timeCreate = Double.MAX_VALUE;
-      // do more iteration for object creation because of its short time
-      for (int i = 0; i < TRIALS; i++)
-        timeCreate = Math.min(timeCreate, createObjects(serializer, ITERATIONS * 100));
+      addValue(values, result.name, result.get(measurements.timeCreate), result.get(measurements.timeSerializeDifferentObjects),
+               result.get(measurements.timeSerializeSameObject), result.get(measurements.timeDeserializeNoFieldAccess),
+               result.get(measurements.timeDeserializeAndCheckMediaUri), result.get(measurements.timeDeserializeAndCheckMediaField),
+               result.get(measurements.timeDeserializeAndCheckAllFields), result.get(measurements.totalTime), result.get(measurements.length));
+      values.get(measurements.bytesAllocatedSerialize).put(result.name, result.get(measurements.bytesAllocatedSerialize));
+      values.get(measurements.bytesAllocatedDeserialize).put(result.name, result.get(measurements.bytesAllocatedDeserialize));
+      values.get(measurements.cpuTimeSerialize).put(result.name, result.get(measurements.cpuTimeSerialize));
+      values.get(measurements.cpuTimeDeserialize).put(result.name, result.get(measurements.cpuTimeDeserialize));
+      values.get(measurements.warmupCreate).put(result.name, result.get(measurements.warmupCreate));
+      values.get(measurements.warmupSerialize).put(result.name, result.get(measurements.warmupSerialize));
+      values.get(measurements.warmupDeserialize).put(result.name, result.get(measurements.warmupDeserialize));
+      values.get(measurements.jitTimeWarmup).put(result.name, result.get(measurements.jitTimeWarmup));
+      values.get(measurements.jitTimeMeasure).put(result.name, result.get(measurements.jitTimeMeasure));
+      values.get(measurements.codeCacheWarmup).put(result.name, result.get(measurements.codeCacheWarmup));
+      values.get(measurements.codeCacheMeasure).put(result.name, result.get(measurements.codeCacheMeasure));
+      values.get(measurements.timeSerializeToStream).put(result.name, result.get(measurements.timeSerializeToStream));
+      values.get(measurements.bytesAllocatedSerializeToStream).put(result.name, result.get(measurements.bytesAllocatedSerializeToStream));
+      values.get(measurements.timeDeserializeFromBuffer).put(result.name, result.get(measurements.timeDeserializeFromBuffer));
+      values.get(measurements.bytesAllocatedDeserializeFromBuffer).put(result.name, result.get(measurements.bytesAllocatedDeserializeFromBuffer));
+      values.get(measurements.timeDeserializeReuse).put(result.name, result.get(measurements.timeDeserializeReuse));
+      values.get(measurements.bytesAllocatedDeserializeReuse).put(result.name, result.get(measurements.bytesAllocatedDeserializeReuse));
+      values.get(measurements.timeSerializeToDirectBuffer).put(result.name, result.get(measurements.timeSerializeToDirectBuffer));
+      values.get(measurements.bytesAllocatedSerializeToDirectBuffer).put(result.name, result.get(measurements.bytesAllocatedSerializeToDirectBuffer));
+      latencies.put(result.name, result.latencies);
+    }
+    printLatencies(latencies);
+    printWarmup(results);
+    printStreamOutput(results);
+    printBufferInput(results);
+    printReuse(results);
+    printFieldAccess(results);
+    printJit(results);
+    printImages(values);
+  }
+
+  private BenchmarkResult measure(ObjectSerializer<Object> serializer) throws Exception
+  {
+    /*
+     * Should only warm things for the serializer that we test next: HotSpot JIT will
+     * otherwise spent most of its time optimizing slower ones... Use
+     * -XX:CompileThreshold=1 to hint the JIT to start immediately
+     *
+     * Actually: 1 is often not a good value -- threshold is the number
+     * of samples needed to trigger inlining, and there's no point in
+     * inlining everything. Default value is in thousands, so lowering
+     * it to, say, 1000 is usually better.
+     */
+    BenchmarkResult result = new BenchmarkResult(serializer.getName());
+    _jit.start();
+    result.values.put(measurements.warmupCreate, (double) warmCreation(serializer));
+    doGc();
+    double timeCreate = Double.MAX_VALUE;
+    // do more iteration for object creation because of its short time
+    double[] trials = result.newTrials(measurements.timeCreate, TRIALS);
+    for (int i = 0; i < TRIALS; i++)
+      timeCreate = Math.min(timeCreate, trials[i] = createObjects(serializer, ITERATIONS * 100));
+
+    result.values.put(measurements.warmupSerialize, (double) warmSerialization(serializer));
 
-      warmSerialization(serializer);
+    // actually: let's verify serializer actually works now:
+    checkCorrectness(serializer);
 
-      // actually: let's verify serializer actually works now:
-      checkCorrectness(serializer);
+    doGc();
+    double timeSerializeDifferentObjects = Double.MAX_VALUE;
+    trials = result.newTrials(measurements.timeSerializeDifferentObjects, TRIALS);
+    for (int i = 0; i < TRIALS; i++)
+      timeSerializeDifferentObjects = Math.min(timeSerializeDifferentObjects, trials[i] = serializeDifferentObjects(serializer, ITERATIONS));
 
+    // latencies of individual operations are recorded over all trials, not just the best one;
+    // no GC is forced in between, so that collections show up in them as they would in use
+    doGc();
+    double timeSerializeSameObject = Double.MAX_VALUE;
+    LatencyHistogram serializeLatencies = new LatencyHistogram();
+    result.latencies.put(measurements.timeSerializeSameObject, serializeLatencies);
+    trials = result.newTrials(measurements.timeSerializeSameObject, TRIALS);
+    for (int i = 0; i < TRIALS; i++)
+        timeSerializeSameObject = Math.min(timeSerializeSameObject, trials[i] = serializeSameObject(serializer, ITERATIONS, serializeLatencies));
+
+    // allocation and CPU time come from a plain loop, as per-operation timing and recording would add to both
+    doGc();
+    long allocBefore = ThreadUsage.allocatedBytes();
+    long cpuBefore = ThreadUsage.cpuTime();
+    serializeSameObject(serializer, TRIALS * ITERATIONS, null);
+    double bytesAllocatedSerialize = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
+    double cpuTimeSerialize = ThreadUsage.perOperation(cpuBefore, ThreadUsage.cpuTime(), TRIALS * ITERATIONS);
+
+    double timeSerializeToStream = Double.NaN;
+    double bytesAllocatedSerializeToStream = Double.NaN;
+    double timeSerializeToDirectBuffer = Double.NaN;
+    double bytesAllocatedSerializeToDirectBuffer = Double.NaN;
+    if (serializer instanceof OutputStreamSerializer) {
+      final OutputStreamSerializer<Object> streamSerializer = (OutputStreamSerializer<Object>) serializer;
+      final GrowableByteArrayOutputStream out = new GrowableByteArrayOutputStream();
+      checkStreamOutput(streamSerializer, out);
+      warmUp(serializer, "serialize to stream", new WarmupController.Task() {
+        public double run(int iterations) throws Exception
+        {
+          return serializeSameObjectToStream(streamSerializer, iterations, out);
+        }
+      });
       doGc();
-      double timeSerializeDifferentObjects = Double.MAX_VALUE;
+      timeSerializeToStream = Double.MAX_VALUE;
+      allocBefore = ThreadUsage.allocatedBytes();
+      trials = result.newTrials(measurements.timeSerializeToStream, TRIALS);
       for (int i = 0; i < TRIALS; i++)
-        timeSerializeDifferentObjects = Math.min(timeSerializeDifferentObjects, serializeDifferentObjects(serializer, ITERATIONS));
+        timeSerializeToStream = Math.min(timeSerializeToStream, trials[i] = serializeSameObjectToStream(streamSerializer, ITERATIONS, out));
+      bytesAllocatedSerializeToStream = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
 
+      // as when handing the result to a channel: with room to spare, as size may vary
+      final ByteBufferOutputStream directOut = new ByteBufferOutputStream(
+        ByteBuffer.allocateDirect(2 * serializer.serialize(serializer.create()).length + 1024).order(ByteOrder.nativeOrder()));
+      checkDirectBufferOutput(streamSerializer, directOut);
+      warmUp(serializer, "serialize to direct buffer", new WarmupController.Task() {
+        public double run(int iterations) throws Exception
+        {
+          return serializeSameObjectToBuffer(streamSerializer, iterations, directOut);
+        }
+      });
       doGc();
-      double timeSerializeSameObject = Double.MAX_VALUE;
+      timeSerializeToDirectBuffer = Double.MAX_VALUE;
+      allocBefore = ThreadUsage.allocatedBytes();
+      trials = result.newTrials(measurements.timeSerializeToDirectBuffer, TRIALS);
       for (int i = 0; i < TRIALS; i++)
-          timeSerializeSameObject = Math.min(timeSerializeSameObject, serializeSameObject(serializer, ITERATIONS));
-      
-      warmDeserialization(serializer);
-      
+        timeSerializeToDirectBuffer = Math.min(timeSerializeToDirectBuffer, trials[i] = serializeSameObjectToBuffer(streamSerializer, ITERATIONS, directOut));
+      bytesAllocatedSerializeToDirectBuffer = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
+    }
+
+    result.values.put(measurements.warmupDeserialize, (double) warmDeserialization(serializer));
+    
+    doGc();
+    double timeDeserializeNoFieldAccess = Double.MAX_VALUE;
+    LatencyHistogram deserializeLatencies = new LatencyHistogram();
+    result.latencies.put(measurements.timeDeserializeNoFieldAccess, deserializeLatencies);
+    trials = result.newTrials(measurements.timeDeserializeNoFieldAccess, TRIALS);
+    for (int i = 0; i < TRIALS; i++)
+      timeDeserializeNoFieldAccess = Math.min(timeDeserializeNoFieldAccess, trials[i] = deserializeNoFieldAccess(serializer, ITERATIONS, deserializeLatencies));
+
+    doGc();
+    allocBefore = ThreadUsage.allocatedBytes();
+    cpuBefore = ThreadUsage.cpuTime();
+    deserializeNoFieldAccess(serializer, TRIALS * ITERATIONS, null);
+    double bytesAllocatedDeserialize = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
+    double cpuTimeDeserialize = ThreadUsage.perOperation(cpuBefore, ThreadUsage.cpuTime(), TRIALS * ITERATIONS);
+
+    double timeDeserializeFromBuffer = Double.NaN;
+    double bytesAllocatedDeserializeFromBuffer = Double.NaN;
+    if (serializer instanceof ByteBufferDeserializer) {
+      final ByteBufferDeserializer<Object> bufferDeserializer = (ByteBufferDeserializer<Object>) serializer;
+      final ByteBuffer buffer = toDirectBuffer(serializer.serialize(serializer.create()));
+      checkBufferInput(bufferDeserializer, buffer);
+      warmUp(serializer, "deserialize from buffer", new WarmupController.Task() {
+        public double run(int iterations) throws Exception
+        {
+          return deserializeFromBuffer(bufferDeserializer, iterations, buffer);
+        }
+      });
       doGc();
-      double timeDeserializeNoFieldAccess = Double.MAX_VALUE;
+      timeDeserializeFromBuffer = Double.MAX_VALUE;
+      allocBefore = ThreadUsage.allocatedBytes();
+      trials = result.newTrials(measurements.timeDeserializeFromBuffer, TRIALS);
       for (int i = 0; i < TRIALS; i++)
-        timeDeserializeNoFieldAccess = Math.min(timeDeserializeNoFieldAccess, deserializeNoFieldAccess(serializer, ITERATIONS));
+        timeDeserializeFromBuffer = Math.min(timeDeserializeFromBuffer, trials[i] = deserializeFromBuffer(bufferDeserializer, ITERATIONS, buffer));
+      bytesAllocatedDeserializeFromBuffer = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
+    }
+
+    double timeDeserializeReuse = Double.NaN;
+    double bytesAllocatedDeserializeReuse = Double.NaN;
+    if (serializer instanceof ReusingDeserializer) {
+      final ReusingDeserializer<Object> reusingDeserializer = (ReusingDeserializer<Object>) serializer;
+      checkReuse(reusingDeserializer);
+      warmUp(serializer, "deserialize reusing", new WarmupController.Task() {
+        public double run(int iterations) throws Exception
+        {
+          return deserializeReusing(reusingDeserializer, iterations);
+        }
+      });
+      doGc();
+      timeDeserializeReuse = Double.MAX_VALUE;
+      allocBefore = ThreadUsage.allocatedBytes();
+      trials = result.newTrials(measurements.timeDeserializeReuse, TRIALS);
+      for (int i = 0; i < TRIALS; i++)
+        timeDeserializeReuse = Math.min(timeDeserializeReuse, trials[i] = deserializeReusing(reusingDeserializer, ITERATIONS));
+      bytesAllocatedDeserializeReuse = ThreadUsage.allocatedPerOperation(allocBefore, ThreadUsage.allocatedBytes(), TRIALS * ITERATIONS);
+    }
+
+    double timeDeserializeAndCheckAllFields = timeDeserializeNoFieldAccess;
+    double timeDeserializeAndCheckMediaField = timeDeserializeNoFieldAccess;
+    double timeDeserializeAndCheckMediaUri = timeDeserializeNoFieldAccess;
 
-      double timeDeserializeAndCheckAllFields = timeDeserializeNoFieldAccess;
-      double timeDeserializeAndCheckMediaField = timeDeserializeNoFieldAccess;
+    double totalTime = timeSerializeDifferentObjects + timeDeserializeNoFieldAccess;
+
+    if( serializer instanceof CheckingObjectSerializer) {
+        final CheckingObjectSerializer<Object> checkingSerializer = (CheckingObjectSerializer<Object>)serializer;
+
+        // field access may decode (lazy formats) or convert, which would otherwise get compiled while measuring
+        warmUp(serializer, "deserialize and check fields", new WarmupController.Task() {
+          public double run(int iterations) throws Exception
+          {
+            return deserializeAndCheckMediaUri(checkingSerializer, iterations)
+              + deserializeAndCheckMediaField(checkingSerializer, iterations)
+              + deserializeAndCheckAllFields(checkingSerializer, iterations, null);
+          }
+        });
+
+        timeDeserializeAndCheckMediaUri = Double.MAX_VALUE;
+        doGc();
+        trials = result.newTrials(measurements.timeDeserializeAndCheckMediaUri, TRIALS);
+        for (int i = 0; i < TRIALS; i++)
+            timeDeserializeAndCheckMediaUri = Math.min(timeDeserializeAndCheckMediaUri, trials[i] = deserializeAndCheckMediaUri(checkingSerializer, ITERATIONS));
+
+        timeDeserializeAndCheckMediaField = Double.MAX_VALUE;
+        doGc();
+        trials = result.newTrials(measurements.timeDeserializeAndCheckMediaField, TRIALS);
+        for (int i = 0; i < TRIALS; i++)
+            timeDeserializeAndCheckMediaField = Math.min(timeDeserializeAndCheckMediaField, trials[i] = deserializeAndCheckMediaField(checkingSerializer, ITERATIONS));
+
+        timeDeserializeAndCheckAllFields = Double.MAX_VALUE;
+        LatencyHistogram checkAllLatencies = new LatencyHistogram();
+        result.latencies.put(measurements.timeDeserializeAndCheckAllFields, checkAllLatencies);
+        doGc();
+        trials = result.newTrials(measurements.timeDeserializeAndCheckAllFields, TRIALS);
+        for (int i = 0; i < TRIALS; i++) 
+            timeDeserializeAndCheckAllFields = Math.min(timeDeserializeAndCheckAllFields, trials[i] = deserializeAndCheckAllFields(checkingSerializer, ITERATIONS, checkAllLatencies));
+
+        totalTime = timeSerializeDifferentObjects + timeDeserializeAndCheckAllFields;
+    }
+          
+    _jit.stop();
+    result.values.put(measurements.jitTimeWarmup, (_jit.warmupTimeMsecs < 0) ? Double.NaN : (double) _jit.warmupTimeMsecs);
+    result.values.put(measurements.jitTimeMeasure, (_jit.totalTimeMsecs < 0) ? Double.NaN : (double) (_jit.totalTimeMsecs - _jit.warmupTimeMsecs));
+    result.values.put(measurements.codeCacheWarmup, _jit.warmupCodeBytes / 1024.0);
+    result.values.put(measurements.codeCacheMeasure, (_jit.totalCodeBytes - _jit.warmupCodeBytes) / 1024.0);
 
-      double totalTime = timeSerializeDifferentObjects + timeDeserializeNoFieldAccess;
+    byte[] array = serializer.serialize(serializer.create());
+    result.values.put(measurements.timeCreate, timeCreate);
+    result.values.put(measurements.timeSerializeDifferentObjects, timeSerializeDifferentObjects);
+    result.values.put(measurements.timeSerializeSameObject, timeSerializeSameObject);
+    result.values.put(measurements.timeDeserializeNoFieldAccess, timeDeserializeNoFieldAccess);
+    result.values.put(measurements.timeDeserializeAndCheckMediaUri, timeDeserializeAndCheckMediaUri);
+    result.values.put(measurements.timeDeserializeAndCheckMediaField, timeDeserializeAndCheckMediaField);
+    result.values.put(measurements.timeDeserializeAndCheckAllFields, timeDeserializeAndCheckAllFields);
+    result.values.put(measurements.totalTime, totalTime);
+    result.values.put(measurements.length, (double) array.length);
+    result.values.put(measurements.bytesAllocatedSerialize, bytesAllocatedSerialize);
+    result.values.put(measurements.bytesAllocatedDeserialize, bytesAllocatedDeserialize);
+    result.values.put(measurements.cpuTimeSerialize, cpuTimeSerialize);
+    result.values.put(measurements.cpuTimeDeserialize, cpuTimeDeserialize);
+    result.values.put(measurements.timeSerializeToStream, timeSerializeToStream);
+    result.values.put(measurements.bytesAllocatedSerializeToStream, bytesAllocatedSerializeToStream);
+    result.values.put(measurements.timeDeserializeFromBuffer, timeDeserializeFromBuffer);
+    result.values.put(measurements.bytesAllocatedDeserializeFromBuffer, bytesAllocatedDeserializeFromBuffer);
+    result.values.put(measurements.timeDeserializeReuse, timeDeserializeReuse);
+    result.values.put(measurements.bytesAllocatedDeserializeReuse, bytesAllocatedDeserializeReuse);
+    result.values.put(measurements.timeSerializeToDirectBuffer, timeSerializeToDirectBuffer);
+    result.values.put(measurements.bytesAllocatedSerializeToDirectBuffer, bytesAllocatedSerializeToDirectBuffer);
+    return result;
+  }
 
-      if( serializer instanceof CheckingObjectSerializer) {
-          CheckingObjectSerializer checkingSerializer = (CheckingObjectSerializer)serializer;
+  /**
+   * Prints how long it took for timing of each operation to stabilize.
+   */
+  private static void printWarmup(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s\n",
+                      " ", "Warm-up (msecs)", "Create", "Serialize", "Deserialize");
+    for (BenchmarkResult result : results)
+    {
+      System.out.printf("%-24s, %-15s, %15.0f, %15.0f, %15.0f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.warmupCreate),
+                        result.get(measurements.warmupSerialize),
+                        result.get(measurements.warmupDeserialize));
+    }
+    System.out.println();
+  }
 
-          timeDeserializeAndCheckMediaField = Double.MAX_VALUE;
-          doGc();
-          for (int i = 0; i < TRIALS; i++)
-              timeDeserializeAndCheckMediaField = Math.min(timeDeserializeAndCheckMediaField, deserializeAndCheckMediaField(checkingSerializer, ITERATIONS));
+  /**
+   * Compares serializing same object to a new array, to a reused buffer and
+   * to a reused direct buffer.
+   */
+  private static void printStreamOutput(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s, %15s, %15s, %15s\n",
+                      " ", "Output", "To array", "To stream", "To direct", "Array alloc", "Stream alloc", "Direct alloc");
+    for (BenchmarkResult result : results)
+    {
+      System.out.printf("%-24s, %-15s, %15.5f, %15.5f, %15.5f, %15.1f, %15.1f, %15.1f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.timeSerializeSameObject),
+                        result.get(measurements.timeSerializeToStream),
+                        result.get(measurements.timeSerializeToDirectBuffer),
+                        result.get(measurements.bytesAllocatedSerialize),
+                        result.get(measurements.bytesAllocatedSerializeToStream),
+                        result.get(measurements.bytesAllocatedSerializeToDirectBuffer));
+    }
+    System.out.println();
+  }
 
-          timeDeserializeAndCheckAllFields = Double.MAX_VALUE;
-          doGc();
-          for (int i = 0; i < TRIALS; i++) 
-              timeDeserializeAndCheckAllFields = Math.min(timeDeserializeAndCheckAllFields, deserializeAndCheckAllFields(checkingSerializer, ITERATIONS));
+  /**
+   * Compares deserializing from an array and from part of a direct buffer.
+   */
+  private static void printBufferInput(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s, %15s\n",
+                      " ", "Input", "From array", "From buffer", "Array alloc", "Buffer alloc");
+    for (BenchmarkResult result : results)
+    {
+      System.out.printf("%-24s, %-15s, %15.5f, %15.5f, %15.1f, %15.1f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.timeDeserializeNoFieldAccess),
+                        result.get(measurements.timeDeserializeFromBuffer),
+                        result.get(measurements.bytesAllocatedDeserialize),
+                        result.get(measurements.bytesAllocatedDeserializeFromBuffer));
+    }
+    System.out.println();
+  }
 
-          totalTime = timeSerializeDifferentObjects + timeDeserializeAndCheckAllFields;
+  /**
+   * Compares deserializing into a new object and into the previous one.
+   */
+  private static void printReuse(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s, %15s\n",
+                      " ", "Reuse", "New object", "Reused", "New alloc", "Reused alloc");
+    for (BenchmarkResult result : results)
+    {
+      System.out.printf("%-24s, %-15s, %15.5f, %15.5f, %15.1f, %15.1f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.timeDeserializeNoFieldAccess),
+                        result.get(measurements.timeDeserializeReuse),
+                        result.get(measurements.bytesAllocatedDeserialize),
+                        result.get(measurements.bytesAllocatedDeserializeReuse));
+    }
+    System.out.println();
+  }
+
+  /**
+   * Compares deserializing with different amounts of field access: formats
+   * that decode lazily only pay for what gets accessed.
+   */
+  private static void printFieldAccess(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s, %15s, %15s\n",
+                      " ", "Field access", "None", "media.uri", "Media", "All", "uri % of all");
+    for (BenchmarkResult result : results)
+    {
+      double uri = result.get(measurements.timeDeserializeAndCheckMediaUri);
+      double all = result.get(measurements.timeDeserializeAndCheckAllFields);
+      System.out.printf("%-24s, %-15s, %15.5f, %15.5f, %15.5f, %15.5f, %15.1f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.timeDeserializeNoFieldAccess),
+                        uri,
+                        result.get(measurements.timeDeserializeAndCheckMediaField),
+                        all,
+                        100.0 * uri / all);
+    }
+    System.out.println();
+  }
+
+  /**
+   * Prints JIT compilation time and code cache growth caused by each serializer.
+   */
+  private static void printJit(List<BenchmarkResult> results)
+  {
+    System.out.printf("%-24s, %-15s, %15s, %15s, %15s, %15s\n",
+                      " ", "JIT", "Warm-up ms", "Measure ms", "Warm-up code KB", "Measure code KB");
+    for (BenchmarkResult result : results)
+    {
+      System.out.printf("%-24s, %-15s, %15.0f, %15.0f, %15.1f, %15.1f\n",
+                        result.name,
+                        " ",
+                        result.get(measurements.jitTimeWarmup),
+                        result.get(measurements.jitTimeMeasure),
+                        result.get(measurements.codeCacheWarmup),
+                        result.get(measurements.codeCacheMeasure));
+    }
+    System.out.println();
+  }
+
+  /**
+   * Prints latency percentiles of individual operations (in nanoseconds); unlike
+   * the best-trial averages above these include GC pauses and other outliers.
+   */
+  private static void printLatencies(Map<String, EnumMap<measurements, LatencyHistogram>> latencies)
+  {
+    System.out.println();
+    System.out.printf("%-24s, %-32s, %10s, %10s, %10s, %10s, %10s\n",
+                      " ", "Latency (nanos)", "p50", "p90", "p99", "p99.9", "max");
+    for (Entry<String, EnumMap<measurements, LatencyHistogram>> entry : latencies.entrySet())
+    {
+      for (Entry<measurements, LatencyHistogram> hist : entry.getValue().entrySet())
+      {
+        LatencyHistogram h = hist.getValue();
+        System.out.printf("%-24s, %-32s, %10d, %10d, %10d, %10d, %10d\n",
+                          entry.getKey(),
+                          hist.getKey().name(),
+                          h.getValueAtPercentile(50.0),
+                          h.getValueAtPercentile(90.0),
+                          h.getValueAtPercentile(99.0),
+                          h.getValueAtPercentile(99.9),
+                          h.getMax());
       }
-            
-      byte[] array = serializer.serialize(serializer.create());
-      System.out.printf("%-24s, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %15.5f, %10d\n",
+    }
+    System.out.println();
+  }
+
+  /**
+   * Runs serialize+deserialize round-trips of each serializer for a fixed time
+   * and reports collections, collection time and promotion caused by them.
+   * Unlike {@link #start}, no GCs are forced between or during measurements:
+   * the point is to see how much GC work each serializer causes.
+   */
+  @SuppressWarnings("unchecked")
+  private void startGcImpact(long msecs) throws Exception
+  {
+    System.out.printf("%-24s, %12s, %12s, %10s, %10s, %10s, %10s, %12s, %10s\n",
+                      " ",
+                      "Round-trips/s",
+                      "Alloc MB/s",
+                      "Young GCs",
+                      "Young ms",
+                      "Old GCs",
+                      "Old ms",
+                      "Promoted KB",
+                      "GC time %");
+    GcMonitor monitor = new GcMonitor();
+    for (ObjectSerializer<Object> serializer : _serializers)
+    {
+      Object obj = serializer.create();
+      long endTime = System.currentTimeMillis() + WARMUP_MSECS;
+      do
+      {
+        serializer.deserialize(serializer.serialize(obj));
+      }
+      while (System.currentTimeMillis() < endTime);
+      // start from an empty heap, so that earlier serializers' garbage is not billed
+      doGc();
+
+      monitor.start();
+      long allocBefore = ThreadUsage.allocatedBytes();
+      long start = System.nanoTime();
+      long end = start + msecs * 1000000L;
+      long count = 0;
+      long now;
+      do
+      {
+        serializer.deserialize(serializer.serialize(obj));
+        ++count;
+      }
+      while ((now = System.nanoTime()) < end);
+      long allocAfter = ThreadUsage.allocatedBytes();
+      monitor.stop();
+
+      double secs = (now - start) / 1000000000.0;
+      double allocMB = (allocBefore < 0) ? Double.NaN : (allocAfter - allocBefore) / (1024.0 * 1024.0);
+      System.out.printf("%-24s, %12.0f, %12.1f, %10d, %10d, %10d, %10d, %12s, %9.2f%%\n",
                         serializer.getName(),
-                        timeCreate,
-                        timeSerializeDifferentObjects,
-                        timeSerializeSameObject,
-                        timeDeserializeNoFieldAccess,
-                        timeDeserializeAndCheckMediaField,
-                        timeDeserializeAndCheckAllFields,
-                        totalTime,
-                        array.length);
-
-     	addValue(values, serializer.getName(), timeCreate, timeSerializeDifferentObjects, timeSerializeSameObject, 
-             timeDeserializeNoFieldAccess, timeDeserializeAndCheckMediaField, timeDeserializeAndCheckAllFields, totalTime, array.length);
+                        count / secs,
+                        allocMB / secs,
+                        monitor.youngCount,
+                        monitor.youngTimeMsecs,
+                        monitor.oldCount,
+                        monitor.oldTimeMsecs,
+                        (monitor.promotedBytes < 0) ? "n/a" : String.valueOf(monitor.promotedBytes / 1024),
+                        100.0 * (monitor.youngTimeMsecs + monitor.oldTimeMsecs) / (secs * 1000.0));
     }
-    printImages(values);
   }
 
     /**
@@ -302,7 +1359,7 @@ public class BenchmarkRunner
      * after steps 1 and 3).
      * Currently only done for StdMediaDeserializer...
      */
-    private void checkCorrectness(ObjectSerializer serializer)
+    private void checkCorrectness(ObjectSerializer<Object> serializer)
         throws Exception
     {
         Object input = serializer.create();
@@ -319,7 +1376,87 @@ public class BenchmarkRunner
         }
     }
 
-  private void printImages(EnumMap<measurements, Map<String, Double>> values)
+  /**
+   * Checks that writing to a stream produces the same bytes as {@link ObjectSerializer#serialize}.
+   */
+  private void checkStreamOutput(OutputStreamSerializer<Object> serializer, GrowableByteArrayOutputStream out)
+    throws Exception
+  {
+    Object input = serializer.create();
+    byte[] array = serializer.serialize(input);
+    out.reset();
+    serializer.serialize(input, out);
+    if (!Arrays.equals(array, out.toByteArray())) {
+      System.err.println("WARN: serializer '"+serializer.getName()+"' writes "+out.size()+" bytes to a stream but "
+                         +array.length+" bytes to an array, or different ones");
+    }
+  }
+
+  /**
+   * Checks that serializing through a {@link ByteBufferOutputStream} writes the same
+   * as {@link ObjectSerializer#serialize}.
+   */
+  private void checkDirectBufferOutput(OutputStreamSerializer<Object> serializer, ByteBufferOutputStream out)
+    throws Exception
+  {
+    Object input = serializer.create();
+    byte[] array = serializer.serialize(input);
+    ByteBuffer buffer = out.getBuffer();
+    buffer.clear();
+    serializer.serialize(input, out);
+    buffer.flip();
+    byte[] written = new byte[buffer.remaining()];
+    buffer.get(written);
+    if (!Arrays.equals(array, written)) {
+      System.err.println("WARN: serializer '"+serializer.getName()+"' writes "+written.length+" bytes to a direct buffer but "
+                         +array.length+" bytes to an array, or different ones");
+    }
+  }
+
+  /**
+   * Checks that deserializing from a buffer produces the same as {@link ObjectSerializer#deserialize}.
+   */
+  private void checkBufferInput(ByteBufferDeserializer<Object> serializer, ByteBuffer buffer)
+    throws Exception
+  {
+    Object input = serializer.create();
+    Object output = serializer.deserialize(buffer, BUFFER_OFFSET, buffer.limit() - BUFFER_OFFSET);
+    if (!input.equals(output) || buffer.position() != 0) {
+      System.err.println("WARN: serializer '"+serializer.getName()+"' failed round-trip test when deserializing from a buffer, "
+                         +"or moved its position; input="+input+", output="+output);
+    }
+  }
+
+  /**
+   * Checks that deserializing into an earlier object produces the same as {@link ObjectSerializer#deserialize}.
+   */
+  private void checkReuse(ReusingDeserializer<Object> serializer) throws Exception
+  {
+    Object input = serializer.create();
+    byte[] array = serializer.serialize(input);
+    Object output = serializer.deserialize(array, null);
+    output = serializer.deserialize(array, output);
+    if (!input.equals(output)) {
+      System.err.println("WARN: serializer '"+serializer.getName()+"' failed round-trip test when deserializing into "
+                         +"an earlier object; input="+input+", output="+output);
+    }
+  }
+
+  /**
+   * Copies data into a direct buffer after {@link #BUFFER_OFFSET} bytes of
+   * something else, like a message received into a larger network buffer.
+   */
+  private static ByteBuffer toDirectBuffer(byte[] array)
+  {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_OFFSET + array.length);
+    for (int i = 0; i < BUFFER_OFFSET; ++i)
+      buffer.put((byte) 0xFF);
+    buffer.put(array);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void printImages(EnumMap<measurements, Map<String, Double>> values)
   {
     for (measurements m : values.keySet()) {
      Map<String, Double> map = values.get(m);
@@ -340,7 +1477,7 @@ public class BenchmarkRunner
     }
   }
 
-  private void printImage(Map<String, Double> map, measurements m)
+  private static void printImage(Map<String, Double> map, measurements m)
   {
     StringBuilder valSb = new StringBuilder();
     String names = "";
@@ -365,12 +1502,13 @@ public class BenchmarkRunner
 
   }
 
-  private void addValue(EnumMap<measurements, Map<String, Double>> values,
+  private static void addValue(EnumMap<measurements, Map<String, Double>> values,
                         String name,
                         double timeCreate,
                         double timeSerializeDifferentObjects,
                         double timeSerializeSameObject,
                         double timeDeserializeNoFieldAccess,
+                        double timeDeserializeAndCheckMediaUri,
                         double timeDeserializeAndCheckMediaField, 
                         double timeDeserializeAndCheckAllFields,
                         double totalTime,
@@ -381,6 +1519,7 @@ public class BenchmarkRunner
 	    values.get(measurements.timeSerializeDifferentObjects).put(name, timeSerializeDifferentObjects);
 	    values.get(measurements.timeSerializeSameObject).put(name, timeSerializeSameObject);
 	    values.get(measurements.timeDeserializeNoFieldAccess).put(name, timeDeserializeNoFieldAccess);
+	    values.get(measurements.timeDeserializeAndCheckMediaUri).put(name, timeDeserializeAndCheckMediaUri);
 	    values.get(measurements.timeDeserializeAndCheckMediaField).put(name, timeDeserializeAndCheckMediaField);
 	    values.get(measurements.timeDeserializeAndCheckAllFields).put(name, timeDeserializeAndCheckAllFields);
 	    values.get(measurements.totalTime).put(name, totalTime);
@@ -389,36 +1528,54 @@ public class BenchmarkRunner
     values.get(measurements.timeCreate).put(name, timeCreate);
   }
 
-  private <T> void warmCreation(ObjectSerializer<T> serializer) throws Exception
+  /**
+   * @return Milliseconds spent warming up
+   */
+  private <T> long warmCreation(final ObjectSerializer<T> serializer) throws Exception
   {
-    // Instead of fixed counts, let's try to prime by running for N seconds
-    long endTime = System.currentTimeMillis() + WARMUP_MSECS;
-    do
-    {
-      createObjects(serializer, 1);
-    }
-    while (System.currentTimeMillis() < endTime);
+    return warmUp(serializer, "create", new WarmupController.Task() {
+      public double run(int iterations) throws Exception
+      {
+        return createObjects(serializer, iterations);
+      }
+    });
   }
 
-  private <T> void warmSerialization(ObjectSerializer<T> serializer) throws Exception
+  private <T> long warmSerialization(final ObjectSerializer<T> serializer) throws Exception
   {
-    // Instead of fixed counts, let's try to prime by running for N seconds
-    long endTime = System.currentTimeMillis() + WARMUP_MSECS;
-    do
-    {
-      serializeDifferentObjects(serializer, 1);
-    }
-    while (System.currentTimeMillis() < endTime);
+    return warmUp(serializer, "serialize", new WarmupController.Task() {
+      public double run(int iterations) throws Exception
+      {
+        return serializeDifferentObjects(serializer, iterations);
+      }
+    });
+  }
+
+  private <T> long warmDeserialization(final ObjectSerializer<T> serializer) throws Exception
+  {
+    return warmUp(serializer, "deserialize", new WarmupController.Task() {
+      public double run(int iterations) throws Exception
+      {
+        return deserializeNoFieldAccess(serializer, iterations, null);
+      }
+    });
   }
 
-  private <T> void warmDeserialization(ObjectSerializer<T> serializer) throws Exception
+  private long warmUp(ObjectSerializer<?> serializer, String operation, WarmupController.Task task) throws Exception
   {
-    // Instead of fixed counts, let's try to prime by running for N seconds
-    long endTime = System.currentTimeMillis() + WARMUP_MSECS;
-    do
+    _jit.startWarmup();
+    long msecs;
+    try
     {
-      deserializeNoFieldAccess(serializer, 1);
+      msecs = _warmup.warmUp(task);
+    }
+    finally
+    {
+      _jit.endWarmup();
+    }
+    if (!_warmup.steady) {
+      System.err.println("WARN: '"+serializer.getName()+"' "+operation+" timing not stable after "+msecs+" msecs warm-up");
     }
-    while (System.currentTimeMillis() < endTime);
+    return msecs;
   }
 }
@@ -0,0 +1,127 @@
+package serializers;
+
+/**
+ * Reads what {@link BinaryOutput} writes, from an array that can be reset to
+ * read the next message; strings are built from a reused char array.
+ *<p>
+ * Subclasses get at the array directly, for encodings of their own.
+ */
+public class BinaryInput
+{
+  protected byte[] _input;
+  protected int _position;
+  private char[] _chars = new char[256];
+
+  /**
+   * @param input Array to read from, not copied; or null to let go of the
+   *   last one
+   */
+  public final void reset(byte[] input, int offset)
+  {
+    _input = input;
+    _position = offset;
+  }
+
+  public final int position()
+  {
+    return _position;
+  }
+
+  public final int readByte()
+  {
+    return _input[_position++] & 0xFF;
+  }
+
+  public final int readVarint()
+  {
+    byte[] input = _input;
+    int pos = _position;
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = input[pos++];
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    _position = pos;
+    return value;
+  }
+
+  public final long readVarlong()
+  {
+    byte[] input = _input;
+    int pos = _position;
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = input[pos++];
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    _position = pos;
+    return value;
+  }
+
+  /**
+   * Reads a signed int written by {@link BinaryOutput#writeSignedVarint}.
+   */
+  public final int readSignedVarint()
+  {
+    int value = readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public final long readSignedVarlong()
+  {
+    long value = readVarlong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Reads <code>len</code> bytes of UTF-8, as {@link BinaryOutput#writeUtf8}
+   * writes them.
+   */
+  public final String readUtf8(int len)
+  {
+    if (_chars.length < len) {
+      _chars = new char[len];
+    }
+    byte[] input = _input;
+    char[] chars = _chars;
+    int pos = _position;
+    int end = pos + len;
+    int count = 0;
+    // ASCII fast path, until first multi-byte sequence (if any)
+    while (pos < end && input[pos] >= 0) {
+      chars[count++] = (char) input[pos++];
+    }
+    while (pos < end) {
+      int b = input[pos++] & 0xFF;
+      if (b < 0x80) {
+        chars[count++] = (char) b;
+      } else if (b < 0xE0) {
+        chars[count++] = (char) (((b & 0x1F) << 6) | (input[pos++] & 0x3F));
+      } else if (b < 0xF0) {
+        chars[count++] = (char) (((b & 0x0F) << 12) | ((input[pos++] & 0x3F) << 6) | (input[pos++] & 0x3F));
+      } else {
+        int c = ((b & 0x07) << 18) | ((input[pos++] & 0x3F) << 12) | ((input[pos++] & 0x3F) << 6) | (input[pos++] & 0x3F);
+        c -= 0x10000;
+        chars[count++] = (char) (0xD800 | (c >> 10));
+        chars[count++] = (char) (0xDC00 | (c & 0x3FF));
+      }
+    }
+    _position = pos;
+    return new String(chars, 0, count);
+  }
+
+  /**
+   * Reads a string as {@link BinaryOutput#writeString} writes it.
+   */
+  public final String readString()
+  {
+    int len = readVarint() - 1;
+    return (len < 0) ? null : readUtf8(len);
+  }
+}
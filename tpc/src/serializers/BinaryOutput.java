@@ -0,0 +1,180 @@
+package serializers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Growable, reusable array for hand-written and generated binary codecs to
+ * write to: varints (with zigzag encoding for signed values, so that
+ * negative values stay short) and UTF-8 strings, with a fast path for
+ * ASCII. {@link BinaryInput} reads them back.
+ *<p>
+ * Subclasses get at the array directly, for encodings of their own.
+ */
+public class BinaryOutput
+{
+  protected byte[] _buffer;
+  protected int _position;
+
+  public BinaryOutput(int initialSize)
+  {
+    _buffer = new byte[initialSize];
+  }
+
+  public final void reset()
+  {
+    _position = 0;
+  }
+
+  public final int size()
+  {
+    return _position;
+  }
+
+  public final byte[] toByteArray()
+  {
+    byte[] array = new byte[_position];
+    System.arraycopy(_buffer, 0, array, 0, _position);
+    return array;
+  }
+
+  public final void writeTo(OutputStream out) throws IOException
+  {
+    out.write(_buffer, 0, _position);
+  }
+
+  protected final void ensureCapacity(int bytes)
+  {
+    if (_position + bytes > _buffer.length) {
+      byte[] buffer = new byte[Math.max(_buffer.length * 2, _position + bytes)];
+      System.arraycopy(_buffer, 0, buffer, 0, _position);
+      _buffer = buffer;
+    }
+  }
+
+  public final void writeByte(int value)
+  {
+    ensureCapacity(1);
+    _buffer[_position++] = (byte) value;
+  }
+
+  public final void writeVarint(int value)
+  {
+    ensureCapacity(5);
+    byte[] buffer = _buffer;
+    int pos = _position;
+    while ((value & ~0x7F) != 0) {
+      buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[pos++] = (byte) value;
+    _position = pos;
+  }
+
+  public final void writeVarlong(long value)
+  {
+    ensureCapacity(10);
+    byte[] buffer = _buffer;
+    int pos = _position;
+    while ((value & ~0x7FL) != 0) {
+      buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[pos++] = (byte) value;
+    _position = pos;
+  }
+
+  /**
+   * Writes a signed int as a zigzag-encoded varint.
+   */
+  public final void writeSignedVarint(int value)
+  {
+    writeVarint((value << 1) ^ (value >> 31));
+  }
+
+  public final void writeSignedVarlong(long value)
+  {
+    writeVarlong((value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Writes string as UTF-8, with no length or null marker (see
+   * {@link #writeString} for those).
+   *
+   * @return Number of bytes written
+   */
+  public final int writeUtf8(String str)
+  {
+    int len = str.length();
+    ensureCapacity(len * 3);
+    byte[] buffer = _buffer;
+    int start = _position;
+    int pos = start;
+    int i = 0;
+    // ASCII fast path, until first multi-byte char (if any)
+    while (i < len) {
+      char c = str.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      buffer[pos++] = (byte) c;
+      ++i;
+    }
+    for (; i < len; ++i) {
+      int c = str.charAt(i);
+      if (c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xC0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate((char) c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+        c = Character.toCodePoint((char) c, str.charAt(++i));
+        buffer[pos++] = (byte) (0xF0 | (c >> 18));
+        buffer[pos++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        buffer[pos++] = (byte) (0xE0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    _position = pos;
+    return pos - start;
+  }
+
+  /**
+   * Writes string as UTF-8 prefixed by its length in bytes + 1 as a
+   * varint, or just 0 if null.
+   */
+  public final void writeString(String str)
+  {
+    if (str == null) {
+      writeVarint(0);
+      return;
+    }
+    writeVarint(utf8Length(str) + 1);
+    writeUtf8(str);
+  }
+
+  public static int utf8Length(String str)
+  {
+    int len = str.length();
+    int bytes = len;
+    for (int i = 0; i < len; ++i) {
+      char c = str.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes += 1;
+        } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+          // two chars, four bytes
+          bytes += 2;
+          ++i;
+        } else {
+          bytes += 2;
+        }
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,18 @@
+package serializers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer that can deserialize from part of a {@link ByteBuffer}, heap or
+ * direct, as received from a network layer, without the caller having to
+ * copy it to an exactly sized array for {@link #deserialize(byte[])} first.
+ */
+public interface ByteBufferDeserializer<T> extends ObjectSerializer<T>
+{
+    /**
+     * Deserializes <code>length</code> bytes starting at (absolute)
+     * <code>offset</code>; does not change position or limit of the buffer,
+     * so several threads can read from one buffer.
+     */
+    public T deserialize(ByteBuffer buffer, int offset, int length) throws Exception;
+}
@@ -0,0 +1,61 @@
+package serializers;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads given range of a {@link ByteBuffer} (heap or direct), for libraries
+ * that read from streams; the buffer's own position and limit are left
+ * alone.
+ */
+public class ByteBufferInputStream extends InputStream
+{
+  private final ByteBuffer _buffer;
+
+  public ByteBufferInputStream(ByteBuffer buffer, int offset, int length)
+  {
+    _buffer = slice(buffer, offset, length);
+  }
+
+  /**
+   * @return View of given range of the buffer, with its own position (at
+   *   <code>offset</code>) and limit (at end of range)
+   */
+  public static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+  {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + length);
+    view.position(offset);
+    return view;
+  }
+
+  public int read()
+  {
+    return _buffer.hasRemaining() ? (_buffer.get() & 0xFF) : -1;
+  }
+
+  public int read(byte[] b, int off, int len)
+  {
+    if (len == 0) {
+      return 0;
+    }
+    int count = Math.min(len, _buffer.remaining());
+    if (count == 0) {
+      return -1;
+    }
+    _buffer.get(b, off, count);
+    return count;
+  }
+
+  public long skip(long n)
+  {
+    int count = (int) Math.min(Math.max(n, 0L), _buffer.remaining());
+    _buffer.position(_buffer.position() + count);
+    return count;
+  }
+
+  public int available()
+  {
+    return _buffer.remaining();
+  }
+}
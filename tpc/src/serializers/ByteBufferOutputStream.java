@@ -0,0 +1,34 @@
+package serializers;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes to a {@link ByteBuffer} (heap or direct) at its position, which is
+ * advanced; writing more than there is room for throws
+ * {@link java.nio.BufferOverflowException}, as buffers do not grow.
+ */
+public class ByteBufferOutputStream extends OutputStream
+{
+  private final ByteBuffer _buffer;
+
+  public ByteBufferOutputStream(ByteBuffer buffer)
+  {
+    _buffer = buffer;
+  }
+
+  public ByteBuffer getBuffer()
+  {
+    return _buffer;
+  }
+
+  public void write(int b)
+  {
+    _buffer.put((byte) b);
+  }
+
+  public void write(byte[] b, int off, int len)
+  {
+    _buffer.put(b, off, len);
+  }
+}
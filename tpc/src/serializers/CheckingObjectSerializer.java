@@ -1,6 +1,12 @@
 package serializers;
 
+/**
+ * Serializer that can access fields of deserialized objects, so that cost of
+ * formats that decode lazily (on access) gets measured: just
+ * <code>media.uri</code>, the whole media message, or everything.
+ */
 public interface CheckingObjectSerializer<T> extends ObjectSerializer<T> {
     public void checkAllFields(T obj);
     public void checkMediaField(T obj);
+    public void checkMediaUri(T obj);
 }
@@ -0,0 +1,154 @@
+package serializers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures what it costs to serialize and deserialize the first object in a
+ * new JVM: constructing the serializer (which includes loading and
+ * initializing its classes and those of the library, parsing schemas,
+ * registering classes and so on), creating the first object, and the first
+ * serialization and deserialization (which run in the interpreter and load
+ * yet more classes). This is what processes that only handle a few messages
+ * pay, and what the warmed-up measurements leave out on purpose.
+ *<p>
+ * Each serializer is measured in several fresh JVMs (see {@link ForkedJvm})
+ * and medians are reported.
+ */
+class ColdStartBenchmark
+{
+  /**
+   * Names of values measured in the child JVM, in the order they are written.
+   */
+  private final static String[] COLUMNS = { "Construct ms", "create() ms", "1st ser. ms", "1st deser. ms", "Total ms", "Classes" };
+
+  private final int _runs;
+
+  ColdStartBenchmark(int runs)
+  {
+    _runs = runs;
+  }
+
+  void printHeader()
+  {
+    System.out.printf("%-24s", " ");
+    for (String column : COLUMNS)
+      System.out.printf(", %13s", column);
+    System.out.println();
+  }
+
+  void run(String name) throws Exception
+  {
+    double[][] runs = new double[_runs][];
+    for (int i = 0; i < _runs; ++i)
+    {
+      File file = File.createTempFile("tpc-", ".coldstart");
+      try
+      {
+        int exitCode = ForkedJvm.run(Collections.<String>emptyList(), "-coldstart-child="+file.getPath(), name);
+        if (exitCode != 0) {
+          System.err.println("WARN: child JVM for '"+name+"' exited with code "+exitCode+", skipping");
+          return;
+        }
+        runs[i] = read(file);
+      }
+      finally
+      {
+        file.delete();
+      }
+    }
+    System.out.printf("%-24s", name);
+    for (int column = 0; column < COLUMNS.length; ++column)
+    {
+      double[] values = new double[_runs];
+      for (int i = 0; i < _runs; ++i)
+        values[i] = runs[i][column];
+      System.out.printf(", %13.2f", median(values));
+    }
+    System.out.println();
+  }
+
+  private static double median(double[] values)
+  {
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int mid = sorted.length / 2;
+    return (sorted.length % 2 == 1) ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+  }
+
+  private static double[] read(File file) throws IOException
+  {
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try
+    {
+      String line = in.readLine();
+      String[] parts = (line == null) ? new String[0] : line.split("\t");
+      if (parts.length != COLUMNS.length) {
+        throw new IOException("Expected "+COLUMNS.length+" values in "+file+", got '"+line+"'");
+      }
+      double[] values = new double[parts.length];
+      for (int i = 0; i < parts.length; ++i)
+        values[i] = Double.parseDouble(parts[i]);
+      return values;
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Does the measurements in the child JVM; must be called before anything
+   * else touches the serializer's classes.
+   */
+  @SuppressWarnings("unchecked")
+  static void runChild(String name, File file) throws Exception
+  {
+    ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+    long classesBefore = classLoading.getTotalLoadedClassCount();
+
+    long start = System.nanoTime();
+    ObjectSerializer<Object> serializer = BenchmarkRunner.createSerializer(name);
+    long constructed = System.nanoTime();
+    Object obj = serializer.create();
+    long created = System.nanoTime();
+    byte[] array = serializer.serialize(obj);
+    long serialized = System.nanoTime();
+    Object copy = serializer.deserialize(array);
+    long deserialized = System.nanoTime();
+
+    long classes = classLoading.getTotalLoadedClassCount() - classesBefore;
+    if (copy == null) {
+      throw new IllegalStateException("Serializer '"+name+"' deserialized null");
+    }
+    List<Double> values = Arrays.asList(msecs(start, constructed), msecs(constructed, created),
+                                        msecs(created, serialized), msecs(serialized, deserialized),
+                                        msecs(start, deserialized), (double) classes);
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      StringBuilder sb = new StringBuilder();
+      for (Double value : values)
+        sb.append(sb.length() == 0 ? "" : "\t").append(value);
+      out.println(sb);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  private static double msecs(long from, long to)
+  {
+    return (to - from) / 1000000.0;
+  }
+}
@@ -0,0 +1,159 @@
+package serializers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of <code>-XX:+PrintCompilation</code> output of a JVM, as written
+ * to a HotSpot log file (<code>-XX:+LogVMOutput -XX:LogFile=...</code>):
+ * number of compilations, how many of them by the optimizing (C2) compiler,
+ * deoptimizations, and the methods compiled most often. Methods that keep
+ * being recompiled are the ones the JIT spends its budget on.
+ *<p>
+ * Lines look like
+ * <code>"  152   12  %  3       java.lang.String::hashCode @ 5 (55 bytes)"</code>:
+ * timestamp, compile id, flags, tier (missing without tiered compilation),
+ * method and size; deoptimizations have "made not entrant" appended.
+ */
+class CompilationLog
+{
+  /**
+   * JVM flags needed for the log; file name is to be appended to the last one.
+   */
+  final static List<String> JVM_ARGS = Arrays.asList("-XX:+UnlockDiagnosticVMOptions",
+                                                     "-XX:+PrintCompilation",
+                                                     "-XX:+LogVMOutput",
+                                                     "-XX:-DisplayVMOutput",
+                                                     "-XX:LogFile=");
+
+  final static int TOP_METHODS = 10;
+
+  int compilations;
+  int optimizedCompilations;
+  int deoptimizations;
+  final Map<String, Integer> compilationsByMethod = new HashMap<String, Integer>();
+  final Map<String, Integer> sizeByMethod = new HashMap<String, Integer>();
+
+  static List<String> jvmArgs(File logFile)
+  {
+    List<String> args = new ArrayList<String>(JVM_ARGS);
+    int last = args.size() - 1;
+    args.set(last, args.get(last) + logFile.getPath());
+    return args;
+  }
+
+  static CompilationLog parse(File file) throws IOException
+  {
+    CompilationLog log = new CompilationLog();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try
+    {
+      String line;
+      while ((line = in.readLine()) != null)
+        log.parseLine(line);
+    }
+    finally
+    {
+      in.close();
+    }
+    return log;
+  }
+
+  private void parseLine(String line)
+  {
+    String[] tokens = line.trim().split("\\s+");
+    int method = -1;
+    for (int i = 0; i < tokens.length; ++i)
+    {
+      if (tokens[i].indexOf("::") > 0) {
+        method = i;
+        break;
+      }
+    }
+    // must start with timestamp and compile id
+    if (method < 2 || !isNumber(tokens[0]) || !isNumber(tokens[1])) {
+      return;
+    }
+    String name = tokens[method].replace("&lt;", "<").replace("&gt;", ">");
+    if (line.contains("made not entrant")) {
+      ++deoptimizations;
+      return;
+    }
+    ++compilations;
+    // tier, if present, is the last token before the method; 4 is C2, no tiers means C2 only
+    String tier = tokens[method - 1];
+    if (!isNumber(tier) || method == 2 || tier.equals("4")) {
+      ++optimizedCompilations;
+    }
+    Integer count = compilationsByMethod.get(name);
+    compilationsByMethod.put(name, (count == null) ? 1 : count + 1);
+    int bytes = line.indexOf(" bytes)");
+    if (bytes > 0) {
+      int open = line.lastIndexOf('(', bytes);
+      String size = line.substring(open + 1, bytes).trim();
+      if (isNumber(size)) {
+        sizeByMethod.put(name, Integer.valueOf(size));
+      }
+    }
+  }
+
+  private static boolean isNumber(String s)
+  {
+    if (s.length() == 0) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); ++i)
+    {
+      if (!Character.isDigit(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Names of the methods compiled most often, most often first
+   */
+  List<String> topMethods()
+  {
+    List<String> methods = new ArrayList<String>(compilationsByMethod.keySet());
+    Collections.sort(methods, new Comparator<String>() {
+      public int compare(String m1, String m2)
+      {
+        int diff = compilationsByMethod.get(m2) - compilationsByMethod.get(m1);
+        return (diff != 0) ? diff : m1.compareTo(m2);
+      }
+    });
+    return methods.subList(0, Math.min(TOP_METHODS, methods.size()));
+  }
+
+  static void printHeader()
+  {
+    System.out.printf("%-24s, %-60s, %10s, %10s, %10s\n",
+                      " ", "Compilation log", "Compiles", "C2", "Deopts");
+  }
+
+  void print(String serializer)
+  {
+    System.out.printf("%-24s, %-60s, %10d, %10d, %10d\n",
+                      serializer, "(all methods: "+compilationsByMethod.size()+")", compilations, optimizedCompilations, deoptimizations);
+    for (String method : topMethods())
+    {
+      Integer size = sizeByMethod.get(method);
+      String desc = (size == null) ? method : method+" ("+size+" bytes)";
+      if (desc.length() > 60) {
+        desc = "..."+desc.substring(desc.length() - 57);
+      }
+      System.out.printf("%-24s, %-60s, %10d\n", serializer, desc, compilationsByMethod.get(method));
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package serializers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import serializers.compression.Codec;
+import serializers.compression.Codecs;
+import serializers.compression.CompressedSerializer;
+import serializers.payload.PayloadConverter;
+import serializers.payload.PayloadConverters;
+import serializers.payload.PayloadGenerator;
+
+/**
+ * Measures what compressing serialized data with each of {@link Codecs}
+ * costs in CPU time and saves in bytes, for each serializer, to find out
+ * where compression pays off: verbose formats (JSON, XML) may shrink a lot
+ * for little CPU, compact binary ones hardly at all.
+ *<p>
+ * Each serializer is measured with its own test object (a couple of hundred
+ * bytes, where codecs have little repetition to work with) and with a
+ * larger document from {@link PayloadGenerator}, if there is a converter
+ * for its model. Times are thread CPU time in microseconds (wall time if
+ * the JVM does not support CPU time); "Saved B/us" is the number of bytes
+ * saved for each microsecond spent compressing and decompressing.
+ */
+class CompressionBenchmark
+{
+  final static long WARMUP_MSECS = 300;
+  final static long MEASURE_MSECS = 300;
+
+  /**
+   * Larger document: 64 images with the default string lengths.
+   */
+  final static int LARGE_IMAGES = 64;
+
+  private abstract static class Operation
+  {
+    abstract void run() throws Exception;
+  }
+
+  void printHeader()
+  {
+    System.out.printf("%-24s, %-10s, %-9s, %10s, %8s, %12s, %12s, %12s, %12s, %12s\n",
+                      " ", "Codec", "Document", "Bytes", "% of raw",
+                      "Ser. us", "Compress us", "Decompr. us", "Deser. us", "Saved B/us");
+  }
+
+  @SuppressWarnings("unchecked")
+  void run(ObjectSerializer<Object> serializer) throws Exception
+  {
+    List<String> documents = new ArrayList<String>();
+    List<Object> objects = new ArrayList<Object>();
+    documents.add("create()");
+    objects.add(serializer.create());
+    PayloadConverter<Object> converter = (PayloadConverter<Object>) PayloadConverters.converterFor(serializer.create());
+    if (converter != null) {
+      documents.add(LARGE_IMAGES+" images");
+      objects.add(converter.convert(new PayloadGenerator(LARGE_IMAGES, ScalingBenchmark.BASE_PERSONS,
+                                                         ScalingBenchmark.BASE_STRING_LENGTH, ScalingBenchmark.BASE_MAGNITUDE).generate()));
+    }
+    for (int i = 0; i < objects.size(); ++i)
+    {
+      try
+      {
+        run(serializer, documents.get(i), objects.get(i));
+      }
+      catch (Exception e)
+      {
+        System.err.println("WARN: '"+serializer.getName()+"' failed for "+documents.get(i)+": "+e);
+      }
+    }
+  }
+
+  private void run(final ObjectSerializer<Object> serializer, String document, final Object obj) throws Exception
+  {
+    final byte[] raw = serializer.serialize(obj);
+    double serialize = cpuMicros(new Operation() { void run() throws Exception { serializer.serialize(obj); } });
+    double deserialize = cpuMicros(new Operation() { void run() throws Exception { serializer.deserialize(raw); } });
+    printRow(serializer.getName(), "none", document, raw.length, raw.length, serialize, 0.0, 0.0, deserialize);
+
+    for (final Codec codec : Codecs.all())
+    {
+      final byte[] compressed = codec.compress(raw);
+      if (!Arrays.equals(raw, codec.decompress(compressed))) {
+        throw new Exception("codec "+codec.getName()+" did not decompress to original data");
+      }
+      // round-trip through the decorator, as it would be used
+      ObjectSerializer<Object> wrapped = CompressedSerializer.wrap(serializer, codec);
+      if (wrapped.deserialize(wrapped.serialize(obj)) == null) {
+        throw new Exception("'"+wrapped.getName()+"' deserialized null");
+      }
+      double compress = cpuMicros(new Operation() { void run() throws Exception { codec.compress(raw); } });
+      double decompress = cpuMicros(new Operation() { void run() throws Exception { codec.decompress(compressed); } });
+      printRow(serializer.getName(), codec.getName(), document, raw.length, compressed.length,
+               serialize, compress, decompress, deserialize);
+    }
+  }
+
+  private void printRow(String name, String codec, String document, int rawLength, int length,
+                        double serialize, double compress, double decompress, double deserialize)
+  {
+    double saved = (compress + decompress > 0.0) ? (rawLength - length) / (compress + decompress) : Double.NaN;
+    System.out.printf("%-24s, %-10s, %-9s, %10d, %8.1f, %12.2f, %12.2f, %12.2f, %12.2f, %12s\n",
+                      name, codec, document, length, 100.0 * length / rawLength,
+                      serialize, compress, decompress, deserialize,
+                      Double.isNaN(saved) ? "-" : String.format("%.1f", saved));
+  }
+
+  /**
+   * Runs operation repeatedly for {@link #WARMUP_MSECS}, then for
+   * {@link #MEASURE_MSECS}.
+   *
+   * @return CPU time per operation in microseconds
+   */
+  private double cpuMicros(Operation op) throws Exception
+  {
+    repeat(op, WARMUP_MSECS);
+    return repeat(op, MEASURE_MSECS);
+  }
+
+  private double repeat(Operation op, long msecs) throws Exception
+  {
+    long end = System.nanoTime() + msecs * 1000000L;
+    long startCpu = ThreadUsage.cpuTime();
+    long start = System.nanoTime();
+    long count = 0;
+    do
+    {
+      op.run();
+      ++count;
+    }
+    while (System.nanoTime() < end);
+    long time = (startCpu < 0) ? System.nanoTime() - start : ThreadUsage.cpuTime() - startCpu;
+    return time / 1000.0 / count;
+  }
+}
@@ -0,0 +1,152 @@
+package serializers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets one serializer be called from many threads at once, as in a server.
+ * Most serializers keep state in the instance (sizing hints, reused buffers
+ * and writers) and so can not be shared directly; this hands each call an
+ * instance from a {@link SerializerFactory} that no other thread is using:
+ *<ul>
+ * <li>{@link #perCall}: a new instance for every call, so nothing is reused
+ *  </li>
+ * <li>{@link #threadLocal}: one instance per thread, kept as long as the
+ *   thread lives; only pays off with long-lived (pooled) threads
+ *  </li>
+ * <li>{@link #pooled}: instances from a shared pool that keeps at most given
+ *   number of idle ones; when the pool is empty a new instance is created,
+ *   and when it is full a returned instance is dropped
+ *  </li>
+ *</ul>
+ * Name is that of the wrapped serializer.
+ */
+public abstract class ConcurrentObjectSerializer<T> implements ObjectSerializer<T>
+{
+  private final SerializerFactory<T> _factory;
+  private final String _name;
+  private final AtomicInteger _created = new AtomicInteger();
+
+  protected ConcurrentObjectSerializer(SerializerFactory<T> factory) throws Exception
+  {
+    _factory = factory;
+    _name = factory.create().getName();
+  }
+
+  public static <T> ConcurrentObjectSerializer<T> perCall(SerializerFactory<T> factory) throws Exception
+  {
+    return new ConcurrentObjectSerializer<T>(factory) {
+      protected ObjectSerializer<T> acquire() throws Exception
+      {
+        return newInstance();
+      }
+
+      protected void release(ObjectSerializer<T> serializer) { }
+    };
+  }
+
+  public static <T> ConcurrentObjectSerializer<T> threadLocal(SerializerFactory<T> factory) throws Exception
+  {
+    final ThreadLocal<ObjectSerializer<T>> instances = new ThreadLocal<ObjectSerializer<T>>();
+    return new ConcurrentObjectSerializer<T>(factory) {
+      protected ObjectSerializer<T> acquire() throws Exception
+      {
+        ObjectSerializer<T> serializer = instances.get();
+        if (serializer == null) {
+          serializer = newInstance();
+          instances.set(serializer);
+        }
+        return serializer;
+      }
+
+      protected void release(ObjectSerializer<T> serializer) { }
+    };
+  }
+
+  /**
+   * @param maxIdle Maximum number of instances to keep between calls; more
+   *   may exist while that many threads are calling at once
+   */
+  public static <T> ConcurrentObjectSerializer<T> pooled(SerializerFactory<T> factory, int maxIdle) throws Exception
+  {
+    final BlockingQueue<ObjectSerializer<T>> pool = new ArrayBlockingQueue<ObjectSerializer<T>>(maxIdle);
+    return new ConcurrentObjectSerializer<T>(factory) {
+      protected ObjectSerializer<T> acquire() throws Exception
+      {
+        ObjectSerializer<T> serializer = pool.poll();
+        return (serializer != null) ? serializer : newInstance();
+      }
+
+      protected void release(ObjectSerializer<T> serializer)
+      {
+        pool.offer(serializer);
+      }
+    };
+  }
+
+  /**
+   * @return Instance that no other thread uses until {@link #release}d
+   */
+  protected abstract ObjectSerializer<T> acquire() throws Exception;
+
+  protected abstract void release(ObjectSerializer<T> serializer);
+
+  protected ObjectSerializer<T> newInstance() throws Exception
+  {
+    _created.incrementAndGet();
+    return _factory.create();
+  }
+
+  /**
+   * @return Number of serializer instances created for calls so far
+   */
+  public int getCreatedCount()
+  {
+    return _created.get();
+  }
+
+  public String getName()
+  {
+    return _name;
+  }
+
+  public T create() throws Exception
+  {
+    ObjectSerializer<T> serializer = acquire();
+    try
+    {
+      return serializer.create();
+    }
+    finally
+    {
+      release(serializer);
+    }
+  }
+
+  public byte[] serialize(T content) throws Exception
+  {
+    ObjectSerializer<T> serializer = acquire();
+    try
+    {
+      return serializer.serialize(content);
+    }
+    finally
+    {
+      release(serializer);
+    }
+  }
+
+  public T deserialize(byte[] array) throws Exception
+  {
+    ObjectSerializer<T> serializer = acquire();
+    try
+    {
+      return serializer.deserialize(array);
+    }
+    finally
+    {
+      release(serializer);
+    }
+  }
+}
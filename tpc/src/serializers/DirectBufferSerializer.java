@@ -0,0 +1,320 @@
+package serializers;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Hand-written codec that works on {@link ByteBuffer}s, meant for direct
+ * (off-heap) ones: {@link #serialize(MediaContent, ByteBuffer)} writes into
+ * a buffer that can be handed to a channel as is, and deserializing reads
+ * from one without copying it to the heap first.
+ *<p>
+ * Unlike {@link ManualSerializer}, values are fixed-width little-endian
+ * primitives (native order on common hardware) at aligned offsets, counted
+ * from the start of the message: ints at multiples of 4, longs at multiples
+ * of 8. Strings are an int length (-1 for null) followed by UTF-16 chars,
+ * padded to 4 bytes; null enums and lists are -1 too. Padding is written as
+ * zeros, so that nothing already in a reused buffer goes out with the
+ * message. This trades size for not having to branch on every byte.
+ *<p>
+ * As offsets are counted from the start of the message (so that the same
+ * bytes decode wherever they are copied to), values are only aligned in
+ * memory when the message starts at a position that is a multiple of 8 of
+ * a buffer from {@link ByteBuffer#allocateDirect}; after a length prefix of
+ * 4 bytes, for example, longs are not.
+ *<p>
+ * Access is through the buffer's absolute get/put methods, which for direct
+ * buffers the JIT compiles to the same loads and stores as
+ * <code>sun.misc.Unsafe</code> plus a bounds check. Going through Unsafe
+ * directly would only save that check, and would turn a message too big
+ * for the buffer into a write past its end instead of a
+ * {@link BufferOverflowException}.
+ */
+public class DirectBufferSerializer extends StdMediaSerializer
+{
+  private final static Media.Player[] PLAYERS = Media.Player.values();
+  private final static Image.Size[] SIZES = Image.Size.values();
+
+  // for serialize() into an array or stream, which need a copy anyway
+  private ByteBuffer _buffer = ByteBuffer.allocateDirect(1024).order(ByteOrder.LITTLE_ENDIAN);
+  private byte[] _copyBuffer = new byte[1024];
+  private char[] _chars = new char[256];
+
+  public DirectBufferSerializer()
+  {
+    super("direct buffer");
+  }
+
+  // // // Serialization
+
+  public byte[] serialize(MediaContent content) throws Exception
+  {
+    ByteBuffer buffer = serializeToBuffer(content);
+    byte[] array = new byte[buffer.remaining()];
+    buffer.get(array);
+    return array;
+  }
+
+  /**
+   * Writes to a {@link ByteBufferOutputStream} without a copy (see
+   * {@link #serialize(MediaContent, ByteBuffer)}); to other streams through
+   * a reused array.
+   */
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    if (out instanceof ByteBufferOutputStream) {
+      serialize(content, ((ByteBufferOutputStream) out).getBuffer());
+      return;
+    }
+    ByteBuffer buffer = serializeToBuffer(content);
+    while (buffer.hasRemaining()) {
+      int len = Math.min(buffer.remaining(), _copyBuffer.length);
+      buffer.get(_copyBuffer, 0, len);
+      out.write(_copyBuffer, 0, len);
+    }
+  }
+
+  /**
+   * Writes content at position of the buffer, which is advanced. Buffers in
+   * little-endian order are written to directly, others through a view
+   * (which costs an allocation per call).
+   *
+   * @throws BufferOverflowException If there is not enough room; nothing is
+   *   written then, but bytes after position may have been overwritten
+   */
+  public void serialize(MediaContent content, ByteBuffer buffer)
+  {
+    // byte order is a property of the buffer object, so use a view rather than change caller's
+    ByteBuffer target = (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int end;
+    try
+    {
+      end = writeMediaContent(target, buffer.position(), content);
+    }
+    catch (IndexOutOfBoundsException e)
+    {
+      throw new BufferOverflowException();
+    }
+    if (end > buffer.limit()) {
+      throw new BufferOverflowException();
+    }
+    buffer.position(end);
+  }
+
+  /**
+   * @return Internal buffer with content between position and limit; valid
+   *   until next call
+   */
+  private ByteBuffer serializeToBuffer(MediaContent content)
+  {
+    while (true) {
+      _buffer.clear();
+      try
+      {
+        serialize(content, _buffer);
+        _buffer.flip();
+        return _buffer;
+      }
+      catch (BufferOverflowException e)
+      {
+        _buffer = ByteBuffer.allocateDirect(_buffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+  }
+
+  private int writeMediaContent(ByteBuffer buffer, int base, MediaContent content)
+  {
+    int pos = writeMedia(buffer, base, base, content.getMedia());
+    List<Image> images = content.getImages();
+    if (images == null) {
+      buffer.putInt(pos, -1);
+      return pos + 4;
+    }
+    buffer.putInt(pos, images.size());
+    pos += 4;
+    for (int i = 0, len = images.size(); i < len; ++i) {
+      pos = writeImage(buffer, base, pos, images.get(i));
+    }
+    return pos;
+  }
+
+  private int writeMedia(ByteBuffer buffer, int base, int pos, Media media)
+  {
+    buffer.putInt(pos, (media.getPlayer() == null) ? -1 : media.getPlayer().ordinal());
+    pos = writeString(buffer, base, pos + 4, media.getUri());
+    pos = writeString(buffer, base, pos, media.getTitle());
+    buffer.putInt(pos, media.getWidth());
+    buffer.putInt(pos + 4, media.getHeight());
+    pos = writeString(buffer, base, pos + 8, media.getFormat());
+    if (align8(base, pos) != pos) {
+      buffer.putInt(pos, 0);
+      pos += 4;
+    }
+    buffer.putLong(pos, media.getDuration());
+    buffer.putLong(pos + 8, media.getSize());
+    buffer.putInt(pos + 16, media.getBitrate());
+    pos += 20;
+    List<String> persons = media.getPersons();
+    if (persons == null) {
+      buffer.putInt(pos, -1);
+      pos += 4;
+    } else {
+      buffer.putInt(pos, persons.size());
+      pos += 4;
+      for (int i = 0, len = persons.size(); i < len; ++i) {
+        pos = writeString(buffer, base, pos, persons.get(i));
+      }
+    }
+    return writeString(buffer, base, pos, media.getCopyright());
+  }
+
+  private int writeImage(ByteBuffer buffer, int base, int pos, Image image)
+  {
+    pos = writeString(buffer, base, pos, image.getUri());
+    pos = writeString(buffer, base, pos, image.getTitle());
+    buffer.putInt(pos, image.getWidth());
+    buffer.putInt(pos + 4, image.getHeight());
+    buffer.putInt(pos + 8, (image.getSize() == null) ? -1 : image.getSize().ordinal());
+    return pos + 12;
+  }
+
+  private static int writeString(ByteBuffer buffer, int base, int pos, String str)
+  {
+    if (str == null) {
+      buffer.putInt(pos, -1);
+      return pos + 4;
+    }
+    int len = str.length();
+    buffer.putInt(pos, len);
+    pos += 4;
+    for (int i = 0; i < len; ++i) {
+      buffer.putChar(pos, str.charAt(i));
+      pos += 2;
+    }
+    if (align4(base, pos) != pos) {
+      buffer.putChar(pos, (char) 0);
+      pos += 2;
+    }
+    return pos;
+  }
+
+  /**
+   * @return Position rounded up to a multiple of 4 bytes from start of message
+   */
+  private static int align4(int base, int pos)
+  {
+    return pos + ((base - pos) & 3);
+  }
+
+  /**
+   * @return Position rounded up to a multiple of 8 bytes from start of
+   *   message; positions are always multiples of 4 already
+   */
+  private static int align8(int base, int pos)
+  {
+    return pos + ((pos - base) & 4);
+  }
+
+  // // // Deserialization
+
+  public MediaContent deserialize(byte[] array) throws Exception
+  {
+    return readMediaContent(ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN), 0);
+  }
+
+  /**
+   * Reads directly from the buffer, heap or direct.
+   */
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    ByteBuffer source = (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    return readMediaContent(source, offset);
+  }
+
+  private MediaContent readMediaContent(ByteBuffer buffer, int base)
+  {
+    // positions are passed around in an array, as Java has no out parameters
+    int[] pos = new int[] { base };
+    MediaContent content = new MediaContent(readMedia(buffer, base, pos));
+    int count = buffer.getInt(pos[0]);
+    pos[0] += 4;
+    if (count >= 0) {
+      content.setImages(new ArrayList<Image>(count));
+      for (int i = 0; i < count; ++i) {
+        content.addImage(readImage(buffer, base, pos));
+      }
+    }
+    return content;
+  }
+
+  private Media readMedia(ByteBuffer buffer, int base, int[] pos)
+  {
+    Media media = new Media();
+    int player = buffer.getInt(pos[0]);
+    media.setPlayer((player < 0) ? null : PLAYERS[player]);
+    pos[0] += 4;
+    media.setUri(readString(buffer, base, pos));
+    media.setTitle(readString(buffer, base, pos));
+    media.setWidth(buffer.getInt(pos[0]));
+    media.setHeight(buffer.getInt(pos[0] + 4));
+    pos[0] += 8;
+    media.setFormat(readString(buffer, base, pos));
+    int p = align8(base, pos[0]);
+    media.setDuration(buffer.getLong(p));
+    media.setSize(buffer.getLong(p + 8));
+    media.setBitrate(buffer.getInt(p + 16));
+    int count = buffer.getInt(p + 20);
+    pos[0] = p + 24;
+    if (count >= 0) {
+      media.setPersons(new ArrayList<String>(count));
+      for (int i = 0; i < count; ++i) {
+        media.addToPerson(readString(buffer, base, pos));
+      }
+    }
+    media.setCopyright(readString(buffer, base, pos));
+    return media;
+  }
+
+  private Image readImage(ByteBuffer buffer, int base, int[] pos)
+  {
+    Image image = new Image();
+    image.setUri(readString(buffer, base, pos));
+    image.setTitle(readString(buffer, base, pos));
+    int p = pos[0];
+    image.setWidth(buffer.getInt(p));
+    image.setHeight(buffer.getInt(p + 4));
+    int size = buffer.getInt(p + 8);
+    image.setSize((size < 0) ? null : SIZES[size]);
+    pos[0] = p + 12;
+    return image;
+  }
+
+  private String readString(ByteBuffer buffer, int base, int[] pos)
+  {
+    int p = pos[0];
+    int len = buffer.getInt(p);
+    p += 4;
+    if (len < 0) {
+      pos[0] = p;
+      return null;
+    }
+    if (_chars.length < len) {
+      _chars = new char[len];
+    }
+    char[] chars = _chars;
+    for (int i = 0; i < len; ++i) {
+      chars[i] = buffer.getChar(p);
+      p += 2;
+    }
+    pos[0] = align4(base, p);
+    return new String(chars, 0, len);
+  }
+}
@@ -0,0 +1,36 @@
+package serializers;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Launches {@link BenchmarkRunner} in a child JVM that uses the same java
+ * executable, JVM flags and classpath as the current one. Output of the child
+ * goes to output of the current process.
+ */
+class ForkedJvm
+{
+  /**
+   * @param extraJvmArgs Flags to pass to the child JVM in addition to the ones
+   *   current JVM was started with
+   * @param args Arguments for {@link BenchmarkRunner#main}
+   * @return Exit code of the child JVM
+   */
+  static int run(List<String> extraJvmArgs, String... args) throws Exception
+  {
+    List<String> command = new ArrayList<String>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    command.addAll(extraJvmArgs);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(BenchmarkRunner.class.getName());
+    command.addAll(Arrays.asList(args));
+
+    Process process = new ProcessBuilder(command).inheritIO().start();
+    return process.waitFor();
+  }
+}
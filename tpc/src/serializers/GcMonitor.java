@@ -0,0 +1,113 @@
+package serializers;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Collects garbage collection activity between {@link #start} and
+ * {@link #stop}: collection counts and accumulated collection time from the
+ * {@link GarbageCollectorMXBean}s, split into young and old collectors, and
+ * bytes promoted into the old generation by young collections (from GC
+ * notifications, when the JVM sends them).
+ *<p>
+ * Collectors are classified by name, which covers the HotSpot ones (Copy,
+ * PS Scavenge, ParNew, G1 Young Generation vs MarkSweepCompact, PS
+ * MarkSweep, ConcurrentMarkSweep, G1 Old Generation).
+ */
+class GcMonitor implements NotificationListener
+{
+  private final List<GarbageCollectorMXBean> _collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+  private final long[] _startCounts = new long[_collectors.size()];
+  private final long[] _startTimes = new long[_collectors.size()];
+
+  long youngCount, youngTimeMsecs;
+  long oldCount, oldTimeMsecs;
+  /**
+   * Bytes promoted by young collections; -1 if notifications are not available.
+   */
+  volatile long promotedBytes;
+
+  void start()
+  {
+    promotedBytes = -1L;
+    for (int i = 0; i < _collectors.size(); ++i)
+    {
+      GarbageCollectorMXBean gc = _collectors.get(i);
+      _startCounts[i] = gc.getCollectionCount();
+      _startTimes[i] = gc.getCollectionTime();
+      if (gc instanceof NotificationEmitter) {
+        ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+        promotedBytes = 0L;
+      }
+    }
+  }
+
+  void stop() throws Exception
+  {
+    // notifications are delivered asynchronously; give the last ones a chance to arrive
+    Thread.sleep(100L);
+    youngCount = youngTimeMsecs = oldCount = oldTimeMsecs = 0L;
+    for (int i = 0; i < _collectors.size(); ++i)
+    {
+      GarbageCollectorMXBean gc = _collectors.get(i);
+      long count = gc.getCollectionCount() - _startCounts[i];
+      long time = gc.getCollectionTime() - _startTimes[i];
+      if (isYoung(gc.getName())) {
+        youngCount += count;
+        youngTimeMsecs += time;
+      } else {
+        oldCount += count;
+        oldTimeMsecs += time;
+      }
+      if (gc instanceof NotificationEmitter) {
+        ((NotificationEmitter) gc).removeNotificationListener(this);
+      }
+    }
+  }
+
+  public void handleNotification(Notification notification, Object handback)
+  {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+      return;
+    }
+    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    if (!isYoung(info.getGcName())) {
+      return;
+    }
+    Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+    Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+    long promoted = 0;
+    for (Map.Entry<String, MemoryUsage> entry : after.entrySet())
+    {
+      if (isOldPool(entry.getKey()) && before.containsKey(entry.getKey())) {
+        promoted += Math.max(0L, entry.getValue().getUsed() - before.get(entry.getKey()).getUsed());
+      }
+    }
+    promotedBytes += promoted;
+  }
+
+  static boolean isYoung(String collectorName)
+  {
+    return collectorName.contains("Young")
+      || collectorName.contains("Scavenge")
+      || collectorName.equals("Copy")
+      || collectorName.equals("ParNew")
+      || collectorName.contains("Minor");
+  }
+
+  static boolean isOldPool(String poolName)
+  {
+    return poolName.contains("Old") || poolName.contains("Tenured");
+  }
+}
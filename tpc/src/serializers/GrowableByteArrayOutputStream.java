@@ -0,0 +1,102 @@
+package serializers;
+
+import java.io.OutputStream;
+
+/**
+ * Like {@link java.io.ByteArrayOutputStream}, but gives access to its buffer
+ * instead of copying it, and is not synchronized; meant to be reset and
+ * reused, so that once the buffer has grown large enough writing to it
+ * allocates nothing.
+ */
+public class GrowableByteArrayOutputStream extends OutputStream
+{
+  private byte[] _buffer;
+  private int _count;
+
+  public GrowableByteArrayOutputStream()
+  {
+    this(1024);
+  }
+
+  public GrowableByteArrayOutputStream(int initialSize)
+  {
+    _buffer = new byte[Math.max(16, initialSize)];
+  }
+
+  public void write(int b)
+  {
+    if (_count == _buffer.length) {
+      grow(1);
+    }
+    _buffer[_count++] = (byte) b;
+  }
+
+  public void write(byte[] b, int off, int len)
+  {
+    if (_buffer.length - _count < len) {
+      grow(len);
+    }
+    System.arraycopy(b, off, _buffer, _count, len);
+    _count += len;
+  }
+
+  private void grow(int needed)
+  {
+    byte[] larger = new byte[Math.max(_buffer.length * 2, _count + needed)];
+    System.arraycopy(_buffer, 0, larger, 0, _count);
+    _buffer = larger;
+  }
+
+  /**
+   * Makes room for given number of bytes after what has been written, so
+   * that they can be written directly into the buffer, at offset
+   * {@link #size}; follow with {@link #skip}.
+   *
+   * @return The buffer
+   */
+  public byte[] reserve(int length)
+  {
+    if (_buffer.length - _count < length) {
+      grow(length);
+    }
+    return _buffer;
+  }
+
+  /**
+   * Adds given number of bytes, written directly into the buffer, to what
+   * has been written.
+   */
+  public void skip(int length)
+  {
+    _count += length;
+  }
+
+  /**
+   * Forgets what has been written, but keeps the buffer.
+   */
+  public void reset()
+  {
+    _count = 0;
+  }
+
+  public int size()
+  {
+    return _count;
+  }
+
+  /**
+   * @return The buffer itself, valid up to {@link #size}; only until the next
+   *   write, which may replace it with a larger one
+   */
+  public byte[] getBuffer()
+  {
+    return _buffer;
+  }
+
+  public byte[] toByteArray()
+  {
+    byte[] array = new byte[_count];
+    System.arraycopy(_buffer, 0, array, 0, _count);
+    return array;
+  }
+}
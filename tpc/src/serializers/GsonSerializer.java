@@ -1,6 +1,7 @@
 package serializers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import serializers.java.MediaContent;
 import serializers.java.Media;
@@ -31,6 +32,13 @@ public class GsonSerializer
         return array;
     }
 
+    public final void serialize(MediaContent content, OutputStream out) throws Exception
+    {
+        OutputStreamWriter w = new OutputStreamWriter(out, "UTF-8");
+        _gson.toJson(content, w);
+        w.flush();
+    }
+
     public final MediaContent deserialize(byte[] array) throws Exception
     {
         Reader r = new InputStreamReader(new ByteArrayInputStream(array), "UTF-8");
@@ -38,5 +46,13 @@ public class GsonSerializer
         r.close();
         return result;
     }
+
+    public final MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+    {
+        Reader r = new InputStreamReader(new ByteBufferInputStream(buffer, offset, length), "UTF-8");
+        MediaContent result = _gson.fromJson(r, MediaContent.class);
+        r.close();
+        return result;
+    }
 }
 
@@ -1,6 +1,7 @@
 package serializers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import serializers.java.MediaContent;
@@ -8,6 +9,7 @@ import serializers.java.MediaContent;
 import com.caucho.hessian.io.*;
 
 public class HessianSerializer extends StdMediaSerializer
+    implements StreamingObjectSerializer<MediaContent>
 {
     private ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
     
@@ -23,6 +25,12 @@ public class HessianSerializer extends StdMediaSerializer
         return (MediaContent) hin.readObject();
     }
 
+    public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+    {
+        Hessian2StreamingInput hin = new Hessian2StreamingInput(new ByteBufferInputStream(buffer, offset, length));
+        return (MediaContent) hin.readObject();
+    }
+
     public byte[] serialize(MediaContent content) throws Exception
     {
         out.reset();
@@ -31,4 +39,41 @@ public class HessianSerializer extends StdMediaSerializer
         byte[] array = out.toByteArray();
         return array;
     }
+
+    public void serialize(MediaContent content, OutputStream out) throws Exception
+    {
+        Hessian2StreamingOutput hout = new Hessian2StreamingOutput(out);
+        hout.writeObject(content);
+        hout.flush();
+    }
+
+    /**
+     * Writes each object as a packet of a single Hessian2 stream.
+     */
+    public RecordWriter<MediaContent> newWriter(OutputStream out) throws Exception
+    {
+        final Hessian2StreamingOutput hout = new Hessian2StreamingOutput(out);
+        return new RecordWriter<MediaContent>() {
+            public void write(MediaContent content) throws Exception
+            {
+                hout.writeObject(content);
+            }
+
+            public void flush() throws Exception
+            {
+                hout.flush();
+            }
+        };
+    }
+
+    public RecordReader<MediaContent> newReader(InputStream in) throws Exception
+    {
+        final Hessian2StreamingInput hin = new Hessian2StreamingInput(in);
+        return new RecordReader<MediaContent>() {
+            public MediaContent read() throws Exception
+            {
+                return (MediaContent) hin.readObject();
+            }
+        };
+    }
 }
@@ -12,6 +12,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import serializers.extjava.Image;
 import serializers.extjava.Media;
@@ -20,7 +21,8 @@ import serializers.extjava.Image.Size;
 import serializers.extjava.Media.Player;
 
 
-public class JavaExtSerializer implements ObjectSerializer<MediaContent> {
+public class JavaExtSerializer implements StreamingObjectSerializer<MediaContent>, OutputStreamSerializer<MediaContent>,
+                                          ByteBufferDeserializer<MediaContent>, CheckingObjectSerializer<MediaContent> {
 
    public int expectedSize = 0;
 
@@ -32,7 +34,15 @@ public class JavaExtSerializer implements ObjectSerializer<MediaContent> {
    }
 
    public MediaContent deserialize( byte[] array ) throws Exception {
-      ObjectInput ois = new ExternalizableObjectInput(new ByteArrayInputStream(array));
+      return deserialize(new ByteArrayInputStream(array));
+   }
+
+   public MediaContent deserialize( ByteBuffer buffer, int offset, int length ) throws Exception {
+      return deserialize(new ByteBufferInputStream(buffer, offset, length));
+   }
+
+   private MediaContent deserialize( InputStream in ) throws Exception {
+      ObjectInput ois = new ExternalizableObjectInput(in);
       MediaContent mediaContent = null;
       if ( ois.readBoolean() ) {
          mediaContent = new MediaContent();
@@ -56,6 +66,48 @@ public class JavaExtSerializer implements ObjectSerializer<MediaContent> {
       return content;
    }
 
+   public void checkAllFields( MediaContent content ) {
+      checkMediaField(content);
+      assetEquals(2, content.imageCount());
+
+      Image image = content.getImage(0);
+      assetEquals(image.getUri(), "http://javaone.com/keynote_large.jpg");
+      assetEquals(image.getSize(), Size.LARGE);
+      assetEquals(image.getTitle(), "Javaone Keynote");
+      assetEquals(image.getWidth(), 0);
+      assetEquals(image.getHeight(), 0);
+
+      image = content.getImage(1);
+      assetEquals(image.getUri(), "http://javaone.com/keynote_thumbnail.jpg");
+      assetEquals(image.getSize(), Size.SMALL);
+      assetEquals(image.getTitle(), "Javaone Keynote");
+      assetEquals(image.getWidth(), 0);
+      assetEquals(image.getHeight(), 0);
+   }
+
+   public void checkMediaField( MediaContent content ) {
+      Media media = content.getMedia();
+      assetEquals(media.getUri(), "http://javaone.com/keynote.mpg");
+      assetEquals(media.getFormat(), "video/mpg4");
+      assetEquals(media.getTitle(), "Javaone Keynote");
+      assetEquals(media.getDuration(), 1234567L);
+      assetEquals(media.getSize(), 123L);
+      assetEquals(media.getBitrate(), 0);
+      assetEquals(media.getPlayer(), Player.JAVA);
+      assetEquals(media.getWidth(), 0);
+      assetEquals(media.getHeight(), 0);
+   }
+
+   public void checkMediaUri( MediaContent content ) {
+      assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+   }
+
+   static private void assetEquals( Object expected, Object actual ) {
+      if ( !expected.equals(actual) ) {
+         throw new RuntimeException("" + expected + "!=" + actual);
+      }
+   }
+
    public byte[] serialize( MediaContent content ) throws IOException, Exception {
       ByteArrayOutputStream baos = new ByteArrayOutputStream(expectedSize);
       ObjectOutput oos = new ExternalizableObjectOutput(baos);
@@ -66,6 +118,45 @@ public class JavaExtSerializer implements ObjectSerializer<MediaContent> {
       expectedSize = array.length;
       return array;
    }
+
+   public void serialize( MediaContent content, OutputStream out ) throws Exception {
+      ObjectOutput oos = new ExternalizableObjectOutput(out);
+      oos.writeBoolean(content != null);
+      if ( content != null ) content.writeExternal(oos);
+      oos.flush();
+   }
+
+   /**
+    * Writes objects back to back to a single data stream, in the same format as
+    * {@link #serialize}.
+    */
+   public RecordWriter<MediaContent> newWriter( OutputStream out ) {
+      final ObjectOutput oos = new ExternalizableObjectOutput(out);
+      return new RecordWriter<MediaContent>() {
+         public void write( MediaContent content ) throws Exception {
+            oos.writeBoolean(content != null);
+            if ( content != null ) content.writeExternal(oos);
+         }
+
+         public void flush() throws Exception {
+            oos.flush();
+         }
+      };
+   }
+
+   public RecordReader<MediaContent> newReader( InputStream in ) {
+      final ObjectInput ois = new ExternalizableObjectInput(in);
+      return new RecordReader<MediaContent>() {
+         public MediaContent read() throws Exception {
+            MediaContent mediaContent = null;
+            if ( ois.readBoolean() ) {
+               mediaContent = new MediaContent();
+               mediaContent.readExternal(ois);
+            }
+            return mediaContent;
+         }
+      };
+   }
    
    private static class ExternalizableObjectInput extends DataInputStream implements ObjectInput {
 
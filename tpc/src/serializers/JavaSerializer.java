@@ -3,14 +3,18 @@ package serializers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import serializers.java.Image;
 import serializers.java.Media;
 import serializers.java.MediaContent;
 
 public class JavaSerializer extends StdMediaSerializer
+    implements StreamingObjectSerializer<MediaContent>
 {
   public int expectedSize = 0;
 
@@ -30,6 +34,12 @@ public class JavaSerializer extends StdMediaSerializer
         return (MediaContent)ois.readObject();
     }
 
+    public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+    {
+        ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buffer, offset, length));
+        return (MediaContent)ois.readObject();
+    }
+
     public byte[] serialize(MediaContent content) throws IOException, Exception
     {
         ByteArrayOutputStream baos = new ByteArrayOutputStream(expectedSize);
@@ -39,4 +49,45 @@ public class JavaSerializer extends StdMediaSerializer
         expectedSize = array.length;
         return array;
     }
+
+    public void serialize(MediaContent content, OutputStream out) throws Exception
+    {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(content);
+        oos.flush();
+    }
+
+    /**
+     * Writes all objects to a single object stream, so stream header is only
+     * written once. Stream is reset after each object, so that objects do not
+     * refer back to earlier ones and the handle table does not grow without
+     * bounds; this also means class descriptors get written for each object.
+     */
+    public RecordWriter<MediaContent> newWriter(OutputStream out) throws Exception
+    {
+        final ObjectOutputStream oos = new ObjectOutputStream(out);
+        return new RecordWriter<MediaContent>() {
+            public void write(MediaContent content) throws Exception
+            {
+                oos.writeObject(content);
+                oos.reset();
+            }
+
+            public void flush() throws Exception
+            {
+                oos.flush();
+            }
+        };
+    }
+
+    public RecordReader<MediaContent> newReader(InputStream in) throws Exception
+    {
+        final ObjectInputStream ois = new ObjectInputStream(in);
+        return new RecordReader<MediaContent>() {
+            public MediaContent read() throws Exception
+            {
+                return (MediaContent)ois.readObject();
+            }
+        };
+    }
 }
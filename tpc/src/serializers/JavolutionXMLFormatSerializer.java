@@ -3,6 +3,8 @@ package serializers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import javolution.xml.XMLBinding;
@@ -37,6 +39,16 @@ public class JavolutionXMLFormatSerializer extends StdMediaSerializer
     }
   }
 
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    XMLObjectReader reader = XMLObjectReader.newInstance(new ByteBufferInputStream(buffer, offset, length)).setBinding(_binding);
+    try {
+      return reader.read("mc", MediaContent.class);
+    } finally {
+      reader.close();
+    }
+  }
+
     public byte[] serialize(MediaContent content)
         throws Exception
     {
@@ -50,6 +62,15 @@ public class JavolutionXMLFormatSerializer extends StdMediaSerializer
         return array;
     }
 
+    public void serialize(MediaContent content, OutputStream out)
+        throws Exception
+    {
+        // close() is what ends the document, but must not close caller's stream
+        XMLObjectWriter writer = XMLObjectWriter.newInstance(new NonClosingOutputStream(out)).setBinding(_binding);
+        writer.write(content, "mc", MediaContent.class);
+        writer.close();
+    }
+
   //XML binding using reflection.
   static class MediaContentBinding extends XMLBinding
   {
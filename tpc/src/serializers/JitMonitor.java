@@ -0,0 +1,89 @@
+package serializers;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects JIT compiler activity between {@link #start} and {@link #stop}:
+ * accumulated compilation time (from {@link CompilationMXBean}) and growth of
+ * code cache usage, split into time spent in warm-up
+ * ({@link #startWarmup}/{@link #endWarmup}) and the rest.
+ *<p>
+ * Compilation runs in background threads, so some of the work queued during
+ * warm-up may get billed to the measurement phase that follows it. Code cache
+ * usage can also shrink, as the JVM flushes code that is no longer used.
+ */
+class JitMonitor
+{
+  private final CompilationMXBean _compiler = ManagementFactory.getCompilationMXBean();
+  private final List<MemoryPoolMXBean> _codePools = new ArrayList<MemoryPoolMXBean>();
+
+  private long _startTime, _startCode;
+  private long _warmupStartTime, _warmupStartCode;
+
+  /**
+   * Compilation time in milliseconds; -1 if not available.
+   */
+  long totalTimeMsecs, warmupTimeMsecs;
+  long totalCodeBytes, warmupCodeBytes;
+
+  JitMonitor()
+  {
+    // "Code Cache" up to Java 8, segmented "CodeHeap '...'" pools after that
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (pool.getType() == MemoryType.NON_HEAP && pool.getName().contains("Code")) {
+        _codePools.add(pool);
+      }
+    }
+  }
+
+  void start()
+  {
+    _startTime = compilationTime();
+    _startCode = codeCacheUsed();
+    warmupTimeMsecs = 0L;
+    warmupCodeBytes = 0L;
+  }
+
+  void startWarmup()
+  {
+    _warmupStartTime = compilationTime();
+    _warmupStartCode = codeCacheUsed();
+  }
+
+  void endWarmup()
+  {
+    warmupTimeMsecs += compilationTime() - _warmupStartTime;
+    warmupCodeBytes += codeCacheUsed() - _warmupStartCode;
+  }
+
+  void stop()
+  {
+    totalTimeMsecs = compilationTime() - _startTime;
+    totalCodeBytes = codeCacheUsed() - _startCode;
+    if (_compiler == null || !_compiler.isCompilationTimeMonitoringSupported()) {
+      totalTimeMsecs = warmupTimeMsecs = -1L;
+    }
+  }
+
+  private long compilationTime()
+  {
+    if (_compiler == null || !_compiler.isCompilationTimeMonitoringSupported()) {
+      return 0L;
+    }
+    return _compiler.getTotalCompilationTime();
+  }
+
+  private long codeCacheUsed()
+  {
+    long used = 0;
+    for (MemoryPoolMXBean pool : _codePools)
+      used += pool.getUsage().getUsed();
+    return used;
+  }
+}
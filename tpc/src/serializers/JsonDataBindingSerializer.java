@@ -25,7 +25,11 @@ public class JsonDataBindingSerializer
         _mapper.writeValue(generator, content);
     }
 
-    protected MediaContent readMediaContent(JsonParser parser) throws IOException
+    /**
+     * Data binding always constructs new objects, so <code>reuse</code> is
+     * ignored.
+     */
+    protected MediaContent readMediaContent(JsonParser parser, MediaContent reuse) throws IOException
     {
         return _mapper.readValue(parser, MediaContent.class);
     }
@@ -1,6 +1,7 @@
 package serializers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import com.twolattes.json.Json;
@@ -15,6 +16,7 @@ public class JsonMarshallerSerializer extends StdMediaSerializer
 	private final Marshaller<MediaContent> _marshaller;
 	private final Charset _charset;
 	private int _expectedSize = 0;
+	private final StringWriter _writer = new StringWriter();
 
 	public JsonMarshallerSerializer() {
 		super("JsonMarshaller");
@@ -28,6 +30,12 @@ public class JsonMarshallerSerializer extends StdMediaSerializer
 				new StringReader(str)));
 	}
 
+	public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+		String str = _charset.decode(ByteBufferInputStream.slice(buffer, offset, length)).toString();
+		return _marshaller.unmarshall((Json.Object) Json.read(
+				new StringReader(str)));
+	}
+
 	public byte[] serialize(MediaContent content) throws Exception {
 		StringWriter sw = new StringWriter(_expectedSize);
 		_marshaller.marshall(content).write(sw);
@@ -36,6 +44,16 @@ public class JsonMarshallerSerializer extends StdMediaSerializer
 		_expectedSize = result.length;
 		return result;
 	}
+
+	/**
+	 * Writes to a reused StringWriter and encodes that, since an OutputStreamWriter
+	 * would allocate a larger buffer than the whole document.
+	 */
+	public void serialize(MediaContent content, OutputStream out) throws Exception {
+		_writer.getBuffer().setLength(0);
+		_marshaller.marshall(content).write(_writer);
+		out.write(_writer.toString().getBytes(_charset.toString()));
+	}
 	
 	public static void main(String[] args) throws Exception {
 		JsonMarshallerSerializer serializer = new JsonMarshallerSerializer();
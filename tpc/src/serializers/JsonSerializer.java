@@ -6,6 +6,8 @@ import serializers.java.Image;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
@@ -14,6 +16,7 @@ import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonToken;
 
 public class JsonSerializer extends StdMediaSerializer
+    implements ReusingDeserializer<MediaContent>
 {
     protected final JsonFactory _factory;
 
@@ -41,11 +44,40 @@ public class JsonSerializer extends StdMediaSerializer
         expectedSize = array.length;
         return array;
     }
+
+    public final void serialize(MediaContent content, OutputStream out) throws Exception
+    {
+        // close() releases generator's buffers for reuse, but must not close caller's stream
+        JsonGenerator generator = constructGenerator(new NonClosingOutputStream(out));
+        writeMediaContent(generator, content);
+        generator.close();
+    }
     
     public final MediaContent deserialize(byte[] array) throws Exception
     {
         JsonParser parser = constructParser(array);
-        MediaContent mc = readMediaContent(parser);
+        MediaContent mc = readMediaContent(parser, null);
+        parser.close();
+        return mc;
+    }
+
+    public final MediaContent deserialize(byte[] array, MediaContent reuse) throws Exception
+    {
+        JsonParser parser = constructParser(array);
+        MediaContent mc = readMediaContent(parser, reuse);
+        parser.close();
+        return mc;
+    }
+
+    public final MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+    {
+        JsonParser parser;
+        if (buffer.hasArray()) {
+            parser = _factory.createJsonParser(buffer.array(), buffer.arrayOffset() + offset, length);
+        } else {
+            parser = _factory.createJsonParser(new ByteBufferInputStream(buffer, offset, length));
+        }
+        MediaContent mc = readMediaContent(parser, null);
         parser.close();
         return mc;
     }
@@ -57,9 +89,9 @@ public class JsonSerializer extends StdMediaSerializer
         return _factory.createJsonParser(data);
     }
 
-    protected JsonGenerator constructGenerator(ByteArrayOutputStream baos) throws IOException
+    protected JsonGenerator constructGenerator(OutputStream out) throws IOException
     {
-        return _factory.createJsonGenerator(baos, JsonEncoding.UTF8);
+        return _factory.createJsonGenerator(out, JsonEncoding.UTF8);
     }
 
     protected void writeMediaContent(JsonGenerator generator, MediaContent content) throws IOException
@@ -108,9 +140,16 @@ public class JsonSerializer extends StdMediaSerializer
     generator.writeEndObject();
   }
 
-    protected MediaContent readMediaContent(JsonParser parser) throws IOException
+    /**
+     * @param reuse Content from an earlier call to read into, along with its
+     *   media and images; or null to construct new objects
+     */
+    protected MediaContent readMediaContent(JsonParser parser, MediaContent reuse) throws IOException
     {
-        MediaContent mc = new MediaContent();
+        MediaContent mc = (reuse == null) ? new MediaContent() : reuse;
+        Media media = mc.getMedia();
+        mc.setMedia(null);
+        int imageCount = 0;
         if (parser.nextToken() != JsonToken.START_OBJECT) {
             reportIllegal(parser, JsonToken.START_OBJECT);
         }
@@ -126,29 +165,30 @@ public class JsonSerializer extends StdMediaSerializer
             if (I != null) {
             switch (I.intValue()) {
             case FIELD_IX_MEDIA:
-                mc.setMedia(readMedia(parser));
+                mc.setMedia(readMedia(parser, media));
                 continue;
             case FIELD_IX_IMAGES:
                 if (parser.nextToken() != JsonToken.START_ARRAY) {
                     reportIllegal(parser, JsonToken.START_ARRAY);
                 }
                 while (parser.nextToken() == JsonToken.START_OBJECT) {
-                    mc.addImage(readImage(parser));
+                    readImage(parser, resetImage(mc, imageCount++));
                 }
                 continue;
             }
             }
             throw new IllegalStateException("Unexpected field '"+field+"'");
         }
+        truncateImages(mc, imageCount);
         return mc;
     }
 
-  private final Media readMedia(JsonParser parser) throws IOException
+  private final Media readMedia(JsonParser parser, Media reuse) throws IOException
   {
       if (parser.nextToken() != JsonToken.START_OBJECT) {
           reportIllegal(parser, JsonToken.START_OBJECT);
       }
-      Media media = new Media();
+      Media media = resetMedia(reuse);
       JsonToken t;
       
       while ((t = parser.nextToken()) != JsonToken.END_OBJECT) {
@@ -203,10 +243,9 @@ public class JsonSerializer extends StdMediaSerializer
       return media;
   }
 
-  private final Image readImage(JsonParser parser) throws IOException
+  private final void readImage(JsonParser parser, Image image) throws IOException
   {
       JsonToken t;
-      Image image = new Image();
       
       while ((t = parser.nextToken()) != JsonToken.END_OBJECT) {
           if (t != JsonToken.FIELD_NAME) {
@@ -237,7 +276,6 @@ public class JsonSerializer extends StdMediaSerializer
           }
           throw new IllegalStateException("Unexpected field '"+field+"'");
       }
-      return image;
   }
 
     private void reportIllegal(JsonParser parser, JsonToken expToken)
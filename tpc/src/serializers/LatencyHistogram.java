@@ -0,0 +1,142 @@
+package serializers;
+
+/**
+ * Histogram of latencies (in nanoseconds) with log-linear buckets: values
+ * below 128 get a bucket each, above that every power of two is split into
+ * 64 linear sub-buckets. That keeps relative error under 1.6% over the whole
+ * range of <code>long</code> with a fixed 3712-slot array, so recording an
+ * operation is just an index computation and an increment, with no
+ * allocation.
+ */
+public class LatencyHistogram
+{
+  private final static int SUB_BUCKET_BITS = 7;
+  private final static int LINEAR_COUNT = 1 << SUB_BUCKET_BITS;
+  private final static int HALF_COUNT = LINEAR_COUNT >> 1;
+  private final static int BUCKET_COUNT = LINEAR_COUNT + (63 - SUB_BUCKET_BITS) * HALF_COUNT;
+
+  private final long[] _counts = new long[BUCKET_COUNT];
+  private long _totalCount;
+  private long _totalValue;
+  private long _max;
+
+  public void record(long value)
+  {
+    if (value < 0) {
+      value = 0;
+    }
+    ++_counts[indexOf(value)];
+    ++_totalCount;
+    _totalValue += value;
+    if (value > _max) {
+      _max = value;
+    }
+  }
+
+  public void add(LatencyHistogram other)
+  {
+    for (int i = 0; i < BUCKET_COUNT; ++i)
+      _counts[i] += other._counts[i];
+    _totalCount += other._totalCount;
+    _totalValue += other._totalValue;
+    _max = Math.max(_max, other._max);
+  }
+
+  public long getTotalCount()
+  {
+    return _totalCount;
+  }
+
+  public long getMax()
+  {
+    return _max;
+  }
+
+  public double getMean()
+  {
+    return (_totalCount == 0) ? 0.0 : (double) _totalValue / _totalCount;
+  }
+
+  /**
+   * Returns the smallest recorded value such that given percentage of values
+   * are equal or below it; reported as the upper bound of its bucket (but
+   * never more than the actual maximum).
+   */
+  public long getValueAtPercentile(double percentile)
+  {
+    if (_totalCount == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(_totalCount * percentile / 100.0);
+    if (target < 1) {
+      target = 1;
+    }
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; ++i)
+    {
+      seen += _counts[i];
+      if (seen >= target) {
+        return Math.min(highestValueIn(i), _max);
+      }
+    }
+    return _max;
+  }
+
+  /**
+   * Returns contents as a single line of text that {@link #decode} accepts:
+   * total count, total value and maximum followed by
+   * <code>index:count</code> pairs of non-empty buckets, separated by spaces.
+   */
+  String encode()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append(_totalCount).append(' ').append(_totalValue).append(' ').append(_max);
+    for (int i = 0; i < BUCKET_COUNT; ++i)
+    {
+      if (_counts[i] != 0) {
+        sb.append(' ').append(i).append(':').append(_counts[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+  static LatencyHistogram decode(String encoded)
+  {
+    String[] parts = encoded.trim().split(" ");
+    if (parts.length < 3) {
+      throw new IllegalArgumentException("Invalid encoded histogram '"+encoded+"'");
+    }
+    LatencyHistogram h = new LatencyHistogram();
+    h._totalCount = Long.parseLong(parts[0]);
+    h._totalValue = Long.parseLong(parts[1]);
+    h._max = Long.parseLong(parts[2]);
+    for (int i = 3; i < parts.length; ++i)
+    {
+      int colon = parts[i].indexOf(':');
+      h._counts[Integer.parseInt(parts[i].substring(0, colon))] = Long.parseLong(parts[i].substring(colon+1));
+    }
+    return h;
+  }
+
+  static int indexOf(long value)
+  {
+    if (value < LINEAR_COUNT) {
+      return (int) value;
+    }
+    // shift that leaves the top SUB_BUCKET_BITS-1 bits after the leading one
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+    int sub = (int) (value >>> shift) - HALF_COUNT;
+    return LINEAR_COUNT + (shift - 1) * HALF_COUNT + sub;
+  }
+
+  static long highestValueIn(int index)
+  {
+    if (index < LINEAR_COUNT) {
+      return index;
+    }
+    int shift = (index - LINEAR_COUNT) / HALF_COUNT + 1;
+    long sub = (index - LINEAR_COUNT) % HALF_COUNT + HALF_COUNT;
+    long highest = ((sub + 1) << shift) - 1;
+    return (highest < 0) ? Long.MAX_VALUE : highest;
+  }
+}
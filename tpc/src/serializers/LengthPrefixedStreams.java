@@ -0,0 +1,51 @@
+package serializers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import serializers.StreamingObjectSerializer.RecordReader;
+import serializers.StreamingObjectSerializer.RecordWriter;
+
+/**
+ * Streams objects of any {@link ObjectSerializer} as a sequence of records,
+ * each a 4-byte big-endian length followed by the result of
+ * {@link ObjectSerializer#serialize}.
+ */
+public class LengthPrefixedStreams
+{
+  private LengthPrefixedStreams() { }
+
+  public static <T> RecordWriter<T> newWriter(final ObjectSerializer<T> serializer, OutputStream out)
+  {
+    final DataOutputStream dout = new DataOutputStream(out);
+    return new RecordWriter<T>() {
+      public void write(T content) throws Exception
+      {
+        byte[] array = serializer.serialize(content);
+        dout.writeInt(array.length);
+        dout.write(array);
+      }
+
+      public void flush() throws Exception
+      {
+        dout.flush();
+      }
+    };
+  }
+
+  public static <T> RecordReader<T> newReader(final ObjectSerializer<T> serializer, InputStream in)
+  {
+    final DataInputStream din = new DataInputStream(in);
+    return new RecordReader<T>() {
+      public T read() throws Exception
+      {
+        // can not reuse the array: some deserializers decode lazily from it
+        byte[] array = new byte[din.readInt()];
+        din.readFully(array);
+        return serializer.deserialize(array);
+      }
+    };
+  }
+}
@@ -0,0 +1,191 @@
+package serializers;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Hand-written binary codec for this one schema, as a baseline of what is
+ * possible: fields are written in fixed order, with no tags or type
+ * information, straight into a reused array. Integers are varints (zigzag
+ * encoded, so that negative values stay short); strings are UTF-8 prefixed
+ * by their length in bytes, with a fast path for ASCII. Null strings, enums
+ * and lists are encoded as 0, others as length (or ordinal) + 1 (see
+ * {@link BinaryOutput}, shared with the generated codecs).
+ *<p>
+ * Apart from the result array of {@link #serialize(MediaContent)}, the only
+ * allocations are the objects (and strings) that deserializing produces;
+ * {@link #deserialize(byte[], MediaContent)} avoids most of those too.
+ */
+public class ManualSerializer extends StdMediaSerializer
+  implements ReusingDeserializer<MediaContent>
+{
+  private final static Media.Player[] PLAYERS = Media.Player.values();
+  private final static Image.Size[] SIZES = Image.Size.values();
+
+  private final BinaryOutput _output = new BinaryOutput(1024);
+  private final BinaryInput _input = new BinaryInput();
+  // for direct buffers, which have no array to decode from
+  private byte[] _scratch = new byte[1024];
+
+  public ManualSerializer()
+  {
+    super("manual");
+  }
+
+  // // // Serialization
+
+  public byte[] serialize(MediaContent content) throws Exception
+  {
+    writeMediaContent(content);
+    return _output.toByteArray();
+  }
+
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    writeMediaContent(content);
+    _output.writeTo(out);
+  }
+
+  private void writeMediaContent(MediaContent content)
+  {
+    BinaryOutput out = _output;
+    out.reset();
+    writeMedia(content.getMedia(), out);
+    List<Image> images = content.getImages();
+    if (images == null) {
+      out.writeVarint(0);
+    } else {
+      out.writeVarint(images.size() + 1);
+      for (int i = 0, len = images.size(); i < len; ++i) {
+        writeImage(images.get(i), out);
+      }
+    }
+  }
+
+  private void writeMedia(Media media, BinaryOutput out)
+  {
+    out.writeVarint((media.getPlayer() == null) ? 0 : media.getPlayer().ordinal() + 1);
+    out.writeString(media.getUri());
+    out.writeString(media.getTitle());
+    out.writeSignedVarint(media.getWidth());
+    out.writeSignedVarint(media.getHeight());
+    out.writeString(media.getFormat());
+    out.writeSignedVarlong(media.getDuration());
+    out.writeSignedVarlong(media.getSize());
+    out.writeSignedVarint(media.getBitrate());
+    List<String> persons = media.getPersons();
+    if (persons == null) {
+      out.writeVarint(0);
+    } else {
+      out.writeVarint(persons.size() + 1);
+      for (int i = 0, len = persons.size(); i < len; ++i) {
+        out.writeString(persons.get(i));
+      }
+    }
+    out.writeString(media.getCopyright());
+  }
+
+  private void writeImage(Image image, BinaryOutput out)
+  {
+    out.writeString(image.getUri());
+    out.writeString(image.getTitle());
+    out.writeSignedVarint(image.getWidth());
+    out.writeSignedVarint(image.getHeight());
+    out.writeVarint((image.getSize() == null) ? 0 : image.getSize().ordinal() + 1);
+  }
+
+  // // // Deserialization
+
+  public MediaContent deserialize(byte[] array) throws Exception
+  {
+    return readMediaContent(array, 0, null);
+  }
+
+  public MediaContent deserialize(byte[] array, MediaContent reuse) throws Exception
+  {
+    return readMediaContent(array, 0, reuse);
+  }
+
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    if (buffer.hasArray()) {
+      return readMediaContent(buffer.array(), buffer.arrayOffset() + offset, null);
+    }
+    if (_scratch.length < length) {
+      _scratch = new byte[length];
+    }
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(offset);
+    slice.get(_scratch, 0, length);
+    return readMediaContent(_scratch, 0, null);
+  }
+
+  /**
+   * @param reuse Content from an earlier call to read into, along with its
+   *   media and images; or null to construct new objects
+   */
+  private MediaContent readMediaContent(byte[] input, int offset, MediaContent reuse)
+  {
+    BinaryInput in = _input;
+    in.reset(input, offset);
+    MediaContent content = (reuse == null) ? new MediaContent() : reuse;
+    content.setMedia(readMedia(resetMedia(content.getMedia()), in));
+    int count = in.readVarint();
+    if (count == 0) {
+      content.setImages(null);
+    } else {
+      if (content.getImages() == null) {
+        content.setImages(new ArrayList<Image>(count - 1));
+      }
+      for (int i = 0; i < count - 1; ++i) {
+        readImage(resetImage(content, i), in);
+      }
+      truncateImages(content, count - 1);
+    }
+    in.reset(null, 0);
+    return content;
+  }
+
+  private Media readMedia(Media media, BinaryInput in)
+  {
+    int player = in.readVarint();
+    media.setPlayer((player == 0) ? null : PLAYERS[player - 1]);
+    media.setUri(in.readString());
+    media.setTitle(in.readString());
+    media.setWidth(in.readSignedVarint());
+    media.setHeight(in.readSignedVarint());
+    media.setFormat(in.readString());
+    media.setDuration(in.readSignedVarlong());
+    media.setSize(in.readSignedVarlong());
+    media.setBitrate(in.readSignedVarint());
+    int count = in.readVarint();
+    if (count == 0) {
+      media.setPersons(null);
+    } else {
+      if (media.getPersons() == null) {
+        media.setPersons(new ArrayList<String>(count - 1));
+      }
+      for (int i = 0; i < count - 1; ++i) {
+        media.addToPerson(in.readString());
+      }
+    }
+    media.setCopyright(in.readString());
+    return media;
+  }
+
+  private void readImage(Image image, BinaryInput in)
+  {
+    image.setUri(in.readString());
+    image.setTitle(in.readString());
+    image.setWidth(in.readSignedVarint());
+    image.setHeight(in.readSignedVarint());
+    int size = in.readVarint();
+    image.setSize((size == 0) ? null : SIZES[size - 1]);
+  }
+}
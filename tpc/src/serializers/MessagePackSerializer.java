@@ -1,5 +1,8 @@
 package serializers;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 import javax.management.RuntimeErrorException;
 
 import org.msgpack.MessagePack;
@@ -29,10 +32,20 @@ public class MessagePackSerializer extends StdMediaSerializer
 		return unpack;
 	}
 
+	public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+		MediaContent unpack = MessagePack.unpack(new ByteBufferInputStream(buffer, offset, length), MediaContent.class);
+		unpack._media.setCopyright(fixture._media.getCopyright());
+		return unpack;
+	}
+
 	@Override
 	public byte[] serialize(MediaContent content) throws Exception {
 		return MessagePack.pack(content);
 	}
+
+	public void serialize(MediaContent content, OutputStream out) throws Exception {
+		MessagePack.pack(out, content);
+	}
 	
 	public static void main(String[] args) throws Exception {
 		MessagePackSerializer serializer = new MessagePackSerializer();
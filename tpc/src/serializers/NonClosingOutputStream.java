@@ -0,0 +1,31 @@
+package serializers;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes everything through to the wrapped stream, except that closing only
+ * flushes it. For libraries whose writers have to be closed, to finish the
+ * document or to release their buffers for reuse, but close the underlying
+ * stream when they are, which must not happen to a caller's stream (see
+ * {@link OutputStreamSerializer}).
+ */
+public class NonClosingOutputStream extends FilterOutputStream
+{
+  public NonClosingOutputStream(OutputStream out)
+  {
+    super(out);
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    // FilterOutputStream would write byte by byte
+    out.write(b, off, len);
+  }
+
+  public void close() throws IOException
+  {
+    out.flush();
+  }
+}
@@ -0,0 +1,19 @@
+package serializers;
+
+import java.io.OutputStream;
+
+/**
+ * Serializer that can write into a stream owned by the caller, instead of
+ * returning a new array: a socket or file stream, a reused
+ * {@link GrowableByteArrayOutputStream}, or a {@link ByteBufferOutputStream}.
+ * This saves allocating (and, for most serializers, copying) the result of
+ * {@link #serialize(Object)} for each object.
+ */
+public interface OutputStreamSerializer<T> extends ObjectSerializer<T>
+{
+    /**
+     * Writes same bytes as {@link #serialize(Object)} would return; flushes
+     * anything the serializer buffers, but does not close the stream.
+     */
+    public void serialize(T content, OutputStream out) throws Exception;
+}
@@ -3,13 +3,18 @@ package serializers;
 import serializers.protobuf.MediaContentHolder;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import com.google.protobuf.JsonFormat;
 
-public class ProtobufJsonSerializer implements ObjectSerializer<MediaContentHolder.MediaContent>
+public class ProtobufJsonSerializer implements OutputStreamSerializer<MediaContentHolder.MediaContent>,
+                                              ByteBufferDeserializer<MediaContentHolder.MediaContent>,
+                                              CheckingObjectSerializer<MediaContentHolder.MediaContent>
 {
   private final Charset _charset = Charset.forName("UTF-8");
+  private final StringBuilder _text = new StringBuilder();
 
   public MediaContentHolder.MediaContent deserialize (byte[] array) throws Exception
   {
@@ -18,17 +23,32 @@ public class ProtobufJsonSerializer implements ObjectSerializer<MediaContentHold
     return builder.build();
   }
 
+  public MediaContentHolder.MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    MediaContentHolder.MediaContent.Builder builder = MediaContentHolder.MediaContent.newBuilder();
+    JsonFormat.merge((CharSequence) _charset.decode(ByteBufferInputStream.slice(buffer, offset, length)), builder);
+    return builder.build();
+  }
+
   public byte[] serialize(MediaContentHolder.MediaContent content) throws IOException
   {
     return JsonFormat.printToString(content).getBytes(_charset.name());
   }
 
+  public void serialize(MediaContentHolder.MediaContent content, OutputStream out) throws IOException
+  {
+    // an OutputStreamWriter would allocate a larger buffer than the whole document
+    _text.setLength(0);
+    JsonFormat.print(content, _text);
+    out.write(_text.toString().getBytes(_charset.name()));
+  }
+
   public MediaContentHolder.MediaContent create()
   {
     MediaContentHolder.MediaContent content = MediaContentHolder.MediaContent.newBuilder().
     setMedia(
       MediaContentHolder.Media.newBuilder().setUri("http://javaone.com/keynote.mpg").setFormat("video/mpg4").setTitle("Javaone Keynote").setDuration(1234567).
-        setBitrate(123).addPerson("Bill Gates").addPerson("Steve Jobs").setPlayer(MediaContentHolder.Media.Player.JAVA).build()).
+        setSize(123).setBitrate(0).addPerson("Bill Gates").addPerson("Steve Jobs").setPlayer(MediaContentHolder.Media.Player.JAVA).build()).
     addImage(
       MediaContentHolder.Image.newBuilder().setUri("http://javaone.com/keynote_large.jpg").setSize(MediaContentHolder.Image.Size.LARGE).setTitle("Javaone Keynote").build()).
     addImage(
@@ -41,4 +61,19 @@ public class ProtobufJsonSerializer implements ObjectSerializer<MediaContentHold
   {
     return "protobuf-json";
   }
+
+  public void checkAllFields(MediaContentHolder.MediaContent content)
+  {
+    ProtobufSerializer.checkAll(content);
+  }
+
+  public void checkMediaField(MediaContentHolder.MediaContent content)
+  {
+    ProtobufSerializer.checkMedia(content);
+  }
+
+  public void checkMediaUri(MediaContentHolder.MediaContent content)
+  {
+    ProtobufSerializer.checkUri(content);
+  }
 }
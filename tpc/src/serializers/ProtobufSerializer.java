@@ -2,27 +2,241 @@ package serializers;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+
 import serializers.protobuf.MediaContentHolder.Image;
 import serializers.protobuf.MediaContentHolder.Media;
 import serializers.protobuf.MediaContentHolder.MediaContent;
 import serializers.protobuf.MediaContentHolder.Image.Size;
 import serializers.protobuf.MediaContentHolder.Media.Player;
 
-public class ProtobufSerializer implements CheckingObjectSerializer<MediaContent>
+/**
+ * Serializes the protobuf-generated classes. By default uses the usual
+ * <code>toByteArray()</code> and <code>parseFrom()</code>; when reusing
+ * buffers, writes messages to streams through one array kept from call to
+ * call (sized with a single <code>getSerializedSize()</code>), and parses
+ * through one {@link CodedInputStream} kept from call to call, limited to
+ * the length of each message.
+ */
+public class ProtobufSerializer implements CheckingObjectSerializer<MediaContent>, StreamingObjectSerializer<MediaContent>,
+                                           OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>
 {
+  private final String _name;
+  private final boolean _reuseBuffers;
+
+  private byte[] _scratch = new byte[0];
+
+  // used only when reusing buffers
+  private byte[] _output = new byte[0];
+  private final ArrayInputStream _input = new ArrayInputStream();
+  private CodedInputStream _coded = CodedInputStream.newInstance(_input);
+
+  public ProtobufSerializer()
+  {
+    this("protobuf", false);
+  }
+
+  public ProtobufSerializer(String name, boolean reuseBuffers)
+  {
+    _name = name;
+    _reuseBuffers = reuseBuffers;
+  }
 
   public MediaContent deserialize (byte[] array) throws Exception
   {
+    if (_reuseBuffers) {
+      return parseReused(array, 0, array.length);
+    }
     return MediaContent.parseFrom(array);
   }
 
+  public MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    if (buffer.hasArray()) {
+      if (_reuseBuffers) {
+        return parseReused(buffer.array(), buffer.arrayOffset() + offset, length);
+      }
+      return MediaContent.parseFrom(CodedInputStream.newInstance(buffer.array(), buffer.arrayOffset() + offset, length));
+    }
+    // parsing from a stream would allocate a 4k buffer; parsed messages copy what they keep, so one array can be reused
+    if (_scratch.length < length) {
+      _scratch = new byte[length];
+    }
+    ByteBufferInputStream.slice(buffer, offset, length).get(_scratch, 0, length);
+    return MediaContent.parseFrom(CodedInputStream.newInstance(_scratch, 0, length));
+  }
+
+  /**
+   * Coded stream over a stream only refills its buffer when reading past
+   * what it has, and never reads past a pushed limit, so pointing the
+   * underlying stream to the next array between messages is safe. A message
+   * that fails to parse may leave its limit pushed and some of its bytes
+   * buffered, so the coded stream is then replaced.
+   */
+  private MediaContent parseReused(byte[] array, int offset, int length) throws IOException
+  {
+    _input.setInput(array, offset, length);
+    _coded.resetSizeCounter();
+    boolean parsed = false;
+    try {
+      int oldLimit = _coded.pushLimit(length);
+      MediaContent.Builder builder = MediaContent.newBuilder().mergeFrom(_coded);
+      _coded.popLimit(oldLimit);
+      parsed = true;
+      return builder.build();
+    } finally {
+      if (!parsed) {
+        _coded = CodedInputStream.newInstance(_input);
+      }
+    }
+  }
+
     public byte[] serialize(MediaContent content) throws IOException
     {
+        // already sizes the array once and writes straight into it; as the array is returned, none can be reused
         return content.toByteArray();
     }
 
+    public void serialize(MediaContent content, OutputStream out) throws IOException
+    {
+        int size = content.getSerializedSize();
+        if (out instanceof GrowableByteArrayOutputStream) {
+            // can write straight into the buffer
+            GrowableByteArrayOutputStream buffer = (GrowableByteArrayOutputStream) out;
+            CodedOutputStream coded = CodedOutputStream.newInstance(buffer.reserve(size), buffer.size(), size);
+            content.writeTo(coded);
+            buffer.skip(size);
+        } else if (_reuseBuffers) {
+            out.write(writeToBuffer(content, size, 0), 0, size);
+        } else {
+            // writeTo(OutputStream) would allocate a 4k buffer, even for small messages
+            CodedOutputStream coded = CodedOutputStream.newInstance(out, Math.min(size, 4096));
+            content.writeTo(coded);
+            coded.flush();
+        }
+    }
+
+    /**
+     * Writes message prefixed by its length as 4 big-endian bytes (as
+     * <code>DataOutputStream.writeInt()</code> writes it), with a single
+     * write to the stream, from the array used for all messages.
+     */
+    public void writeFramed(Message message, OutputStream out) throws IOException
+    {
+        int size = message.getSerializedSize();
+        byte[] buffer = writeToBuffer(message, size, 4);
+        putInt(buffer, 0, size);
+        out.write(buffer, 0, 4 + size);
+    }
+
+    /**
+     * Same as {@link #writeFramed(Message, OutputStream)}, with
+     * <code>header</code> written as 4 more big-endian bytes before the
+     * length, in the same write (for a method index, as read back with
+     * {@link #readInt}).
+     */
+    public void writeFramed(int header, Message message, OutputStream out) throws IOException
+    {
+        int size = message.getSerializedSize();
+        byte[] buffer = writeToBuffer(message, size, 8);
+        putInt(buffer, 0, header);
+        putInt(buffer, 4, size);
+        out.write(buffer, 0, 8 + size);
+    }
+
+    /**
+     * Reads a message framed as {@link #writeFramed} writes it, from a coded
+     * stream that is kept for the whole connection.
+     */
+    public static Message readFramed(CodedInputStream in, Message.Builder builder) throws IOException
+    {
+        int oldLimit = in.pushLimit(readInt(in));
+        try {
+            return builder.mergeFrom(in).build();
+        } finally {
+            in.popLimit(oldLimit);
+            // size limit is for the whole stream, so reset it for each message
+            in.resetSizeCounter();
+        }
+    }
+
+    /**
+     * Reads 4 big-endian bytes, as <code>DataInputStream.readInt()</code>.
+     */
+    public static int readInt(CodedInputStream in) throws IOException
+    {
+        return ((in.readRawByte() & 0xFF) << 24) | ((in.readRawByte() & 0xFF) << 16)
+            | ((in.readRawByte() & 0xFF) << 8) | (in.readRawByte() & 0xFF);
+    }
+
+    /**
+     * Writes message at <code>offset</code> of the array used for all
+     * messages, leaving the bytes before it for the caller to fill in.
+     */
+    private byte[] writeToBuffer(Message message, int size, int offset) throws IOException
+    {
+        if (_output.length < offset + size) {
+            _output = new byte[Math.max(offset + size, 2 * _output.length)];
+        }
+        CodedOutputStream coded = CodedOutputStream.newInstance(_output, offset, size);
+        message.writeTo(coded);
+        coded.checkNoSpaceLeft();
+        return _output;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value)
+    {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Uses protobuf's own framing (same as <code>writeDelimitedTo()</code>):
+     * each message is prefixed by its length as a varint. One coded stream is
+     * used for the whole stream, instead of one per message.
+     */
+    public RecordWriter<MediaContent> newWriter(OutputStream out)
+    {
+        final CodedOutputStream cos = CodedOutputStream.newInstance(out);
+        return new RecordWriter<MediaContent>() {
+            public void write(MediaContent content) throws Exception
+            {
+                cos.writeRawVarint32(content.getSerializedSize());
+                content.writeTo(cos);
+            }
+
+            public void flush() throws Exception
+            {
+                cos.flush();
+            }
+        };
+    }
+
+    public RecordReader<MediaContent> newReader(InputStream in)
+    {
+        final CodedInputStream cis = CodedInputStream.newInstance(in);
+        return new RecordReader<MediaContent>() {
+            public MediaContent read() throws Exception
+            {
+                int oldLimit = cis.pushLimit(cis.readRawVarint32());
+                MediaContent content = MediaContent.newBuilder().mergeFrom(cis).build();
+                cis.popLimit(oldLimit);
+                // size limit is for the whole stream, so reset it for each message
+                cis.resetSizeCounter();
+                return content;
+            }
+        };
+    }
+
     public MediaContent create()
     {
     	MediaContent contentProto = MediaContent
@@ -64,11 +278,27 @@ public class ProtobufSerializer implements CheckingObjectSerializer<MediaContent
 
   public String getName ()
   {
-    return "protobuf";
+    return _name;
   }
 
   public void checkAllFields(MediaContent content) {
-      checkMediaField(content);
+      checkAll(content);
+  }
+
+  public void checkMediaField(MediaContent content) {
+      checkMedia(content);
+  }
+
+  public void checkMediaUri(MediaContent content) {
+      checkUri(content);
+  }
+
+  /*
+   * Static versions, for other serializers of the same generated classes
+   */
+
+  static void checkAll(MediaContent content) {
+      checkMedia(content);
       List<Image> list = content.getImageList();
       assetEquals(2, list.size());
       
@@ -87,7 +317,7 @@ public class ProtobufSerializer implements CheckingObjectSerializer<MediaContent
       assetEquals(image.getHeight(), 0);
   }
 
-  public void checkMediaField(MediaContent content) {
+  static void checkMedia(MediaContent content) {
       Media media = content.getMedia();
       assetEquals(media.getUri(), "http://javaone.com/keynote.mpg");
       assetEquals(media.getFormat(), "video/mpg4");
@@ -100,6 +330,10 @@ public class ProtobufSerializer implements CheckingObjectSerializer<MediaContent
       assetEquals(media.getHeight(), 0);
   }
 
+  static void checkUri(MediaContent content) {
+      assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+  }
+
   static private void assetEquals(Object expected, Object actual) {
       if( !expected.equals(actual) ) {
           throw new RuntimeException(""+expected+"!="+actual);
@@ -1,6 +1,8 @@
 package serializers;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.codehaus.jackson.JsonParser;
 
@@ -16,7 +18,8 @@ import serializers.protostuff.MediaContentHolderJSON;
  * @created Oct 26, 2009
  */
 
-public class ProtostuffJsonSerializer implements ObjectSerializer<MediaContent>
+public class ProtostuffJsonSerializer implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+    CheckingObjectSerializer<MediaContent>
 {
     
     private static final MediaContentHolderJSON json = new MediaContentHolderJSON();
@@ -35,7 +38,7 @@ public class ProtostuffJsonSerializer implements ObjectSerializer<MediaContent>
                         .setSize(123)
                         .setHeight(0)
                         .setWidth(0)
-                        .setBitrate(123)
+                        .setBitrate(0)
                         .addPerson("Bill Gates")
                         .addPerson("Steve Jobs")
                         .build()
@@ -74,6 +77,20 @@ public class ProtostuffJsonSerializer implements ObjectSerializer<MediaContent>
         return builder.build();
     }
 
+    public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+    {
+        MediaContent.Builder builder = MediaContent.newBuilder();
+        JsonParser parser;
+        if (buffer.hasArray()) {
+            parser = json.getJsonFactory().createJsonParser(buffer.array(), buffer.arrayOffset() + offset, length);
+        } else {
+            parser = json.getJsonFactory().createJsonParser(new ByteBufferInputStream(buffer, offset, length));
+        }
+        json.mergeFrom(parser, builder);
+        parser.close();
+        return builder.build();
+    }
+
     public byte[] serialize(MediaContent content) throws Exception
     {
         ByteArrayOutputStream out = new ByteArrayOutputStream(512);
@@ -81,4 +98,25 @@ public class ProtostuffJsonSerializer implements ObjectSerializer<MediaContent>
         return out.toByteArray();
     }
 
+    public void serialize(MediaContent content, OutputStream out) throws Exception
+    {
+        // writeTo() closes the stream
+        json.writeTo(new NonClosingOutputStream(out), content);
+    }
+
+    public void checkAllFields(MediaContent content)
+    {
+        ProtobufSerializer.checkAll(content);
+    }
+
+    public void checkMediaField(MediaContent content)
+    {
+        ProtobufSerializer.checkMedia(content);
+    }
+
+    public void checkMediaUri(MediaContent content)
+    {
+        ProtobufSerializer.checkUri(content);
+    }
+
 }
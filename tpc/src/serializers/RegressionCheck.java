@@ -0,0 +1,145 @@
+package serializers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import serializers.BenchmarkRunner.measurements;
+
+/**
+ * Compares results against a baseline (typically from before upgrading a
+ * library) and reports which times got significantly slower.
+ *<p>
+ * For each serializer and timed measurement, the trials of both runs are
+ * compared with Welch's t-test (one-sided, 1% significance); a slowdown is
+ * reported only if it is also at least {@link #MIN_SLOWDOWN_PERCENT}, since
+ * with enough trials even tiny differences become significant. Changes in
+ * serialized size are reported too, but are not counted as regressions.
+ */
+class RegressionCheck
+{
+  final static double MIN_SLOWDOWN_PERCENT = 5.0;
+
+  /**
+   * One-sided critical values of Student's t distribution at 1% significance,
+   * by degrees of freedom; for degrees of freedom between entries, the value
+   * of the lower one is used (which is slightly conservative).
+   */
+  private final static int[] T_DF = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 15, 20, 25, 30, 40, 60, 120 };
+  private final static double[] T_CRITICAL = { 31.821, 6.965, 4.541, 3.747, 3.365, 3.143, 2.998, 2.896, 2.821, 2.764,
+                                               2.681, 2.602, 2.528, 2.485, 2.457, 2.423, 2.390, 2.358 };
+  private final static double T_CRITICAL_INFINITE = 2.326;
+
+  /**
+   * Prints comparison of each serializer and measurement present in both.
+   *
+   * @return Number of significant slowdowns
+   */
+  static int compare(List<BenchmarkResult> baseline, List<BenchmarkResult> current)
+  {
+    Map<String, BenchmarkResult> baselineByName = new HashMap<String, BenchmarkResult>();
+    for (BenchmarkResult result : baseline)
+      baselineByName.put(result.name, result);
+
+    System.out.println();
+    System.out.printf("%-24s, %-34s, %15s, %15s, %9s, %8s, %s\n",
+                      " ", "Compared to baseline", "Baseline", "Current", "Change", "t", "");
+    int regressions = 0;
+    for (BenchmarkResult result : current)
+    {
+      BenchmarkResult base = baselineByName.get(result.name);
+      if (base == null) {
+        System.out.printf("%-24s, not in baseline\n", result.name);
+        continue;
+      }
+      for (Map.Entry<measurements, double[]> entry : result.trials.entrySet())
+      {
+        double[] before = base.trials.get(entry.getKey());
+        double[] after = entry.getValue();
+        if (before == null || before.length < 2 || after.length < 2) {
+          continue;
+        }
+        double meanBefore = mean(before);
+        double meanAfter = mean(after);
+        double change = 100.0 * (meanAfter - meanBefore) / meanBefore;
+        double t = welchT(before, after);
+        String verdict = "";
+        if (change >= MIN_SLOWDOWN_PERCENT && t >= criticalValue(welchDegreesOfFreedom(before, after))) {
+          verdict = "SLOWER";
+          ++regressions;
+        } else if (change <= -MIN_SLOWDOWN_PERCENT && -t >= criticalValue(welchDegreesOfFreedom(before, after))) {
+          verdict = "faster";
+        }
+        System.out.printf("%-24s, %-34s, %15.5f, %15.5f, %8.1f%%, %8.2f, %s\n",
+                          result.name, entry.getKey().name(), meanBefore, meanAfter, change, t, verdict);
+      }
+      double sizeBefore = base.get(measurements.length);
+      double sizeAfter = result.get(measurements.length);
+      if (sizeBefore != sizeAfter) {
+        System.out.printf("%-24s, %-34s, %15.0f, %15.0f\n", result.name, "serialized size changed", sizeBefore, sizeAfter);
+      }
+    }
+    System.out.println();
+    System.out.println(regressions == 0 ? "No significant slowdowns" : regressions+" significant slowdown(s)");
+    return regressions;
+  }
+
+  static double mean(double[] values)
+  {
+    double sum = 0;
+    for (double d : values)
+      sum += d;
+    return sum / values.length;
+  }
+
+  /**
+   * Sample variance (with n-1 denominator).
+   */
+  static double variance(double[] values)
+  {
+    double mean = mean(values);
+    double sum = 0;
+    for (double d : values)
+      sum += (d - mean) * (d - mean);
+    return sum / (values.length - 1);
+  }
+
+  /**
+   * Welch's t statistic; positive if <code>after</code> has the larger mean.
+   */
+  static double welchT(double[] before, double[] after)
+  {
+    double se = Math.sqrt(variance(before) / before.length + variance(after) / after.length);
+    if (se == 0.0) {
+      return (mean(after) == mean(before)) ? 0.0 : Math.signum(mean(after) - mean(before)) * Double.POSITIVE_INFINITY;
+    }
+    return (mean(after) - mean(before)) / se;
+  }
+
+  /**
+   * Welch-Satterthwaite approximation of degrees of freedom.
+   */
+  static double welchDegreesOfFreedom(double[] before, double[] after)
+  {
+    double a = variance(before) / before.length;
+    double b = variance(after) / after.length;
+    if (a + b == 0.0) {
+      return before.length + after.length - 2;
+    }
+    return (a + b) * (a + b) / (a * a / (before.length - 1) + b * b / (after.length - 1));
+  }
+
+  static double criticalValue(double degreesOfFreedom)
+  {
+    if (degreesOfFreedom < T_DF[0]) {
+      return T_CRITICAL[0];
+    }
+    if (degreesOfFreedom > 2 * T_DF[T_DF.length - 1]) {
+      return T_CRITICAL_INFINITE;
+    }
+    int i = T_DF.length - 1;
+    while (T_DF[i] > degreesOfFreedom)
+      --i;
+    return T_CRITICAL[i];
+  }
+}
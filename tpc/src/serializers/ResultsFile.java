@@ -0,0 +1,246 @@
+package serializers;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import serializers.BenchmarkRunner.measurements;
+
+/**
+ * Writes results of {@link BenchmarkRunner} as JSON or CSV, along with the
+ * environment they were measured in, and reads JSON results back for
+ * {@link RegressionCheck}.
+ *<p>
+ * JSON has one object with <code>environment</code> (JVM, flags, OS,
+ * processors), <code>parameters</code> (iterations, trials, warm-up bounds,
+ * payload) and a <code>results</code> array with, for each serializer, its
+ * <code>values</code>, the <code>trials</code> behind the values, and
+ * latency percentiles. CSV has one line per serializer and measurement, with
+ * the JVM on each line so that files from different JVMs can be concatenated.
+ * Values that could not be measured are <code>null</code> in JSON and empty
+ * in CSV.
+ */
+class ResultsFile
+{
+  /**
+   * Documents used by the single-threaded measurements come from
+   * {@link ObjectSerializer#create}.
+   */
+  final static String PAYLOAD = "ObjectSerializer.create(): 1 media with 2 persons, 2 images";
+
+  private ResultsFile() { }
+
+  static void writeJson(File file, List<BenchmarkResult> results) throws IOException
+  {
+    JsonGenerator gen = new JsonFactory().createJsonGenerator(file, JsonEncoding.UTF8);
+    gen.useDefaultPrettyPrinter();
+    gen.writeStartObject();
+
+    RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+    gen.writeObjectFieldStart("environment");
+    gen.writeStringField("timestamp", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+    gen.writeStringField("javaVersion", System.getProperty("java.version"));
+    gen.writeStringField("javaVendor", System.getProperty("java.vendor"));
+    gen.writeStringField("vmName", runtime.getVmName());
+    gen.writeStringField("vmVersion", runtime.getVmVersion());
+    gen.writeArrayFieldStart("jvmArguments");
+    for (String arg : runtime.getInputArguments())
+      gen.writeString(arg);
+    gen.writeEndArray();
+    gen.writeStringField("os", System.getProperty("os.name")+" "+System.getProperty("os.version")+" "+System.getProperty("os.arch"));
+    gen.writeNumberField("availableProcessors", Runtime.getRuntime().availableProcessors());
+    gen.writeEndObject();
+
+    gen.writeObjectFieldStart("parameters");
+    gen.writeNumberField("iterations", BenchmarkRunner.ITERATIONS);
+    gen.writeNumberField("trials", BenchmarkRunner.TRIALS);
+    gen.writeNumberField("warmupMinMsecs", WarmupController.MIN_MSECS);
+    gen.writeNumberField("warmupMaxMsecs", WarmupController.MAX_MSECS);
+    gen.writeNumberField("warmupCvThreshold", WarmupController.CV_THRESHOLD);
+    gen.writeStringField("payload", PAYLOAD);
+    gen.writeEndObject();
+
+    gen.writeArrayFieldStart("results");
+    for (BenchmarkResult result : results)
+    {
+      gen.writeStartObject();
+      gen.writeStringField("serializer", result.name);
+      gen.writeObjectFieldStart("values");
+      for (Map.Entry<measurements, Double> entry : result.values.entrySet())
+      {
+        gen.writeFieldName(entry.getKey().name());
+        writeNumber(gen, entry.getValue());
+      }
+      gen.writeEndObject();
+      gen.writeObjectFieldStart("trials");
+      for (Map.Entry<measurements, double[]> entry : result.trials.entrySet())
+      {
+        gen.writeArrayFieldStart(entry.getKey().name());
+        for (double d : entry.getValue())
+          writeNumber(gen, d);
+        gen.writeEndArray();
+      }
+      gen.writeEndObject();
+      gen.writeObjectFieldStart("latencies");
+      for (Map.Entry<measurements, LatencyHistogram> entry : result.latencies.entrySet())
+      {
+        LatencyHistogram h = entry.getValue();
+        gen.writeObjectFieldStart(entry.getKey().name());
+        gen.writeNumberField("p50", h.getValueAtPercentile(50.0));
+        gen.writeNumberField("p90", h.getValueAtPercentile(90.0));
+        gen.writeNumberField("p99", h.getValueAtPercentile(99.0));
+        gen.writeNumberField("p99.9", h.getValueAtPercentile(99.9));
+        gen.writeNumberField("max", h.getMax());
+        gen.writeEndObject();
+      }
+      gen.writeEndObject();
+      gen.writeEndObject();
+    }
+    gen.writeEndArray();
+
+    gen.writeEndObject();
+    gen.close();
+  }
+
+  private static void writeNumber(JsonGenerator gen, double value) throws IOException
+  {
+    // JSON has no NaN or infinity
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      gen.writeNull();
+    } else {
+      gen.writeNumber(value);
+    }
+  }
+
+  static void writeCsv(File file, List<BenchmarkResult> results) throws IOException
+  {
+    RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+    String jvm = csv(System.getProperty("java.version"))+","+csv(runtime.getVmName())+","+csv(join(runtime.getInputArguments()));
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      out.println("serializer,measurement,value,trials,trialMean,trialStdDev,javaVersion,vmName,jvmArguments");
+      for (BenchmarkResult result : results)
+      {
+        for (Map.Entry<measurements, Double> entry : result.values.entrySet())
+        {
+          double[] trials = result.trials.get(entry.getKey());
+          out.println(csv(result.name)+","+entry.getKey().name()+","+csv(entry.getValue())+","
+                      +(trials == null ? "," : trials.length+",")
+                      +(trials == null ? "," : csv(RegressionCheck.mean(trials))+",")
+                      +(trials == null ? "" : csv(Math.sqrt(RegressionCheck.variance(trials))))
+                      +","+jvm);
+        }
+      }
+      if (out.checkError()) {
+        throw new IOException("Failed to write results to "+file);
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  private static String join(List<String> args)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (String arg : args)
+      sb.append(sb.length() == 0 ? "" : " ").append(arg);
+    return sb.toString();
+  }
+
+  private static String csv(double value)
+  {
+    return (Double.isNaN(value) || Double.isInfinite(value)) ? "" : String.valueOf(value);
+  }
+
+  private static String csv(String value)
+  {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      return value;
+    }
+    return "\""+value.replace("\"", "\"\"")+"\"";
+  }
+
+  /**
+   * Reads results back from a file written by {@link #writeJson}; latency
+   * percentiles are not read.
+   */
+  @SuppressWarnings("unchecked")
+  static List<BenchmarkResult> readJson(File file) throws IOException
+  {
+    Map<String, Object> root = new ObjectMapper().readValue(file, Map.class);
+    List<Map<String, Object>> entries = (List<Map<String, Object>>) root.get("results");
+    if (entries == null) {
+      throw new IOException("No 'results' in "+file);
+    }
+    List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+    Set<String> unknown = new TreeSet<String>();
+    for (Map<String, Object> entry : entries)
+    {
+      BenchmarkResult result = new BenchmarkResult((String) entry.get("serializer"));
+      Map<String, Object> values = (Map<String, Object>) entry.get("values");
+      for (Map.Entry<String, Object> value : values.entrySet())
+      {
+        measurements m = measurement(value.getKey(), unknown);
+        if (m != null)
+          result.values.put(m, toDouble(value.getValue()));
+      }
+      Map<String, List<Object>> trials = (Map<String, List<Object>>) entry.get("trials");
+      if (trials != null) {
+        for (Map.Entry<String, List<Object>> trial : trials.entrySet())
+        {
+          measurements m = measurement(trial.getKey(), unknown);
+          if (m == null)
+            continue;
+          double[] array = result.newTrials(m, trial.getValue().size());
+          for (int i = 0; i < array.length; ++i)
+            array[i] = toDouble(trial.getValue().get(i));
+        }
+      }
+      results.add(result);
+    }
+    if (!unknown.isEmpty()) {
+      System.err.println("WARN: skipping measurements of "+file+" that this version does not know: "+unknown);
+    }
+    return results;
+  }
+
+  /**
+   * @return Measurement of given name, or null (with name added to
+   *   <code>unknown</code>) if file was written by a version with other ones
+   */
+  private static measurements measurement(String name, Set<String> unknown)
+  {
+    try
+    {
+      return measurements.valueOf(name);
+    }
+    catch (IllegalArgumentException e)
+    {
+      unknown.add(name);
+      return null;
+    }
+  }
+
+  private static double toDouble(Object value)
+  {
+    return (value == null) ? Double.NaN : ((Number) value).doubleValue();
+  }
+}
@@ -0,0 +1,19 @@
+package serializers;
+
+/**
+ * Serializer that can deserialize into an object it returned earlier,
+ * instead of constructing a new one, for consumers that handle a message
+ * and then drop it before reading the next. How much is reused depends on
+ * the codec: some fill in the whole object graph, others only the root
+ * object (and construct nested objects and lists anew).
+ */
+public interface ReusingDeserializer<T> extends ObjectSerializer<T>
+{
+    /**
+     * @param reuse Object to read into, as returned by an earlier call; or
+     *   null to construct a new one. Its contents are overwritten, so
+     *   caller must not use it after the call, other than through the
+     *   returned object (which may or may not be the same instance)
+     */
+    public T deserialize(byte[] array, T reuse) throws Exception;
+}
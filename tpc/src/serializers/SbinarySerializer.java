@@ -1,6 +1,7 @@
 package serializers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import serializers.scala.Image;
 import serializers.scala.Media;
@@ -10,17 +11,36 @@ import serializers.scala.SbinarySerializerSupport;
 import serializers.scala.Size;
 
 
-public class SbinarySerializer implements ObjectSerializer<MediaContent>
+public class SbinarySerializer implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+                                          CheckingObjectSerializer<MediaContent>
 {
   public MediaContent deserialize (byte[] array) throws Exception
   {
     return SbinarySerializerSupport.deserialize(array);
   }
+
+  /**
+   * SBinary support only reads arrays, so this copies the bytes into one.
+   */
+  public MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    byte[] array = new byte[length];
+    ByteBufferInputStream.slice(buffer, offset, length).get(array);
+    return SbinarySerializerSupport.deserialize(array);
+  }
     public byte[] serialize(MediaContent content) throws IOException, Exception
   {
     return SbinarySerializerSupport.serialize(content);
   }
 
+  /**
+   * SBinary support only produces arrays, so this still allocates one.
+   */
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    out.write(SbinarySerializerSupport.serialize(content));
+  }
+
 
   public MediaContent create()
   {
@@ -43,4 +63,19 @@ public class SbinarySerializer implements ObjectSerializer<MediaContent>
   {
     return "sbinary";
   }
+
+  public void checkAllFields(MediaContent content)
+  {
+    ScalaSerializer.checkAll(content);
+  }
+
+  public void checkMediaField(MediaContent content)
+  {
+    ScalaSerializer.checkMedia(content);
+  }
+
+  public void checkMediaUri(MediaContent content)
+  {
+    ScalaSerializer.checkUri(content);
+  }
 }
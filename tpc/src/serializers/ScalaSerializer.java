@@ -5,6 +5,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import serializers.scala.Image;
 import serializers.scala.Media;
@@ -14,7 +16,8 @@ import serializers.scala.Size;
 
 
 
-public class ScalaSerializer implements ObjectSerializer<MediaContent>
+public class ScalaSerializer implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+                                        CheckingObjectSerializer<MediaContent>
 {
   public int expectedSize = 0;
 
@@ -31,6 +34,19 @@ public class ScalaSerializer implements ObjectSerializer<MediaContent>
     }
   }
 
+  public MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buffer, offset, length));
+    try
+    {
+      return (MediaContent)ois.readObject();
+    }
+    finally
+    {
+      ois.close();
+    }
+  }
+
     public byte[] serialize(MediaContent content) throws IOException, Exception
   {
     ByteArrayOutputStream baos = new ByteArrayOutputStream(expectedSize);
@@ -42,6 +58,13 @@ public class ScalaSerializer implements ObjectSerializer<MediaContent>
     return array;
   }
 
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.writeObject(content);
+    oos.flush();
+  }
+
   public MediaContent create()
   {
     Media media = new Media("http://javaone.com/keynote.mpg", "Javaone Keynote", 0, 0, "video/mpg4", 1234567, 123, 0, Player.JAVA());
@@ -63,4 +86,76 @@ public class ScalaSerializer implements ObjectSerializer<MediaContent>
   {
     return "scala";
   }
+
+  public void checkAllFields(MediaContent content)
+  {
+    checkAll(content);
+  }
+
+  public void checkMediaField(MediaContent content)
+  {
+    checkMedia(content);
+  }
+
+  public void checkMediaUri(MediaContent content)
+  {
+    checkUri(content);
+  }
+
+  /*
+   * Static versions, for other serializers of the same Scala classes
+   */
+
+  static void checkAll(MediaContent content)
+  {
+    checkMedia(content);
+    assetEquals(2, content.images().length());
+
+    // addImage() prepends, so order depends on how the list was built; enumeration
+    // values don't survive Java serialization as the same instances, so compare ids
+    Image image = content.images().apply(0);
+    Image other = content.images().apply(1);
+    if (image.size().id() != Size.LARGE().id()) {
+      other = image;
+      image = content.images().apply(1);
+    }
+    assetEquals(image.uri(), "http://javaone.com/keynote_large.jpg");
+    assetEquals(image.size().id(), Size.LARGE().id());
+    assetEquals(image.title(), "Javaone Keynote");
+    assetEquals(image.width(), 0);
+    assetEquals(image.height(), 0);
+
+    image = other;
+    assetEquals(image.uri(), "http://javaone.com/keynote_thumbnail.jpg");
+    assetEquals(image.size().id(), Size.SMALL().id());
+    assetEquals(image.title(), "Javaone Keynote");
+    assetEquals(image.width(), 0);
+    assetEquals(image.height(), 0);
+  }
+
+  static void checkMedia(MediaContent content)
+  {
+    Media media = content.media();
+    assetEquals(media.uri(), "http://javaone.com/keynote.mpg");
+    assetEquals(media.format(), "video/mpg4");
+    assetEquals(media.title(), "Javaone Keynote");
+    assetEquals(media.duration(), 1234567L);
+    assetEquals(media.size(), 123L);
+    assetEquals(media.bitrate(), 0);
+    assetEquals(media.player().id(), Player.JAVA().id());
+    assetEquals(media.width(), 0);
+    assetEquals(media.height(), 0);
+  }
+
+  static void checkUri(MediaContent content)
+  {
+    assetEquals(content.media().uri(), "http://javaone.com/keynote.mpg");
+  }
+
+  static private void assetEquals(Object expected, Object actual)
+  {
+    if( !expected.equals(actual) ) {
+      throw new RuntimeException(""+expected+"!="+actual);
+    }
+  }
 }
@@ -0,0 +1,204 @@
+package serializers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import serializers.payload.PayloadConverter;
+import serializers.payload.PayloadConverters;
+import serializers.payload.PayloadGenerator;
+
+/**
+ * Measures how serialized size and serialization/deserialization throughput
+ * change with the shape of the document: number of images, number of
+ * persons, string lengths, magnitude of numbers, and all of them together
+ * (from about 200 bytes up to a couple of megabytes).
+ *<p>
+ * Payloads come from {@link PayloadGenerator} and are converted to each
+ * serializer's own model; serializers whose model has no converter, or that
+ * can not round-trip a given payload (some have the fixed two-image shape
+ * hard-coded), are reported as "-".
+ *<p>
+ * Note that the largest documents do not fit in the 16 megabyte heap that
+ * <code>run-benchmark.sh</code> uses; run with a larger <code>-Xmx</code>.
+ */
+class ScalingBenchmark
+{
+  /**
+   * Warm-up and measurement time for each serializer, payload and operation,
+   * in milliseconds; short since there are lots of combinations.
+   */
+  final static long WARMUP_MSECS = 300;
+  final static long MEASURE_MSECS = 700;
+
+  /**
+   * Document shape that each dimension varies from.
+   */
+  final static int BASE_IMAGES = 2, BASE_PERSONS = 2, BASE_STRING_LENGTH = 16;
+  final static long BASE_MAGNITUDE = 1000000L;
+
+  static class Dimension
+  {
+    final String name;
+    final List<String> labels = new ArrayList<String>();
+    final List<PayloadGenerator> points = new ArrayList<PayloadGenerator>();
+
+    Dimension(String name)
+    {
+      this.name = name;
+    }
+
+    Dimension add(String label, PayloadGenerator point)
+    {
+      labels.add(label);
+      points.add(point);
+      return this;
+    }
+  }
+
+  static List<Dimension> dimensions()
+  {
+    List<Dimension> dims = new ArrayList<Dimension>();
+    Dimension d = new Dimension("image count");
+    for (int images : new int[] { 1, 4, 16, 64, 256, 1024 })
+      d.add(String.valueOf(images), new PayloadGenerator(images, BASE_PERSONS, BASE_STRING_LENGTH, BASE_MAGNITUDE));
+    dims.add(d);
+
+    d = new Dimension("person count");
+    for (int persons : new int[] { 1, 4, 16, 64, 256 })
+      d.add(String.valueOf(persons), new PayloadGenerator(BASE_IMAGES, persons, BASE_STRING_LENGTH, BASE_MAGNITUDE));
+    dims.add(d);
+
+    d = new Dimension("string length");
+    for (int length : new int[] { 4, 16, 64, 256, 1024, 4096 })
+      d.add(String.valueOf(length), new PayloadGenerator(BASE_IMAGES, BASE_PERSONS, length, BASE_MAGNITUDE));
+    dims.add(d);
+
+    d = new Dimension("numeric magnitude");
+    for (long magnitude : new long[] { 10L, 1000L, 1000000L, 1000000000L, 1000000000000L, Long.MAX_VALUE })
+      d.add(String.valueOf(magnitude), new PayloadGenerator(BASE_IMAGES, BASE_PERSONS, BASE_STRING_LENGTH, magnitude));
+    dims.add(d);
+
+    // everything grows together; last point is about 2 megabytes in most formats
+    d = new Dimension("overall size (images/persons/string length)");
+    int[][] steps = { { 1, 1, 8 }, { 2, 2, 16 }, { 8, 4, 32 }, { 32, 8, 64 }, { 128, 16, 128 }, { 512, 32, 256 }, { 2048, 64, 512 } };
+    for (int[] step : steps)
+      d.add(step[0]+"/"+step[1]+"/"+step[2], new PayloadGenerator(step[0], step[1], step[2], BASE_MAGNITUDE));
+    dims.add(d);
+    return dims;
+  }
+
+  @SuppressWarnings("unchecked")
+  void run(Collection<ObjectSerializer<Object>> serializers) throws Exception
+  {
+    for (Dimension dim : dimensions())
+    {
+      List<String> names = new ArrayList<String>();
+      List<double[][]> results = new ArrayList<double[][]>();
+      for (ObjectSerializer<Object> serializer : serializers)
+      {
+        PayloadConverter<Object> converter = (PayloadConverter<Object>) PayloadConverters.converterFor(serializer.create());
+        if (converter == null) {
+          System.err.println("WARN: no payload converter for the model of '"+serializer.getName()+"', skipping");
+          continue;
+        }
+        names.add(serializer.getName());
+        double[][] row = new double[dim.points.size()][];
+        for (int i = 0; i < row.length; ++i)
+          row[i] = measure(serializer, converter.convert(dim.points.get(i).generate()), dim.name+"="+dim.labels.get(i));
+        results.add(row);
+      }
+      System.out.println();
+      printTable(dim, "Serialized size (bytes)", names, results, 0);
+      printTable(dim, "Serialize ops/s", names, results, 1);
+      printTable(dim, "Deserialize ops/s", names, results, 2);
+    }
+  }
+
+  /**
+   * @return Serialized size, serializations per second and deserializations per
+   *   second; all NaN if payload can not be round-tripped
+   */
+  private double[] measure(ObjectSerializer<Object> serializer, Object obj, String desc)
+  {
+    try
+    {
+      byte[] array = serializer.serialize(obj);
+      Object copy = serializer.deserialize(array);
+      // not all models implement equals(); for those only check we got the same kind of object back
+      boolean same = hasEquals(obj) ? obj.equals(copy) : (copy != null && copy.getClass() == obj.getClass());
+      if (!same) {
+        System.err.println("WARN: '"+serializer.getName()+"' failed round-trip test for "+desc);
+        return failed();
+      }
+      rate(serializer, obj, array, true, WARMUP_MSECS);
+      double ser = rate(serializer, obj, array, true, MEASURE_MSECS);
+      rate(serializer, obj, array, false, WARMUP_MSECS);
+      double deser = rate(serializer, obj, array, false, MEASURE_MSECS);
+      return new double[] { array.length, ser, deser };
+    }
+    catch (OutOfMemoryError e)
+    {
+      System.err.println("WARN: '"+serializer.getName()+"' ran out of memory for "+desc);
+      return failed();
+    }
+    catch (Exception e)
+    {
+      System.err.println("WARN: '"+serializer.getName()+"' failed for "+desc+": "+e);
+      return failed();
+    }
+  }
+
+  static boolean hasEquals(Object obj) throws Exception
+  {
+    return obj.getClass().getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+  }
+
+  private double[] failed()
+  {
+    return new double[] { Double.NaN, Double.NaN, Double.NaN };
+  }
+
+  private double rate(ObjectSerializer<Object> serializer, Object obj, byte[] array, boolean serialize, long msecs)
+    throws Exception
+  {
+    long start = System.nanoTime();
+    long end = start + msecs * 1000000L;
+    long count = 0;
+    long now;
+    do
+    {
+      if (serialize) {
+        serializer.serialize(obj);
+      } else {
+        serializer.deserialize(array);
+      }
+      ++count;
+    }
+    while ((now = System.nanoTime()) < end);
+    return count / ((now - start) / 1000000000.0);
+  }
+
+  private void printTable(Dimension dim, String title, List<String> names, List<double[][]> results, int index)
+  {
+    System.out.println(title+" by "+dim.name);
+    System.out.printf("%-24s", " ");
+    for (String label : dim.labels)
+      System.out.printf(", %12s", label);
+    System.out.println();
+    for (int i = 0; i < names.size(); ++i)
+    {
+      System.out.printf("%-24s", names.get(i));
+      for (double[] point : results.get(i))
+      {
+        if (Double.isNaN(point[index])) {
+          System.out.printf(", %12s", "-");
+        } else {
+          System.out.printf(", %12.0f", point[index]);
+        }
+      }
+      System.out.println();
+    }
+    System.out.println();
+  }
+}
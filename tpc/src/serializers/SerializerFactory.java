@@ -0,0 +1,12 @@
+package serializers;
+
+/**
+ * Constructs new serializer instances. Serializers are registered with
+ * {@link BenchmarkRunner} through factories so that code that can not share
+ * an instance (separate threads, forked JVMs, JMH state objects) can get
+ * its own one, without having to construct every other serializer too.
+ */
+public interface SerializerFactory<T>
+{
+    public ObjectSerializer<T> create() throws Exception;
+}
@@ -2,6 +2,9 @@ package serializers;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
@@ -17,6 +20,7 @@ import serializers.java.Image.Size;
 import serializers.java.Media.Player;
 
 public class StaxSerializer extends StdMediaSerializer
+    implements ReusingDeserializer<MediaContent>
 {
     public int expectedSize = 0;
     final XMLInputFactory inFactory;
@@ -32,9 +36,26 @@ public class StaxSerializer extends StdMediaSerializer
 
   public MediaContent deserialize (byte[] array) throws Exception
   {
-    XMLStreamReader parser = inFactory.createXMLStreamReader(new ByteArrayInputStream(array));
+    return readMediaContent(new ByteArrayInputStream(array), null);
+  }
+
+  public MediaContent deserialize (byte[] array, MediaContent reuse) throws Exception
+  {
+    return readMediaContent(new ByteArrayInputStream(array), reuse);
+  }
+
+  public MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    return readMediaContent(new ByteBufferInputStream(buffer, offset, length), null);
+  }
+
+  private MediaContent readMediaContent (InputStream in, MediaContent reuse) throws Exception
+  {
+    XMLStreamReader parser = inFactory.createXMLStreamReader(in);
     searchTag(parser, "mc");
-    MediaContent content = new MediaContent(readMedia(parser));
+    MediaContent content = (reuse == null) ? new MediaContent() : reuse;
+    content.setMedia(readMedia(parser, content.getMedia()));
+    int imageCount = 0;
     if (parser.nextTag() != XMLStreamConstants.START_ELEMENT) {
         throw new IllegalStateException("Expected <im>, no START_ELEMENT encountered but "+parser.getEventType());
     }
@@ -42,8 +63,9 @@ public class StaxSerializer extends StdMediaSerializer
         if (!"im".equals(parser.getLocalName())) {
             throw new IllegalStateException("Expected <im>, got <"+parser.getLocalName()+">");
         }
-        content.addImage(readImage(parser));
+        readImage(parser, resetImage(content, imageCount++));
     } while (parser.nextTag() == XMLStreamConstants.START_ELEMENT);
+    truncateImages(content, imageCount);
     // and should have closing </mc> at this point
     if (!"mc".equals(parser.getLocalName())) {
         throw new IllegalStateException("Expected closing </mc>, got </"+parser.getLocalName()+">");
@@ -52,9 +74,8 @@ public class StaxSerializer extends StdMediaSerializer
     return content;
   }
 
-  private Image readImage (XMLStreamReader parser) throws Exception
+  private void readImage (XMLStreamReader parser, Image image) throws Exception
   {
-    Image image = new Image();
     image.setUri(readElement(parser, FIELD_NAME_URI));
     image.setTitle(readElement(parser, FIELD_NAME_TITLE));
     image.setWidth(Integer.parseInt(readElement(parser, FIELD_NAME_WIDTH)));
@@ -64,12 +85,11 @@ public class StaxSerializer extends StdMediaSerializer
     if (parser.nextTag() != XMLStreamConstants.END_ELEMENT) {
         throw new IllegalStateException("Expected closing </"+FIELD_NAME_IMAGES+">");
     }
-    return image;
   }
 
-  private Media readMedia (XMLStreamReader parser) throws Exception
+  private Media readMedia (XMLStreamReader parser, Media reuse) throws Exception
   {
-    Media media = new Media();
+    Media media = resetMedia(reuse);
     media.setPlayer(Player.valueOf(readElement(parser, FIELD_NAME_PLAYER)));
     media.setUri(readElement(parser, FIELD_NAME_URI));
     media.setTitle(readElement(parser, FIELD_NAME_TITLE));
@@ -117,7 +137,20 @@ public class StaxSerializer extends StdMediaSerializer
   public byte[] serialize(MediaContent content) throws Exception
   {
     ByteArrayOutputStream baos = new ByteArrayOutputStream(expectedSize);
-    XMLStreamWriter writer = outFactory.createXMLStreamWriter(baos, "UTF-8");
+    writeMediaContent(baos, content);
+    byte[] array = baos.toByteArray();
+    expectedSize = array.length;
+    return array;
+  }
+
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    writeMediaContent(out, content);
+  }
+
+  private void writeMediaContent(OutputStream out, MediaContent content) throws XMLStreamException
+  {
+    XMLStreamWriter writer = outFactory.createXMLStreamWriter(out, "UTF-8");
     writer.writeStartDocument("UTF-8", "1.0");
     writer.writeStartElement("mc");
     writeMedia(writer, content.getMedia());
@@ -127,10 +160,8 @@ public class StaxSerializer extends StdMediaSerializer
     writer.writeEndElement();
     writer.writeEndDocument();
     writer.flush();
+    // (XMLStreamWriter.close() does not close the underlying stream)
     writer.close();
-    byte[] array = baos.toByteArray();
-    expectedSize = array.length;
-    return array;
   }
 
   private void writeImage (XMLStreamWriter writer, Image image) throws XMLStreamException
@@ -10,7 +10,8 @@ import serializers.java.MediaContent;
  * Shared base class for those serializers that operate on POJOs.
  */
 public abstract class StdMediaSerializer
-    implements ObjectSerializer<MediaContent>
+    implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+               CheckingObjectSerializer<MediaContent>
 {
     public final static int FIELD_IX_MEDIA = 1;
     public final static String FIELD_NAME_MEDIA = "md";
@@ -75,4 +76,112 @@ public abstract class StdMediaSerializer
         content.addImage(new Image(0, "Javaone Keynote", "http://javaone.com/keynote_thumbnail.jpg", 0, Image.Size.SMALL));
         return content;
     }
+
+    public void checkAllFields(MediaContent content)
+    {
+        checkMediaField(content);
+        assetEquals(2, content.imageCount());
+
+        Image image = content.getImage(0);
+        assetEquals(image.getUri(), "http://javaone.com/keynote_large.jpg");
+        assetEquals(image.getSize(), Image.Size.LARGE);
+        assetEquals(image.getTitle(), "Javaone Keynote");
+        assetEquals(image.getWidth(), 0);
+        assetEquals(image.getHeight(), 0);
+
+        image = content.getImage(1);
+        assetEquals(image.getUri(), "http://javaone.com/keynote_thumbnail.jpg");
+        assetEquals(image.getSize(), Image.Size.SMALL);
+        assetEquals(image.getTitle(), "Javaone Keynote");
+        assetEquals(image.getWidth(), 0);
+        assetEquals(image.getHeight(), 0);
+    }
+
+    public void checkMediaField(MediaContent content)
+    {
+        Media media = content.getMedia();
+        assetEquals(media.getUri(), "http://javaone.com/keynote.mpg");
+        assetEquals(media.getFormat(), "video/mpg4");
+        assetEquals(media.getTitle(), "Javaone Keynote");
+        assetEquals(media.getDuration(), 1234567L);
+        assetEquals(media.getSize(), 123L);
+        assetEquals(media.getBitrate(), 0);
+        assetEquals(media.getPlayer(), Media.Player.JAVA);
+        assetEquals(media.getWidth(), 0);
+        assetEquals(media.getHeight(), 0);
+    }
+
+    public void checkMediaUri(MediaContent content)
+    {
+        assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+    }
+
+    // // // Helpers for readers that fill in objects from an earlier call
+
+    /**
+     * @return Given media with all fields cleared (persons list is kept, but
+     *   emptied); or a new one if null
+     */
+    protected static Media resetMedia(Media media)
+    {
+        if (media == null) {
+            return new Media();
+        }
+        media.setPlayer(null);
+        media.setUri(null);
+        media.setTitle(null);
+        media.setWidth(0);
+        media.setHeight(0);
+        media.setFormat(null);
+        media.setDuration(0L);
+        media.setSize(0L);
+        media.setBitrate(0);
+        media.setCopyright(null);
+        if (media.getPersons() != null) {
+            media.getPersons().clear();
+        }
+        return media;
+    }
+
+    /**
+     * @return Image at given index of content, with all fields cleared; or,
+     *   if content has fewer images, a new one appended to it
+     */
+    protected static Image resetImage(MediaContent content, int index)
+    {
+        List<Image> images = content.getImages();
+        if (images == null || index >= images.size()) {
+            Image image = new Image();
+            content.addImage(image);
+            return image;
+        }
+        Image image = images.get(index);
+        image.setUri(null);
+        image.setTitle(null);
+        image.setWidth(0);
+        image.setHeight(0);
+        image.setSize(null);
+        return image;
+    }
+
+    /**
+     * Drops images left over from an earlier (longer) content, beyond
+     * the given number of images read.
+     */
+    protected static void truncateImages(MediaContent content, int count)
+    {
+        List<Image> images = content.getImages();
+        if (images != null) {
+            while (images.size() > count) {
+                images.remove(images.size() - 1);
+            }
+        }
+    }
+
+    static private void assetEquals(Object expected, Object actual)
+    {
+        if( !expected.equals(actual) ) {
+            throw new RuntimeException(""+expected+"!="+actual);
+        }
+    }
 }
@@ -0,0 +1,268 @@
+package serializers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import serializers.StreamingObjectSerializer.RecordReader;
+import serializers.StreamingObjectSerializer.RecordWriter;
+import serializers.payload.PayloadConverter;
+import serializers.payload.PayloadConverters;
+import serializers.payload.PayloadGenerator;
+
+/**
+ * Writes a long sequence of objects to a single stream and reads them back,
+ * as batch jobs do, and reports throughput in records and megabytes per
+ * second. Serializers that implement {@link StreamingObjectSerializer} are
+ * measured both with their native streaming and with
+ * {@link LengthPrefixedStreams}, others only with the latter.
+ *<p>
+ * Records cycle through a set of distinct documents from
+ * {@link PayloadGenerator} (or the serializer's own test object, if there is
+ * no converter for its model), so that formats that share repeated objects
+ * or strings within a stream do not get to write back-references only.
+ * The stream goes to a buffered temporary file (which will mostly stay in
+ * the OS page cache) or to memory; the memory sink has to fit the whole
+ * stream in the heap.
+ */
+class StreamingBenchmark
+{
+  final static int DISTINCT_RECORDS = 256;
+
+  final static int BUFFER_SIZE = 64 * 1024;
+
+  private final int _records;
+  private final boolean _toFile;
+
+  StreamingBenchmark(int records, boolean toFile)
+  {
+    _records = records;
+    _toFile = toFile;
+  }
+
+  void printHeader()
+  {
+    System.out.printf("%-24s, %-16s, %12s, %12s, %12s, %12s, %12s\n",
+                      " ",
+                      "Framing",
+                      "Write MB/s",
+                      "Write rec/s",
+                      "Read MB/s",
+                      "Read rec/s",
+                      "Bytes/rec");
+  }
+
+  void run(ObjectSerializer<Object> serializer) throws Exception
+  {
+    Object[] records = records(serializer);
+    if (serializer instanceof StreamingObjectSerializer) {
+      run(serializer, records, true);
+    }
+    run(serializer, records, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object[] records(ObjectSerializer<Object> serializer) throws Exception
+  {
+    Object[] records = new Object[DISTINCT_RECORDS];
+    PayloadConverter<Object> converter = (PayloadConverter<Object>) PayloadConverters.converterFor(serializer.create());
+    for (int i = 0; i < records.length; ++i)
+    {
+      if (converter == null) {
+        records[i] = serializer.create();
+      } else {
+        records[i] = converter.convert(new PayloadGenerator(PayloadGenerator.DEFAULT_SEED + i, 2, 2, 16, 1000000L).generate());
+      }
+    }
+    return records;
+  }
+
+  private void run(ObjectSerializer<Object> serializer, Object[] records, boolean nativeStreaming) throws Exception
+  {
+    // warm up with a smaller stream, and check that what is read back is what was written
+    pass(serializer, records, nativeStreaming, Math.max(DISTINCT_RECORDS, _records / 10), true);
+    System.gc();
+    double[] result = pass(serializer, records, nativeStreaming, _records, false);
+    double writeSecs = result[0] / 1000000000.0;
+    double readSecs = result[1] / 1000000000.0;
+    double megabytes = result[2] / (1024.0 * 1024.0);
+    System.out.printf("%-24s, %-16s, %12.1f, %12.0f, %12.1f, %12.0f, %12.1f\n",
+                      serializer.getName(),
+                      nativeStreaming ? "native" : "length-prefixed",
+                      megabytes / writeSecs,
+                      _records / writeSecs,
+                      megabytes / readSecs,
+                      _records / readSecs,
+                      result[2] / _records);
+  }
+
+  /**
+   * @return Nanoseconds spent writing, nanoseconds spent reading, and length of
+   *   the stream in bytes
+   */
+  @SuppressWarnings("unchecked")
+  private double[] pass(ObjectSerializer<Object> serializer, Object[] records, boolean nativeStreaming, int count, boolean verify)
+    throws Exception
+  {
+    Sink sink = _toFile ? new FileSink() : new MemorySink();
+    try
+    {
+      long start = System.nanoTime();
+      OutputStream out = sink.openOutput();
+      RecordWriter<Object> writer = nativeStreaming
+        ? ((StreamingObjectSerializer<Object>) serializer).newWriter(out)
+        : LengthPrefixedStreams.newWriter(serializer, out);
+      for (int i = 0; i < count; ++i)
+        writer.write(records[i % records.length]);
+      writer.flush();
+      out.close();
+      long writeTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      InputStream in = sink.openInput();
+      RecordReader<Object> reader = nativeStreaming
+        ? ((StreamingObjectSerializer<Object>) serializer).newReader(in)
+        : LengthPrefixedStreams.newReader(serializer, in);
+      for (int i = 0; i < count; ++i)
+      {
+        Object obj = reader.read();
+        if (verify && ScalingBenchmark.hasEquals(obj) && !obj.equals(records[i % records.length])) {
+          throw new Exception("Serializer '"+serializer.getName()+"' read back record #"+i+" different from the one written");
+        }
+      }
+      in.close();
+      long readTime = System.nanoTime() - start;
+      return new double[] { writeTime, readTime, sink.length() };
+    }
+    finally
+    {
+      sink.delete();
+    }
+  }
+
+  private interface Sink
+  {
+    OutputStream openOutput() throws Exception;
+    InputStream openInput() throws Exception;
+    long length();
+    void delete();
+  }
+
+  private static class FileSink implements Sink
+  {
+    private final File _file;
+
+    FileSink() throws Exception
+    {
+      _file = File.createTempFile("tpc-", ".stream");
+    }
+
+    public OutputStream openOutput() throws Exception
+    {
+      return new BufferedOutputStream(new FileOutputStream(_file), BUFFER_SIZE);
+    }
+
+    public InputStream openInput() throws Exception
+    {
+      return new BufferedInputStream(new FileInputStream(_file), BUFFER_SIZE);
+    }
+
+    public long length()
+    {
+      return _file.length();
+    }
+
+    public void delete()
+    {
+      _file.delete();
+    }
+  }
+
+  /**
+   * Keeps the stream in a list of fixed-size chunks, so that growing it does
+   * not copy, and it takes no more heap than its length.
+   */
+  private static class MemorySink implements Sink
+  {
+    private final List<byte[]> _chunks = new ArrayList<byte[]>();
+    private long _length;
+
+    public OutputStream openOutput()
+    {
+      _chunks.clear();
+      _length = 0;
+      return new OutputStream() {
+        public void write(int b)
+        {
+          int pos = (int) (_length % BUFFER_SIZE);
+          if (pos == 0) {
+            _chunks.add(new byte[BUFFER_SIZE]);
+          }
+          _chunks.get(_chunks.size() - 1)[pos] = (byte) b;
+          ++_length;
+        }
+
+        public void write(byte[] b, int off, int len)
+        {
+          while (len > 0)
+          {
+            int pos = (int) (_length % BUFFER_SIZE);
+            if (pos == 0) {
+              _chunks.add(new byte[BUFFER_SIZE]);
+            }
+            int n = Math.min(len, BUFFER_SIZE - pos);
+            System.arraycopy(b, off, _chunks.get(_chunks.size() - 1), pos, n);
+            _length += n;
+            off += n;
+            len -= n;
+          }
+        }
+      };
+    }
+
+    public InputStream openInput()
+    {
+      return new InputStream() {
+        private long _pos;
+
+        public int read()
+        {
+          if (_pos >= _length) {
+            return -1;
+          }
+          int b = _chunks.get((int) (_pos / BUFFER_SIZE))[(int) (_pos % BUFFER_SIZE)] & 0xFF;
+          ++_pos;
+          return b;
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+          if (_pos >= _length) {
+            return -1;
+          }
+          int pos = (int) (_pos % BUFFER_SIZE);
+          int n = (int) Math.min(Math.min(len, BUFFER_SIZE - pos), _length - _pos);
+          System.arraycopy(_chunks.get((int) (_pos / BUFFER_SIZE)), pos, b, off, n);
+          _pos += n;
+          return n;
+        }
+      };
+    }
+
+    public long length()
+    {
+      return _length;
+    }
+
+    public void delete()
+    {
+      _chunks.clear();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package serializers;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serializer that can write a sequence of objects to one stream, and read them
+ * back, using the native framing of its format; per-stream setup (headers,
+ * envelopes, protocol objects) is done once per stream instead of once per
+ * object.
+ *<p>
+ * Serializers that do not implement this are streamed with
+ * {@link LengthPrefixedStreams}.
+ */
+public interface StreamingObjectSerializer<T> extends ObjectSerializer<T>
+{
+  public RecordWriter<T> newWriter(OutputStream out) throws Exception;
+  public RecordReader<T> newReader(InputStream in) throws Exception;
+
+  public interface RecordWriter<T>
+  {
+    public void write(T content) throws Exception;
+    /**
+     * Writes out anything buffered; does not close the underlying stream.
+     */
+    public void flush() throws Exception;
+  }
+
+  public interface RecordReader<T>
+  {
+    /**
+     * Reads the next object; caller must not read more objects than were written.
+     */
+    public T read() throws Exception;
+  }
+}
@@ -0,0 +1,93 @@
+package serializers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Access to per-thread CPU time and allocation counters of the current
+ * thread. Both are optional JVM features; if one is not available the
+ * corresponding method returns -1.
+ */
+class ThreadUsage
+{
+  private final static ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Allocation counters are a HotSpot extension of the standard interface.
+   */
+  private final static com.sun.management.ThreadMXBean HOTSPOT_THREADS;
+
+  /**
+   * Bytes reported allocated by a call to {@link #allocatedBytes} itself, to be
+   * subtracted from deltas.
+   */
+  private final static long ALLOCATION_OVERHEAD;
+
+  static
+  {
+    if (THREADS.isCurrentThreadCpuTimeSupported() && !THREADS.isThreadCpuTimeEnabled()) {
+      THREADS.setThreadCpuTimeEnabled(true);
+    }
+    com.sun.management.ThreadMXBean hotspot = null;
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      hotspot = (com.sun.management.ThreadMXBean) THREADS;
+      if (hotspot.isThreadAllocatedMemorySupported()) {
+        hotspot.setThreadAllocatedMemoryEnabled(true);
+      } else {
+        hotspot = null;
+      }
+    }
+    HOTSPOT_THREADS = hotspot;
+
+    long overhead = 0;
+    if (hotspot != null) {
+      long id = Thread.currentThread().getId();
+      hotspot.getThreadAllocatedBytes(id);
+      long first = hotspot.getThreadAllocatedBytes(id);
+      overhead = hotspot.getThreadAllocatedBytes(id) - first;
+    }
+    ALLOCATION_OVERHEAD = overhead;
+  }
+
+  /**
+   * @return Total number of bytes allocated by the current thread so far, or -1
+   */
+  static long allocatedBytes()
+  {
+    if (HOTSPOT_THREADS == null) {
+      return -1L;
+    }
+    return HOTSPOT_THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * @return CPU time used by the current thread so far, in nanoseconds, or -1
+   */
+  static long cpuTime()
+  {
+    if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+      return -1L;
+    }
+    return THREADS.getCurrentThreadCpuTime();
+  }
+
+  /**
+   * Converts counter values taken before and after given number of operations
+   * into a per-operation figure; NaN if counter is not available.
+   */
+  static double perOperation(long before, long after, long operations)
+  {
+    if (before < 0 || after < 0) {
+      return Double.NaN;
+    }
+    return (double) (after - before) / (double) operations;
+  }
+
+  static double allocatedPerOperation(long before, long after, long operations)
+  {
+    if (before < 0 || after < 0) {
+      return Double.NaN;
+    }
+    return Math.max(0.0, (double) (after - before - ALLOCATION_OVERHEAD) / (double) operations);
+  }
+}
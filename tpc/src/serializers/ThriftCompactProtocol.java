@@ -0,0 +1,463 @@
+package serializers;
+
+import java.io.UnsupportedEncodingException;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TField;
+import com.facebook.thrift.protocol.TList;
+import com.facebook.thrift.protocol.TMap;
+import com.facebook.thrift.protocol.TMessage;
+import com.facebook.thrift.protocol.TProtocol;
+import com.facebook.thrift.protocol.TProtocolException;
+import com.facebook.thrift.protocol.TProtocolFactory;
+import com.facebook.thrift.protocol.TSet;
+import com.facebook.thrift.protocol.TStruct;
+import com.facebook.thrift.protocol.TType;
+import com.facebook.thrift.transport.TTransport;
+
+/**
+ * Compact protocol of later Thrift versions, which the bundled libthrift
+ * predates; wire compatible with their TCompactProtocol. Compared with the
+ * binary protocol: integers are zigzag varints, field headers are a single
+ * byte holding type and delta from the previous field id (when that is 1 to
+ * 15), booleans are folded into field headers, and short list headers are a
+ * single byte too.
+ *<p>
+ * Keeps state between calls (ids of enclosing structs' last fields), so an
+ * instance is for one transport and one thread.
+ */
+public class ThriftCompactProtocol extends TProtocol
+{
+  public static class Factory implements TProtocolFactory
+  {
+    public TProtocol getProtocol(TTransport trans)
+    {
+      return new ThriftCompactProtocol(trans);
+    }
+  }
+
+  private final static byte PROTOCOL_ID = (byte) 0x82;
+  private final static byte VERSION = 1;
+  private final static int TYPE_SHIFT = 5;
+
+  private final static byte TYPE_BOOLEAN_TRUE = 1;
+  private final static byte TYPE_BOOLEAN_FALSE = 2;
+  private final static byte TYPE_BYTE = 3;
+  private final static byte TYPE_I16 = 4;
+  private final static byte TYPE_I32 = 5;
+  private final static byte TYPE_I64 = 6;
+  private final static byte TYPE_DOUBLE = 7;
+  private final static byte TYPE_BINARY = 8;
+  private final static byte TYPE_LIST = 9;
+  private final static byte TYPE_SET = 10;
+  private final static byte TYPE_MAP = 11;
+  private final static byte TYPE_STRUCT = 12;
+
+  private final static TStruct ANONYMOUS_STRUCT = new TStruct("");
+
+  // last field id of each enclosing struct
+  private short[] _lastFieldIds = new short[16];
+  private int _depth;
+  private short _lastFieldId;
+
+  // boolean field whose header is written along with its value
+  private TField _pendingBoolField;
+  // value of boolean field whose header has been read
+  private Boolean _pendingBoolValue;
+
+  private final byte[] _buffer = new byte[10];
+
+  public ThriftCompactProtocol(TTransport trans)
+  {
+    super(trans);
+  }
+
+  // // // Writing
+
+  public void writeMessageBegin(TMessage message) throws TException
+  {
+    writeByteDirect(PROTOCOL_ID);
+    writeByteDirect((byte) (VERSION | (message.type << TYPE_SHIFT)));
+    writeVarint32(message.seqid);
+    writeString(message.name);
+  }
+
+  public void writeMessageEnd() { }
+
+  public void writeStructBegin(TStruct struct)
+  {
+    pushFieldId();
+    _lastFieldId = 0;
+  }
+
+  public void writeStructEnd()
+  {
+    popFieldId();
+  }
+
+  public void writeFieldBegin(TField field) throws TException
+  {
+    if (field.type == TType.BOOL) {
+      _pendingBoolField = field;
+    } else {
+      writeFieldHeader(field, compactType(field.type));
+    }
+  }
+
+  private void writeFieldHeader(TField field, byte type) throws TException
+  {
+    int delta = field.id - _lastFieldId;
+    if (delta > 0 && delta <= 15) {
+      writeByteDirect((byte) ((delta << 4) | type));
+    } else {
+      writeByteDirect(type);
+      writeI16(field.id);
+    }
+    _lastFieldId = field.id;
+  }
+
+  public void writeFieldEnd() { }
+
+  public void writeFieldStop() throws TException
+  {
+    writeByteDirect(TType.STOP);
+  }
+
+  public void writeMapBegin(TMap map) throws TException
+  {
+    if (map.size == 0) {
+      writeByteDirect((byte) 0);
+    } else {
+      writeVarint32(map.size);
+      writeByteDirect((byte) ((compactType(map.keyType) << 4) | compactType(map.valueType)));
+    }
+  }
+
+  public void writeMapEnd() { }
+
+  public void writeListBegin(TList list) throws TException
+  {
+    writeCollectionBegin(list.elemType, list.size);
+  }
+
+  public void writeListEnd() { }
+
+  public void writeSetBegin(TSet set) throws TException
+  {
+    writeCollectionBegin(set.elemType, set.size);
+  }
+
+  public void writeSetEnd() { }
+
+  private void writeCollectionBegin(byte elemType, int size) throws TException
+  {
+    if (size <= 14) {
+      writeByteDirect((byte) ((size << 4) | compactType(elemType)));
+    } else {
+      writeByteDirect((byte) (0xF0 | compactType(elemType)));
+      writeVarint32(size);
+    }
+  }
+
+  public void writeBool(boolean b) throws TException
+  {
+    byte type = b ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE;
+    if (_pendingBoolField != null) {
+      writeFieldHeader(_pendingBoolField, type);
+      _pendingBoolField = null;
+    } else { // element of a collection
+      writeByteDirect(type);
+    }
+  }
+
+  public void writeByte(byte b) throws TException
+  {
+    writeByteDirect(b);
+  }
+
+  public void writeI16(short i16) throws TException
+  {
+    writeVarint32((i16 << 1) ^ (i16 >> 31));
+  }
+
+  public void writeI32(int i32) throws TException
+  {
+    writeVarint32((i32 << 1) ^ (i32 >> 31));
+  }
+
+  public void writeI64(long i64) throws TException
+  {
+    long n = (i64 << 1) ^ (i64 >> 63);
+    int len = 0;
+    while ((n & ~0x7FL) != 0) {
+      _buffer[len++] = (byte) ((n & 0x7F) | 0x80);
+      n >>>= 7;
+    }
+    _buffer[len++] = (byte) n;
+    trans_.write(_buffer, 0, len);
+  }
+
+  public void writeDouble(double dub) throws TException
+  {
+    long bits = Double.doubleToLongBits(dub);
+    for (int i = 0; i < 8; ++i) {
+      _buffer[i] = (byte) (bits >> (8 * i));
+    }
+    trans_.write(_buffer, 0, 8);
+  }
+
+  public void writeString(String str) throws TException
+  {
+    try
+    {
+      writeBinary(str.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new TException("JVM does not support UTF-8");
+    }
+  }
+
+  public void writeBinary(byte[] bin) throws TException
+  {
+    writeVarint32(bin.length);
+    trans_.write(bin, 0, bin.length);
+  }
+
+  private void writeVarint32(int n) throws TException
+  {
+    int len = 0;
+    while ((n & ~0x7F) != 0) {
+      _buffer[len++] = (byte) ((n & 0x7F) | 0x80);
+      n >>>= 7;
+    }
+    _buffer[len++] = (byte) n;
+    trans_.write(_buffer, 0, len);
+  }
+
+  private void writeByteDirect(byte b) throws TException
+  {
+    _buffer[0] = b;
+    trans_.write(_buffer, 0, 1);
+  }
+
+  // // // Reading
+
+  public TMessage readMessageBegin() throws TException
+  {
+    byte protocolId = readByte();
+    if (protocolId != PROTOCOL_ID) {
+      throw new TProtocolException(TProtocolException.BAD_VERSION, "Expected protocol id "+PROTOCOL_ID+" but got "+protocolId);
+    }
+    byte versionAndType = readByte();
+    if ((versionAndType & 0x1F) != VERSION) {
+      throw new TProtocolException(TProtocolException.BAD_VERSION, "Expected version "+VERSION+" but got "+(versionAndType & 0x1F));
+    }
+    byte type = (byte) ((versionAndType >> TYPE_SHIFT) & 0x07);
+    int seqid = readVarint32();
+    return new TMessage(readString(), type, seqid);
+  }
+
+  public void readMessageEnd() { }
+
+  public TStruct readStructBegin()
+  {
+    pushFieldId();
+    _lastFieldId = 0;
+    return ANONYMOUS_STRUCT;
+  }
+
+  public void readStructEnd()
+  {
+    popFieldId();
+  }
+
+  public TField readFieldBegin() throws TException
+  {
+    byte header = readByte();
+    if (header == TType.STOP) {
+      return new TField("", TType.STOP, (short) 0);
+    }
+    byte type = (byte) (header & 0x0F);
+    int delta = (header & 0xF0) >>> 4;
+    short id = (delta == 0) ? readI16() : (short) (_lastFieldId + delta);
+    if (type == TYPE_BOOLEAN_TRUE || type == TYPE_BOOLEAN_FALSE) {
+      _pendingBoolValue = (type == TYPE_BOOLEAN_TRUE) ? Boolean.TRUE : Boolean.FALSE;
+    }
+    _lastFieldId = id;
+    return new TField("", ttype(type), id);
+  }
+
+  public void readFieldEnd() { }
+
+  public TMap readMapBegin() throws TException
+  {
+    int size = readVarint32();
+    byte types = (size == 0) ? 0 : readByte();
+    return new TMap(ttype((byte) ((types >> 4) & 0x0F)), ttype((byte) (types & 0x0F)), size);
+  }
+
+  public void readMapEnd() { }
+
+  public TList readListBegin() throws TException
+  {
+    byte header = readByte();
+    int size = (header >> 4) & 0x0F;
+    if (size == 15) {
+      size = readVarint32();
+    }
+    return new TList(ttype((byte) (header & 0x0F)), size);
+  }
+
+  public void readListEnd() { }
+
+  public TSet readSetBegin() throws TException
+  {
+    TList list = readListBegin();
+    return new TSet(list.elemType, list.size);
+  }
+
+  public void readSetEnd() { }
+
+  public boolean readBool() throws TException
+  {
+    if (_pendingBoolValue != null) {
+      boolean value = _pendingBoolValue.booleanValue();
+      _pendingBoolValue = null;
+      return value;
+    }
+    return readByte() == TYPE_BOOLEAN_TRUE;
+  }
+
+  public byte readByte() throws TException
+  {
+    trans_.readAll(_buffer, 0, 1);
+    return _buffer[0];
+  }
+
+  public short readI16() throws TException
+  {
+    int n = readVarint32();
+    return (short) ((n >>> 1) ^ -(n & 1));
+  }
+
+  public int readI32() throws TException
+  {
+    int n = readVarint32();
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  public long readI64() throws TException
+  {
+    long n = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = readByte();
+      n |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  public double readDouble() throws TException
+  {
+    trans_.readAll(_buffer, 0, 8);
+    long bits = 0;
+    for (int i = 7; i >= 0; --i) {
+      bits = (bits << 8) | (_buffer[i] & 0xFF);
+    }
+    return Double.longBitsToDouble(bits);
+  }
+
+  public String readString() throws TException
+  {
+    try
+    {
+      return new String(readBinary(), "UTF-8");
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new TException("JVM does not support UTF-8");
+    }
+  }
+
+  public byte[] readBinary() throws TException
+  {
+    int length = readVarint32();
+    if (length < 0) {
+      throw new TProtocolException(TProtocolException.NEGATIVE_SIZE, "Negative length: "+length);
+    }
+    byte[] bin = new byte[length];
+    trans_.readAll(bin, 0, length);
+    return bin;
+  }
+
+  private int readVarint32() throws TException
+  {
+    int n = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = readByte();
+      n |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    return n;
+  }
+
+  // // // Helpers
+
+  private void pushFieldId()
+  {
+    if (_depth == _lastFieldIds.length) {
+      short[] ids = new short[_depth * 2];
+      System.arraycopy(_lastFieldIds, 0, ids, 0, _depth);
+      _lastFieldIds = ids;
+    }
+    _lastFieldIds[_depth++] = _lastFieldId;
+  }
+
+  private void popFieldId()
+  {
+    _lastFieldId = _lastFieldIds[--_depth];
+  }
+
+  private static byte compactType(byte ttype) throws TException
+  {
+    switch (ttype) {
+    case TType.BOOL: return TYPE_BOOLEAN_TRUE;
+    case TType.BYTE: return TYPE_BYTE;
+    case TType.I16: return TYPE_I16;
+    case TType.I32: return TYPE_I32;
+    case TType.I64: return TYPE_I64;
+    case TType.DOUBLE: return TYPE_DOUBLE;
+    case TType.STRING: return TYPE_BINARY;
+    case TType.LIST: return TYPE_LIST;
+    case TType.SET: return TYPE_SET;
+    case TType.MAP: return TYPE_MAP;
+    case TType.STRUCT: return TYPE_STRUCT;
+    }
+    throw new TProtocolException(TProtocolException.INVALID_DATA, "Unknown type "+ttype);
+  }
+
+  private static byte ttype(byte compactType) throws TException
+  {
+    switch (compactType) {
+    case TType.STOP: return TType.STOP;
+    case TYPE_BOOLEAN_TRUE:
+    case TYPE_BOOLEAN_FALSE: return TType.BOOL;
+    case TYPE_BYTE: return TType.BYTE;
+    case TYPE_I16: return TType.I16;
+    case TYPE_I32: return TType.I32;
+    case TYPE_I64: return TType.I64;
+    case TYPE_DOUBLE: return TType.DOUBLE;
+    case TYPE_BINARY: return TType.STRING;
+    case TYPE_LIST: return TType.LIST;
+    case TYPE_SET: return TType.SET;
+    case TYPE_MAP: return TType.MAP;
+    case TYPE_STRUCT: return TType.STRUCT;
+    }
+    throw new TProtocolException(TProtocolException.INVALID_DATA, "Unknown compact type "+compactType);
+  }
+}
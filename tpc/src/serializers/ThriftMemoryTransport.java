@@ -0,0 +1,98 @@
+package serializers;
+
+import com.facebook.thrift.transport.TTransport;
+import com.facebook.thrift.transport.TTransportException;
+
+/**
+ * Thrift transport that reads from a given <code>byte[]</code> and writes to
+ * a growable one, both reused from message to message, so that unlike
+ * {@link com.facebook.thrift.transport.TIOStreamTransport} no streams are
+ * needed (and unlike TMemoryBuffer, written bytes can be accessed without
+ * a copy).
+ */
+public class ThriftMemoryTransport extends TTransport
+{
+  private byte[] _input;
+  private int _inputPosition, _inputEnd;
+
+  private byte[] _output;
+  private int _outputSize;
+
+  public ThriftMemoryTransport(int initialSize)
+  {
+    _output = new byte[initialSize];
+  }
+
+  /**
+   * Sets bytes that following reads return; array is used as is, not copied.
+   */
+  public void setInput(byte[] input, int offset, int length)
+  {
+    _input = input;
+    _inputPosition = offset;
+    _inputEnd = offset + length;
+  }
+
+  /**
+   * Discards bytes written so far, to write the next message.
+   */
+  public void resetOutput()
+  {
+    _outputSize = 0;
+  }
+
+  /**
+   * @return Array holding bytes written since {@link #resetOutput}, at
+   *   offset 0; replaced as it grows, so only valid until next write
+   */
+  public byte[] getOutput()
+  {
+    return _output;
+  }
+
+  public int getOutputSize()
+  {
+    return _outputSize;
+  }
+
+  public byte[] toByteArray()
+  {
+    byte[] array = new byte[_outputSize];
+    System.arraycopy(_output, 0, array, 0, _outputSize);
+    return array;
+  }
+
+  public boolean isOpen()
+  {
+    return true;
+  }
+
+  public void open() { }
+
+  public void close() { }
+
+  public int read(byte[] buf, int off, int len) throws TTransportException
+  {
+    int available = _inputEnd - _inputPosition;
+    if (available <= 0) {
+      throw new TTransportException("No more data available");
+    }
+    if (len > available) {
+      len = available;
+    }
+    System.arraycopy(_input, _inputPosition, buf, off, len);
+    _inputPosition += len;
+    return len;
+  }
+
+  public void write(byte[] buf, int off, int len)
+  {
+    if (_outputSize + len > _output.length) {
+      byte[] output = new byte[Math.max(_output.length * 2, _outputSize + len)];
+      System.arraycopy(_output, 0, output, 0, _outputSize);
+      _output = output;
+    }
+    System.arraycopy(buf, off, _output, _outputSize, len);
+    _outputSize += len;
+  }
+}
@@ -2,6 +2,9 @@ package serializers;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import serializers.thrift.Image;
 import serializers.thrift.Media;
@@ -10,34 +13,154 @@ import serializers.thrift.Player;
 import serializers.thrift.Size;
 
 import com.facebook.thrift.protocol.TBinaryProtocol;
+import com.facebook.thrift.protocol.TProtocol;
+import com.facebook.thrift.protocol.TProtocolFactory;
 import com.facebook.thrift.transport.TIOStreamTransport;
 
-public class ThriftSerializer  implements ObjectSerializer<MediaContent>
+/**
+ * Serializes the Thrift-generated classes with a given protocol, either over
+ * streams (a new transport per message, the usual way) or over a
+ * {@link ThriftMemoryTransport} and protocol kept from message to message.
+ */
+public class ThriftSerializer  implements StreamingObjectSerializer<MediaContent>, OutputStreamSerializer<MediaContent>,
+                                         ByteBufferDeserializer<MediaContent>, ReusingDeserializer<MediaContent>,
+                                         CheckingObjectSerializer<MediaContent>
 {
   public int expectedSize = 0;
   public final static int ITERATIONS = 100000;
 
+  private final String _name;
+  private final TProtocolFactory _protocolFactory;
+  // null if using streams
+  private final ThriftMemoryTransport _memory;
+  private final TProtocol _memoryProtocol;
+
+  public ThriftSerializer()
+  {
+    this("thrift", new TBinaryProtocol.Factory(), false);
+  }
+
+  public ThriftSerializer(String name, TProtocolFactory protocolFactory, boolean memory)
+  {
+    _name = name;
+    _protocolFactory = protocolFactory;
+    if (memory) {
+      _memory = new ThriftMemoryTransport(1024);
+      _memoryProtocol = protocolFactory.getProtocol(_memory);
+    } else {
+      _memory = null;
+      _memoryProtocol = null;
+    }
+  }
+
     public MediaContent deserialize(byte[] array) throws Exception
   {
-    ByteArrayInputStream bais = new ByteArrayInputStream(array);
-    TIOStreamTransport trans = new TIOStreamTransport(bais);
-    TBinaryProtocol oprot = new TBinaryProtocol(trans);
     MediaContent content = new MediaContent();
-    content.read(oprot);
+    content.read(inputProtocol(array, 0, array.length));
+    return content;
+  }
+
+  /**
+   * Generated <code>read()</code> only sets fields present in the data, so
+   * the others are unset first; it always constructs new media, images and
+   * lists, so only the top-level struct is reused.
+   */
+    public MediaContent deserialize(byte[] array, MediaContent reuse) throws Exception
+  {
+    if (reuse == null) {
+      return deserialize(array);
+    }
+    reuse.unsetImage();
+    reuse.unsetMedia();
+    reuse.read(inputProtocol(array, 0, array.length));
+    return reuse;
+  }
+
+    public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    TProtocol iprot;
+    if (_memory != null && buffer.hasArray()) {
+      iprot = inputProtocol(buffer.array(), buffer.arrayOffset() + offset, length);
+    } else {
+      iprot = _protocolFactory.getProtocol(new TIOStreamTransport(new ByteBufferInputStream(buffer, offset, length)));
+    }
+    MediaContent content = new MediaContent();
+    content.read(iprot);
     return content;
   }
 
     public byte[] serialize(MediaContent content) throws Exception
   {
+    if (_memory != null) {
+      _memory.resetOutput();
+      content.write(_memoryProtocol);
+      return _memory.toByteArray();
+    }
       ByteArrayOutputStream baos = new ByteArrayOutputStream(expectedSize);
     TIOStreamTransport trans = new TIOStreamTransport(baos);
-    TBinaryProtocol oprot = new TBinaryProtocol(trans);
+    TProtocol oprot = _protocolFactory.getProtocol(trans);
     content.write(oprot);
     byte[] array = baos.toByteArray();
     expectedSize = array.length;
     return array;
   }
 
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    if (_memory != null) {
+      _memory.resetOutput();
+      content.write(_memoryProtocol);
+      out.write(_memory.getOutput(), 0, _memory.getOutputSize());
+      return;
+    }
+    TProtocol oprot = _protocolFactory.getProtocol(new TIOStreamTransport(out));
+    content.write(oprot);
+    oprot.getTransport().flush();
+  }
+
+  private TProtocol inputProtocol(byte[] array, int offset, int length)
+  {
+    if (_memory != null) {
+      _memory.setInput(array, offset, length);
+      return _memoryProtocol;
+    }
+    return _protocolFactory.getProtocol(new TIOStreamTransport(new ByteArrayInputStream(array, offset, length)));
+  }
+
+  /**
+   * Writes structs back to back through a single protocol; structs are
+   * terminated by a stop field, so need no other framing.
+   */
+  public RecordWriter<MediaContent> newWriter(OutputStream out)
+  {
+    final TIOStreamTransport trans = new TIOStreamTransport(out);
+    final TProtocol oprot = _protocolFactory.getProtocol(trans);
+    return new RecordWriter<MediaContent>() {
+      public void write(MediaContent content) throws Exception
+      {
+        content.write(oprot);
+      }
+
+      public void flush() throws Exception
+      {
+        trans.flush();
+      }
+    };
+  }
+
+  public RecordReader<MediaContent> newReader(InputStream in)
+  {
+    final TProtocol iprot = _protocolFactory.getProtocol(new TIOStreamTransport(in));
+    return new RecordReader<MediaContent>() {
+      public MediaContent read() throws Exception
+      {
+        MediaContent content = new MediaContent();
+        content.read(iprot);
+        return content;
+      }
+    };
+  }
+
   public MediaContent create()
   {
     Media media = new Media();
@@ -65,7 +188,53 @@ public class ThriftSerializer  implements ObjectSerializer<MediaContent>
 
   public String getName ()
   {
-    return "thrift";
+    return _name;
+  }
+
+  public void checkAllFields(MediaContent content)
+  {
+    checkMediaField(content);
+    assetEquals(2, content.getImageSize());
+
+    Image image = content.getImage().get(0);
+    assetEquals(image.getUri(), "http://javaone.com/keynote_large.jpg");
+    assetEquals(image.getSize(), Size.LARGE);
+    assetEquals(image.getTitle(), "Javaone Keynote");
+    assetEquals(image.getWidth(), 0);
+    assetEquals(image.getHeight(), 0);
+
+    image = content.getImage().get(1);
+    assetEquals(image.getUri(), "http://javaone.com/keynote_thumbnail.jpg");
+    assetEquals(image.getSize(), Size.SMALL);
+    assetEquals(image.getTitle(), "Javaone Keynote");
+    assetEquals(image.getWidth(), 0);
+    assetEquals(image.getHeight(), 0);
+  }
+
+  public void checkMediaField(MediaContent content)
+  {
+    Media media = content.getMedia();
+    assetEquals(media.getUri(), "http://javaone.com/keynote.mpg");
+    assetEquals(media.getFormat(), "video/mpg4");
+    assetEquals(media.getTitle(), "Javaone Keynote");
+    assetEquals(media.getDuration(), 1234567L);
+    assetEquals(media.getSize(), 123L);
+    assetEquals(media.getBitrate(), 0);
+    assetEquals(media.getPlayer(), Player.JAVA);
+    assetEquals(media.getWidth(), 0);
+    assetEquals(media.getHeight(), 0);
+  }
+
+  public void checkMediaUri(MediaContent content)
+  {
+    assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+  }
+
+  static private void assetEquals(Object expected, Object actual)
+  {
+    if( !expected.equals(actual) ) {
+      throw new RuntimeException(""+expected+"!="+actual);
+    }
   }
 
 }
@@ -0,0 +1,234 @@
+package serializers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how serialization and deserialization throughput of a serializer
+ * scales when it is driven from multiple threads at once.
+ *<p>
+ * Many serializers keep mutable state in the instance (sizing hints, reused
+ * buffers), so every thread gets its own instance from the
+ * {@link SerializerFactory}; what is measured is contention on shared
+ * library state and memory bandwidth/allocation, not on our own fields.
+ *<p>
+ * {@link #runShared} instead has all threads call one
+ * {@link ConcurrentObjectSerializer}, as a server would, to compare what
+ * handing out instances costs: creating one per call, thread-locals, and a
+ * bounded pool (which threads contend on).
+ */
+class ThroughputBenchmark
+{
+  /**
+   * Length of the measurement window for each thread count, in milliseconds.
+   */
+  final static long MEASURE_MSECS = 3000;
+
+  private final int _maxThreads;
+
+  ThroughputBenchmark(int maxThreads)
+  {
+    _maxThreads = maxThreads;
+  }
+
+  /**
+   * Thread counts to run with: powers of two up to, and including, the maximum.
+   */
+  List<Integer> threadCounts()
+  {
+    List<Integer> counts = new ArrayList<Integer>();
+    for (int i = 1; i < _maxThreads; i *= 2)
+      counts.add(i);
+    counts.add(_maxThreads);
+    return counts;
+  }
+
+  void printHeader()
+  {
+    System.out.printf("%-24s, %7s, %15s, %10s, %15s, %10s\n",
+                      " ",
+                      "Threads",
+                      "Serialize/s",
+                      "Scaling",
+                      "Deserialize/s",
+                      "Scaling");
+  }
+
+  <T> void run(String name, SerializerFactory<T> factory) throws Exception
+  {
+    double serBase = 0, deserBase = 0;
+    for (int threads : threadCounts())
+    {
+      List<ObjectSerializer<T>> serializers = new ArrayList<ObjectSerializer<T>>(threads);
+      for (int i = 0; i < threads; i++)
+        serializers.add(factory.create());
+
+      // warm up with the same number of threads; JIT and lock inflation both
+      // depend on concurrency
+      measure(serializers, true, BenchmarkRunner.WARMUP_MSECS);
+      double ser = measure(serializers, true, MEASURE_MSECS);
+      measure(serializers, false, BenchmarkRunner.WARMUP_MSECS);
+      double deser = measure(serializers, false, MEASURE_MSECS);
+      if (threads == 1) {
+        serBase = ser;
+        deserBase = deser;
+      }
+      System.out.printf("%-24s, %7d, %15.0f, %9.1f%%, %15.0f, %9.1f%%\n",
+                        name,
+                        threads,
+                        ser,
+                        100.0 * ser / (threads * serBase),
+                        deser,
+                        100.0 * deser / (threads * deserBase));
+    }
+  }
+
+  void printSharedHeader()
+  {
+    System.out.printf("%-24s, %-12s, %7s, %15s, %15s, %10s\n",
+                      " ",
+                      "Instances",
+                      "Threads",
+                      "Serialize/s",
+                      "Deserialize/s",
+                      "Created");
+  }
+
+  /**
+   * Measures all threads calling one shared serializer, for each way of
+   * handing out instances, against each thread having its own instance.
+   * The pool keeps as many idle instances as there are processors.
+   */
+  <T> void runShared(String name, SerializerFactory<T> factory) throws Exception
+  {
+    int poolSize = Runtime.getRuntime().availableProcessors();
+    for (int threads : threadCounts())
+    {
+      List<ObjectSerializer<T>> own = new ArrayList<ObjectSerializer<T>>(threads);
+      for (int i = 0; i < threads; i++)
+        own.add(factory.create());
+      measureShared(name, "per thread", own);
+
+      List<ConcurrentObjectSerializer<T>> shared = new ArrayList<ConcurrentObjectSerializer<T>>();
+      shared.add(ConcurrentObjectSerializer.perCall(factory));
+      shared.add(ConcurrentObjectSerializer.threadLocal(factory));
+      shared.add(ConcurrentObjectSerializer.pooled(factory, poolSize));
+      String[] labels = { "per call", "thread-local", "pool of "+poolSize };
+      for (int s = 0; s < shared.size(); s++)
+      {
+        List<ObjectSerializer<T>> serializers = new ArrayList<ObjectSerializer<T>>(threads);
+        for (int i = 0; i < threads; i++)
+          serializers.add(shared.get(s));
+        measureShared(name, labels[s], serializers);
+      }
+    }
+  }
+
+  private <T> void measureShared(String name, String label, List<ObjectSerializer<T>> serializers) throws Exception
+  {
+    measure(serializers, true, BenchmarkRunner.WARMUP_MSECS);
+    double ser = measure(serializers, true, MEASURE_MSECS);
+    measure(serializers, false, BenchmarkRunner.WARMUP_MSECS);
+    double deser = measure(serializers, false, MEASURE_MSECS);
+    int created = serializers.size();
+    if (serializers.get(0) instanceof ConcurrentObjectSerializer) {
+      created = ((ConcurrentObjectSerializer<T>) serializers.get(0)).getCreatedCount();
+    }
+    System.out.printf("%-24s, %-12s, %7d, %15.0f, %15.0f, %10d\n",
+                      name,
+                      label,
+                      serializers.size(),
+                      ser,
+                      deser,
+                      created);
+  }
+
+  /**
+   * Runs one worker thread per serializer for given time and returns total
+   * operations per second over all threads.
+   */
+  private <T> double measure(List<ObjectSerializer<T>> serializers, boolean serialize, long msecs) throws Exception
+  {
+    CountDownLatch ready = new CountDownLatch(serializers.size());
+    CountDownLatch go = new CountDownLatch(1);
+    List<Worker<T>> workers = new ArrayList<Worker<T>>(serializers.size());
+    for (ObjectSerializer<T> serializer : serializers)
+    {
+      Worker<T> worker = new Worker<T>(serializer, serialize, ready, go);
+      workers.add(worker);
+      worker.start();
+    }
+    ready.await();
+    long start = System.nanoTime();
+    go.countDown();
+    Thread.sleep(msecs);
+    for (Worker<T> w : workers)
+      w.running = false;
+    long ops = 0;
+    for (Worker<T> w : workers)
+    {
+      w.join();
+      if (w.failure != null) {
+        throw new Exception("Worker for '"+w.serializer.getName()+"' failed", w.failure);
+      }
+      ops += w.ops;
+    }
+    double secs = (System.nanoTime() - start) / 1000000000.0;
+    return ops / secs;
+  }
+
+  private static class Worker<T> extends Thread
+  {
+    final ObjectSerializer<T> serializer;
+    final boolean serialize;
+    final CountDownLatch ready, go;
+
+    volatile boolean running = true;
+    long ops;
+    long sink;
+    Exception failure;
+
+    Worker(ObjectSerializer<T> serializer, boolean serialize, CountDownLatch ready, CountDownLatch go)
+    {
+      this.serializer = serializer;
+      this.serialize = serialize;
+      this.ready = ready;
+      this.go = go;
+    }
+
+    public void run()
+    {
+      try
+      {
+        T obj = serializer.create();
+        byte[] array = serializer.serialize(obj);
+        ready.countDown();
+        go.await();
+        long count = 0;
+        long total = 0;
+        if (serialize) {
+          while (running)
+          {
+            total += serializer.serialize(obj).length;
+            ++count;
+          }
+        } else {
+          while (running)
+          {
+            if (serializer.deserialize(array) != null)
+              ++total;
+            ++count;
+          }
+        }
+        ops = count;
+        sink = total;
+      }
+      catch (Exception e)
+      {
+        failure = e;
+        ready.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package serializers;
+
+/**
+ * Decides when an operation is warmed up: runs it in batches and stops once
+ * the time per operation of the last {@link #WINDOW} batches varies by less
+ * than {@link #CV_THRESHOLD} (coefficient of variation, i.e. standard
+ * deviation relative to mean), which is taken to mean the JIT is done with
+ * it. Runs at least {@link #MIN_MSECS} and at most {@link #MAX_MSECS}.
+ *<p>
+ * Batches are sized (by doubling) to take about {@link #BATCH_MSECS} each,
+ * so that timer resolution does not matter and each sample covers many
+ * operations.
+ */
+class WarmupController
+{
+  final static long MIN_MSECS = 500;
+  final static long MAX_MSECS = 10000;
+  final static long BATCH_MSECS = 20;
+  final static int WINDOW = 10;
+  final static double CV_THRESHOLD = 0.05;
+
+  interface Task
+  {
+    /**
+     * Runs operation given number of times.
+     *
+     * @return Average time per operation, in nanoseconds
+     */
+    public double run(int iterations) throws Exception;
+  }
+
+  /**
+   * Whether the last {@link #warmUp} ended because timing was stable, rather
+   * than because of the maximum time.
+   */
+  boolean steady;
+
+  /**
+   * @return Time spent warming up, in milliseconds
+   */
+  long warmUp(Task task) throws Exception
+  {
+    long start = System.nanoTime();
+    long minEnd = start + MIN_MSECS * 1000000L;
+    long maxEnd = start + MAX_MSECS * 1000000L;
+    double[] window = new double[WINDOW];
+    int samples = 0;
+    int iterations = 1;
+    steady = false;
+    long now;
+    do
+    {
+      double time = task.run(iterations);
+      if (time * iterations < BATCH_MSECS * 1000000.0 && iterations < (1 << 20)) {
+        // batch too short to be a useful sample; make the next one longer
+        iterations *= 2;
+        samples = 0;
+      } else {
+        window[samples++ % WINDOW] = time;
+      }
+      now = System.nanoTime();
+      if (samples >= WINDOW && now >= minEnd && coefficientOfVariation(window) < CV_THRESHOLD) {
+        steady = true;
+        break;
+      }
+    }
+    while (now < maxEnd);
+    return (now - start) / 1000000L;
+  }
+
+  static double coefficientOfVariation(double[] values)
+  {
+    double mean = RegressionCheck.mean(values);
+    return Math.sqrt(RegressionCheck.variance(values)) / mean;
+  }
+}
@@ -3,6 +3,8 @@ package serializers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
@@ -62,6 +64,11 @@ public class XStreamSerializer extends StdMediaSerializer
     return (MediaContent) xstream.fromXML(new ByteArrayInputStream(array));
   }
 
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    return (MediaContent) xstream.fromXML(new ByteBufferInputStream(buffer, offset, length));
+  }
+
     public byte[] serialize(MediaContent content) throws IOException,
       Exception
   {
@@ -72,6 +79,11 @@ public class XStreamSerializer extends StdMediaSerializer
     return array;
   }
 
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    xstream.toXML(content, out);
+  }
+
   public void registerConverters() throws Exception
   {
     xstream.alias("im", Image.class);
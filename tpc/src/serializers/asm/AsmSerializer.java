@@ -0,0 +1,66 @@
+package serializers.asm;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import serializers.StdMediaSerializer;
+import serializers.java.MediaContent;
+
+/**
+ * Serializes the POJOs with codecs that {@link CodecGenerator} generates at
+ * runtime: as little configuration as the reflection-based serializers,
+ * but with direct field access. Codecs are generated once per JVM and shared
+ * by all instances; buffers are per instance.
+ */
+public class AsmSerializer extends StdMediaSerializer
+{
+  private final static CodecGenerator GENERATOR = new CodecGenerator();
+
+  private final PojoCodec _codec;
+  private final ByteOutput _output = new ByteOutput(1024);
+  private final ByteInput _input = new ByteInput();
+  // for direct buffers, which have no array to decode from
+  private byte[] _scratch = new byte[1024];
+
+  public AsmSerializer() throws Exception
+  {
+    super("asm-generated");
+    _codec = GENERATOR.codecFor(MediaContent.class);
+  }
+
+  public byte[] serialize(MediaContent content) throws Exception
+  {
+    _output.reset();
+    _codec.write(content, _output);
+    return _output.toByteArray();
+  }
+
+  public void serialize(MediaContent content, OutputStream out) throws Exception
+  {
+    _output.reset();
+    _codec.write(content, _output);
+    _output.writeTo(out);
+  }
+
+  public MediaContent deserialize(byte[] array) throws Exception
+  {
+    _input.reset(array, 0);
+    return (MediaContent) _codec.read(_input);
+  }
+
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    if (buffer.hasArray()) {
+      _input.reset(buffer.array(), buffer.arrayOffset() + offset);
+    } else {
+      if (_scratch.length < length) {
+        _scratch = new byte[length];
+      }
+      ByteBuffer slice = buffer.duplicate();
+      slice.position(offset);
+      slice.get(_scratch, 0, length);
+      _input.reset(_scratch, 0);
+    }
+    return (MediaContent) _codec.read(_input);
+  }
+}
@@ -0,0 +1,45 @@
+package serializers.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import serializers.BinaryInput;
+
+/**
+ * Reads what {@link ByteOutput} writes, from an array that can be reset to
+ * read the next message.
+ */
+public final class ByteInput extends BinaryInput
+{
+  public int readInt()
+  {
+    return readSignedVarint();
+  }
+
+  public long readLong()
+  {
+    return readSignedVarlong();
+  }
+
+  /**
+   * @param constants Values of the enum type, by ordinal
+   */
+  public Object readEnum(Object[] constants)
+  {
+    int ordinal = readVarint() - 1;
+    return (ordinal < 0) ? null : constants[ordinal];
+  }
+
+  public List<String> readStringList()
+  {
+    int count = readVarint() - 1;
+    if (count < 0) {
+      return null;
+    }
+    List<String> list = new ArrayList<String>(count);
+    for (int i = 0; i < count; ++i) {
+      list.add(readString());
+    }
+    return list;
+  }
+}
@@ -0,0 +1,48 @@
+package serializers.asm;
+
+import java.util.List;
+
+import serializers.BinaryOutput;
+
+/**
+ * Growable, reusable array that generated codecs write primitives to: ints
+ * and longs as zigzag varints, strings as UTF-8 prefixed by their length in
+ * bytes, and nullable values (strings, enums, lists, objects) with a 0 prefix
+ * for null and length (or ordinal) + 1 otherwise.
+ *<p>
+ * Methods are public, as generated code lives in a class loader of its own.
+ */
+public final class ByteOutput extends BinaryOutput
+{
+  public ByteOutput(int initialSize)
+  {
+    super(initialSize);
+  }
+
+  public void writeInt(int value)
+  {
+    writeSignedVarint(value);
+  }
+
+  public void writeLong(long value)
+  {
+    writeSignedVarlong(value);
+  }
+
+  public void writeEnum(Enum<?> value)
+  {
+    writeVarint((value == null) ? 0 : value.ordinal() + 1);
+  }
+
+  public void writeStringList(List<String> list)
+  {
+    if (list == null) {
+      writeVarint(0);
+      return;
+    }
+    writeVarint(list.size() + 1);
+    for (int i = 0, len = list.size(); i < len; ++i) {
+      writeString(list.get(i));
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package serializers.asm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates a {@link PojoCodec} subclass for a POJO class with ASM, using
+ * reflection only once, to find the fields. Classes need a public no-argument
+ * constructor; all non-static, non-transient fields are serialized, sorted by
+ * name. Fields can be of type int, long, String, an enum, another such
+ * POJO class, or a List of Strings or POJOs. Public fields are accessed
+ * directly, others through public bean getters and setters (for field
+ * "_copyright", "getCopyright" and "setCopyright").
+ *<p>
+ * Generated classes are Java 5 class files (version 49, so the verifier
+ * needs no stack map frames), loaded by a class loader of their own.
+ */
+public class CodecGenerator implements Opcodes
+{
+  private final static String CODEC = org.objectweb.asm.Type.getInternalName(PojoCodec.class);
+  private final static String OUTPUT = org.objectweb.asm.Type.getInternalName(ByteOutput.class);
+  private final static String INPUT = org.objectweb.asm.Type.getInternalName(ByteInput.class);
+
+  private final Map<Class<?>, PojoCodec> _codecs = new HashMap<Class<?>, PojoCodec>();
+  private final CodecClassLoader _loader = new CodecClassLoader(PojoCodec.class.getClassLoader());
+
+  /**
+   * @return Codec for given class, generating it (and those of nested
+   *   classes) if this is the first call for it
+   */
+  public synchronized PojoCodec codecFor(Class<?> type) throws Exception
+  {
+    PojoCodec codec = _codecs.get(type);
+    if (codec != null) {
+      return codec;
+    }
+    // published only once all are initialized, so that a class rejected on the way leaves no half-built codecs
+    Map<Class<?>, PojoCodec> generated = new HashMap<Class<?>, PojoCodec>();
+    codec = codecFor(type, generated);
+    _codecs.putAll(generated);
+    return codec;
+  }
+
+  private PojoCodec codecFor(Class<?> type, Map<Class<?>, PojoCodec> generated) throws Exception
+  {
+    PojoCodec codec = _codecs.get(type);
+    if (codec == null) {
+      codec = generated.get(type);
+    }
+    if (codec != null) {
+      return codec;
+    }
+    List<Property> properties = properties(type);
+    byte[] bytes = generate(type, properties);
+    String name = codecName(type).replace('/', '.');
+    codec = (PojoCodec) _loader.define(name, bytes).getConstructor().newInstance();
+    // registered before nested codecs are resolved, so that types can refer to each other
+    generated.put(type, codec);
+
+    List<PojoCodec> codecs = new ArrayList<PojoCodec>();
+    List<Object[]> constants = new ArrayList<Object[]>();
+    for (Property property : properties)
+    {
+      if (property.kind == Kind.OBJECT || property.kind == Kind.OBJECT_LIST) {
+        codecs.add(codecFor(property.elementType, generated));
+      } else if (property.kind == Kind.ENUM) {
+        constants.add(property.type.getEnumConstants());
+      }
+    }
+    codec.init(codecs.toArray(new PojoCodec[codecs.size()]), constants.toArray(new Object[constants.size()][]));
+    return codec;
+  }
+
+  // // // Finding the fields
+
+  enum Kind { INT, LONG, STRING, ENUM, OBJECT, STRING_LIST, OBJECT_LIST }
+
+  static class Property
+  {
+    Field field;
+    Class<?> type;
+    Kind kind;
+    // for OBJECT and OBJECT_LIST: class that needs a codec of its own
+    Class<?> elementType;
+    // for fields that are not public
+    Method getter, setter;
+    // index to PojoCodec._codecs or _constants
+    int index;
+  }
+
+  static List<Property> properties(Class<?> type) throws Exception
+  {
+    if (!Modifier.isPublic(type.getModifiers())) {
+      throw new IllegalArgumentException("Class "+type.getName()+" is not public");
+    }
+    type.getConstructor(); // fails if there is no public no-argument one
+
+    Field[] fields = type.getDeclaredFields();
+    Arrays.sort(fields, new Comparator<Field>() {
+      public int compare(Field f1, Field f2)
+      {
+        return f1.getName().compareTo(f2.getName());
+      }
+    });
+    List<Property> properties = new ArrayList<Property>();
+    int codecs = 0, constants = 0;
+    for (Field field : fields)
+    {
+      int modifiers = field.getModifiers();
+      if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+        continue;
+      }
+      Property property = new Property();
+      property.field = field;
+      property.type = field.getType();
+      if (property.type == int.class) {
+        property.kind = Kind.INT;
+      } else if (property.type == long.class) {
+        property.kind = Kind.LONG;
+      } else if (property.type == String.class) {
+        property.kind = Kind.STRING;
+      } else if (property.type.isEnum()) {
+        property.kind = Kind.ENUM;
+        property.index = constants++;
+      } else if (property.type == List.class) {
+        Class<?> element = elementType(field);
+        if (element == String.class) {
+          property.kind = Kind.STRING_LIST;
+        } else {
+          property.kind = Kind.OBJECT_LIST;
+          property.elementType = element;
+          property.index = codecs++;
+        }
+      } else if (!property.type.isPrimitive() && !property.type.isArray() && !property.type.getName().startsWith("java.")) {
+        property.kind = Kind.OBJECT;
+        property.elementType = property.type;
+        property.index = codecs++;
+      } else {
+        throw new IllegalArgumentException("Field "+field+" has a type that is not supported");
+      }
+      if (!Modifier.isPublic(modifiers)) {
+        String name = field.getName();
+        while (name.startsWith("_")) {
+          name = name.substring(1);
+        }
+        name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        property.getter = type.getMethod("get" + name);
+        property.setter = type.getMethod("set" + name, property.type);
+      }
+      properties.add(property);
+    }
+    return properties;
+  }
+
+  private static Class<?> elementType(Field field)
+  {
+    Type type = field.getGenericType();
+    if (type instanceof ParameterizedType) {
+      Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+      if (element instanceof Class) {
+        return (Class<?>) element;
+      }
+    }
+    throw new IllegalArgumentException("Field "+field+" is a List without a concrete element type");
+  }
+
+  // // // Generating the code
+
+  private static String codecName(Class<?> type)
+  {
+    return CODEC + "$" + type.getName().replace('.', '_');
+  }
+
+  static byte[] generate(Class<?> type, List<Property> properties)
+  {
+    String owner = org.objectweb.asm.Type.getInternalName(type);
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, codecName(type), null, CODEC, null);
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, CODEC, "<init>", "()V");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    // write(Object obj, ByteOutput out): locals are this, obj, out, obj cast to type
+    mv = cw.visitMethod(ACC_PUBLIC, "write", "(Ljava/lang/Object;L"+OUTPUT+";)V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitTypeInsn(CHECKCAST, owner);
+    mv.visitVarInsn(ASTORE, 3);
+    for (Property property : properties)
+    {
+      switch (property.kind) {
+      case INT:
+        mv.visitVarInsn(ALOAD, 2);
+        getValue(mv, owner, property);
+        mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "writeInt", "(I)V");
+        break;
+      case LONG:
+        mv.visitVarInsn(ALOAD, 2);
+        getValue(mv, owner, property);
+        mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "writeLong", "(J)V");
+        break;
+      case STRING:
+        mv.visitVarInsn(ALOAD, 2);
+        getValue(mv, owner, property);
+        mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "writeString", "(Ljava/lang/String;)V");
+        break;
+      case ENUM:
+        mv.visitVarInsn(ALOAD, 2);
+        getValue(mv, owner, property);
+        mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "writeEnum", "(Ljava/lang/Enum;)V");
+        break;
+      case STRING_LIST:
+        mv.visitVarInsn(ALOAD, 2);
+        getValue(mv, owner, property);
+        mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "writeStringList", "(Ljava/util/List;)V");
+        break;
+      case OBJECT:
+        loadCodec(mv, property.index);
+        getValue(mv, owner, property);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CODEC, "writeNullable", "(Ljava/lang/Object;L"+OUTPUT+";)V");
+        break;
+      case OBJECT_LIST:
+        loadCodec(mv, property.index);
+        getValue(mv, owner, property);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CODEC, "writeList", "(Ljava/util/List;L"+OUTPUT+";)V");
+        break;
+      }
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    // read(ByteInput in): locals are this, in, new instance
+    mv = cw.visitMethod(ACC_PUBLIC, "read", "(L"+INPUT+";)Ljava/lang/Object;", null, null);
+    mv.visitCode();
+    mv.visitTypeInsn(NEW, owner);
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "()V");
+    mv.visitVarInsn(ASTORE, 2);
+    for (Property property : properties)
+    {
+      mv.visitVarInsn(ALOAD, 2);
+      switch (property.kind) {
+      case INT:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INPUT, "readInt", "()I");
+        break;
+      case LONG:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INPUT, "readLong", "()J");
+        break;
+      case STRING:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INPUT, "readString", "()Ljava/lang/String;");
+        break;
+      case ENUM:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, CODEC, "_constants", "[[Ljava/lang/Object;");
+        pushInt(mv, property.index);
+        mv.visitInsn(AALOAD);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INPUT, "readEnum", "([Ljava/lang/Object;)Ljava/lang/Object;");
+        break;
+      case STRING_LIST:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INPUT, "readStringList", "()Ljava/util/List;");
+        break;
+      case OBJECT:
+        loadCodec(mv, property.index);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CODEC, "readNullable", "(L"+INPUT+";)Ljava/lang/Object;");
+        break;
+      case OBJECT_LIST:
+        loadCodec(mv, property.index);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CODEC, "readList", "(L"+INPUT+";)Ljava/util/List;");
+        break;
+      }
+      if (!property.type.isPrimitive()) {
+        mv.visitTypeInsn(CHECKCAST, org.objectweb.asm.Type.getInternalName(property.type));
+      }
+      setValue(mv, owner, property);
+    }
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /**
+   * Pushes value of the property of the object in local 3.
+   */
+  private static void getValue(MethodVisitor mv, String owner, Property property)
+  {
+    mv.visitVarInsn(ALOAD, 3);
+    if (property.getter == null) {
+      mv.visitFieldInsn(GETFIELD, owner, property.field.getName(), org.objectweb.asm.Type.getDescriptor(property.type));
+    } else {
+      mv.visitMethodInsn(INVOKEVIRTUAL, owner, property.getter.getName(),
+                         org.objectweb.asm.Type.getMethodDescriptor(property.getter));
+    }
+  }
+
+  /**
+   * Sets the property from the value on top of stack, with the object below it.
+   */
+  private static void setValue(MethodVisitor mv, String owner, Property property)
+  {
+    if (property.setter == null) {
+      mv.visitFieldInsn(PUTFIELD, owner, property.field.getName(), org.objectweb.asm.Type.getDescriptor(property.type));
+    } else {
+      mv.visitMethodInsn(INVOKEVIRTUAL, owner, property.setter.getName(),
+                         org.objectweb.asm.Type.getMethodDescriptor(property.setter));
+      if (property.setter.getReturnType() != void.class) { // fluent setter
+        mv.visitInsn(org.objectweb.asm.Type.getType(property.setter.getReturnType()).getSize() == 2 ? POP2 : POP);
+      }
+    }
+  }
+
+  private static void loadCodec(MethodVisitor mv, int index)
+  {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, CODEC, "_codecs", "[L"+CODEC+";");
+    pushInt(mv, index);
+    mv.visitInsn(AALOAD);
+  }
+
+  private static void pushInt(MethodVisitor mv, int value)
+  {
+    if (value <= 5) {
+      mv.visitInsn(ICONST_0 + value);
+    } else {
+      mv.visitIntInsn(BIPUSH, value);
+    }
+  }
+
+  private static class CodecClassLoader extends ClassLoader
+  {
+    CodecClassLoader(ClassLoader parent)
+    {
+      super(parent);
+    }
+
+    /**
+     * @return Class of given name if an earlier call that failed on a nested
+     *   class already defined it; otherwise one defined from given bytes
+     */
+    Class<?> define(String name, byte[] bytes)
+    {
+      Class<?> defined = findLoadedClass(name);
+      return (defined != null) ? defined : defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
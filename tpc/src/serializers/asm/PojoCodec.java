@@ -0,0 +1,75 @@
+package serializers.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the codecs {@link CodecGenerator} generates, one per POJO
+ * class: generated {@link #write} and {@link #read} access each field
+ * directly, in a fixed order, while lists and nested objects go through
+ * the helpers here. Codecs keep no state between calls, so one instance can
+ * be used by any number of threads.
+ */
+public abstract class PojoCodec
+{
+  /**
+   * Codecs of nested object types and values of enum types, indexed by
+   * number generated code was given for the field.
+   */
+  protected PojoCodec[] _codecs;
+  protected Object[][] _constants;
+
+  void init(PojoCodec[] codecs, Object[][] constants)
+  {
+    _codecs = codecs;
+    _constants = constants;
+  }
+
+  public abstract void write(Object obj, ByteOutput out);
+
+  public abstract Object read(ByteInput in);
+
+  public final void writeNullable(Object obj, ByteOutput out)
+  {
+    if (obj == null) {
+      out.writeVarint(0);
+    } else {
+      out.writeVarint(1);
+      write(obj, out);
+    }
+  }
+
+  public final Object readNullable(ByteInput in)
+  {
+    return (in.readVarint() == 0) ? null : read(in);
+  }
+
+  /**
+   * Writes a list of objects of the type of this codec; elements can not be
+   * null.
+   */
+  public final void writeList(List<?> list, ByteOutput out)
+  {
+    if (list == null) {
+      out.writeVarint(0);
+      return;
+    }
+    out.writeVarint(list.size() + 1);
+    for (int i = 0, len = list.size(); i < len; ++i) {
+      write(list.get(i), out);
+    }
+  }
+
+  public final List<Object> readList(ByteInput in)
+  {
+    int count = in.readVarint() - 1;
+    if (count < 0) {
+      return null;
+    }
+    List<Object> list = new ArrayList<Object>(count);
+    for (int i = 0; i < count; ++i) {
+      list.add(read(in));
+    }
+    return list;
+  }
+}
@@ -2,21 +2,33 @@ package serializers.avro;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.Decoder;
 import org.apache.avro.util.Utf8;
 
-import serializers.ObjectSerializer;
+import serializers.ArrayInputStream;
+import serializers.ByteBufferDeserializer;
+import serializers.ByteBufferInputStream;
+import serializers.CheckingObjectSerializer;
+import serializers.GrowableByteArrayOutputStream;
+import serializers.OutputStreamSerializer;
+import serializers.ReusingDeserializer;
 
-public class AvroGenericSerializer  implements ObjectSerializer<GenericRecord>
+public class AvroGenericSerializer  implements OutputStreamSerializer<GenericRecord>, ByteBufferDeserializer<GenericRecord>,
+                                               ReusingDeserializer<GenericRecord>, CheckingObjectSerializer<GenericRecord>
 {
-  private static final Schema MEDIA_SCHEMA = Schema.parse(
+  public static final Schema MEDIA_SCHEMA = Schema.parse(
       "{\"type\": \"record\", \"name\": \"Media\", \"fields\": [{\"name\": " +
       "\"uri\", \"type\": \"string\"}, {\"name\": \"title\", \"type\": " +
       "\"string\"}, {\"name\": \"width\", \"type\": \"int\"}, {\"name\": " +
@@ -27,14 +39,14 @@ public class AvroGenericSerializer  implements ObjectSerializer<GenericRecord>
       "\"array\", \"items\": \"string\"}}, {\"name\": \"player\", " +
       "\"type\": \"int\"}, {\"name\": \"copyright\", \"type\": \"string\"}]}");
 
-  private static final Schema IMAGE_SCHEMA = Schema.parse(
+  public static final Schema IMAGE_SCHEMA = Schema.parse(
       "{\"type\": \"record\", \"name\": \"Image\", \"fields\": [{\"name\": " +
       "\"uri\", \"type\": \"string\"}, {\"name\": \"title\", \"type\": " +
       "\"string\"}, {\"name\": \"width\", \"type\": \"int\"}, {\"name\": " +
       "\"height\", \"type\": \"int\"}, {\"name\": \"size\", \"type\": " +
       "\"int\"}]}");
 
-  private static final Schema MEDIA_CONTENT_SCHEMA = Schema.parse(
+  public static final Schema MEDIA_CONTENT_SCHEMA = Schema.parse(
       "{\"type\": \"record\", \"name\": \"MediaContent\", \"fields\": " +
       "[{\"name\": \"image\", \"type\": {\"type\": \"array\", \"items\": " +
       IMAGE_SCHEMA +
@@ -48,8 +60,39 @@ public class AvroGenericSerializer  implements ObjectSerializer<GenericRecord>
   private static final GenericDatumReader<GenericRecord> READER = 
     new GenericDatumReader<GenericRecord>(MEDIA_CONTENT_SCHEMA);
 
+  private final String _name;
+
+  // null unless reusing encoder and decoder
+  private final GrowableByteArrayOutputStream _output;
+  private final BinaryEncoder _encoder;
+  private final ArrayInputStream _input;
+  private final BinaryDecoder _decoder;
+
+  public AvroGenericSerializer() {
+    this("avro-generic", false);
+  }
+
+  /**
+   * @param reuse Whether to keep encoder, decoder and their streams from
+   *   call to call, instead of constructing new ones for each message
+   */
+  public AvroGenericSerializer(String name, boolean reuse) {
+    _name = name;
+    if (reuse) {
+      _output = new GrowableByteArrayOutputStream();
+      _encoder = new BinaryEncoder(_output);
+      _input = new ArrayInputStream();
+      _decoder = new BinaryDecoder(_input);
+    } else {
+      _output = null;
+      _encoder = null;
+      _input = null;
+      _decoder = null;
+    }
+  }
+
   public String getName() {
-    return "avro-generic";
+    return _name;
   }
 
   public GenericRecord create() throws Exception {
@@ -96,13 +139,101 @@ public class AvroGenericSerializer  implements ObjectSerializer<GenericRecord>
   }
 
   public GenericRecord deserialize(byte[] array) throws Exception {
-    return READER.read(null, new BinaryDecoder(new ByteArrayInputStream(array)));
+    return READER.read(null, decoder(array, 0, array.length));
+  }
+
+  /**
+   * Avro reads records, arrays and strings into those of <code>reuse</code>,
+   * so the whole graph is reused.
+   */
+  public GenericRecord deserialize(byte[] array, GenericRecord reuse) throws Exception {
+    return READER.read(reuse, decoder(array, 0, array.length));
+  }
+
+  public GenericRecord deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+    Decoder decoder;
+    if (_decoder != null && buffer.hasArray()) {
+      decoder = decoder(buffer.array(), buffer.arrayOffset() + offset, length);
+    } else {
+      decoder = new BinaryDecoder(new ByteBufferInputStream(buffer, offset, length));
+    }
+    return READER.read(null, decoder);
+  }
+
+  private Decoder decoder(byte[] array, int offset, int length) {
+    if (_decoder == null) {
+      return new BinaryDecoder(new ByteArrayInputStream(array, offset, length));
+    }
+    _input.setInput(array, offset, length);
+    return _decoder;
   }
 
   public byte[] serialize(GenericRecord content) throws Exception {
+    if (_encoder != null) {
+      _output.reset();
+      WRITER.write(content, _encoder);
+      return _output.toByteArray();
+    }
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     WRITER.write(content, new BinaryEncoder(out));
     return out.toByteArray();
   }
 
+  public void serialize(GenericRecord content, OutputStream out) throws Exception {
+    if (_encoder != null) {
+      _output.reset();
+      WRITER.write(content, _encoder);
+      out.write(_output.getBuffer(), 0, _output.size());
+      return;
+    }
+    BinaryEncoder encoder = new BinaryEncoder(out);
+    WRITER.write(content, encoder);
+    encoder.flush();
+  }
+
+  @SuppressWarnings("unchecked")
+  public void checkAllFields(GenericRecord content) {
+    checkMediaField(content);
+    GenericArray<GenericRecord> list = (GenericArray<GenericRecord>) content.get("image");
+    assetEquals(2L, list.size());
+
+    Iterator<GenericRecord> images = list.iterator();
+    GenericRecord image = images.next();
+    assetEquals(image.get("uri").toString(), "http://javaone.com/keynote_large.jpg");
+    assetEquals(image.get("size"), 2);
+    assetEquals(image.get("title").toString(), "Javaone Keynote");
+    assetEquals(image.get("width"), 0);
+    assetEquals(image.get("height"), 0);
+
+    image = images.next();
+    assetEquals(image.get("uri").toString(), "http://javaone.com/keynote_thumbnail.jpg");
+    assetEquals(image.get("size"), 1);
+    assetEquals(image.get("title").toString(), "Javaone Keynote");
+    assetEquals(image.get("width"), 0);
+    assetEquals(image.get("height"), 0);
+  }
+
+  public void checkMediaField(GenericRecord content) {
+    GenericRecord media = (GenericRecord) content.get("media");
+    assetEquals(media.get("uri").toString(), "http://javaone.com/keynote.mpg");
+    assetEquals(media.get("format").toString(), "video/mpg4");
+    assetEquals(media.get("title").toString(), "Javaone Keynote");
+    assetEquals(media.get("duration"), 1234567L);
+    assetEquals(media.get("size"), 123L);
+    assetEquals(media.get("bitrate"), 0);
+    assetEquals(media.get("player"), 1);
+    assetEquals(media.get("width"), 0);
+    assetEquals(media.get("height"), 0);
+  }
+
+  public void checkMediaUri(GenericRecord content) {
+    GenericRecord media = (GenericRecord) content.get("media");
+    assetEquals(media.get("uri").toString(), "http://javaone.com/keynote.mpg");
+  }
+
+  static private void assetEquals(Object expected, Object actual) {
+    if( !expected.equals(actual) ) {
+      throw new RuntimeException(""+expected+"!="+actual);
+    }
+  }
 }
@@ -0,0 +1,229 @@
+package serializers.avro;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.util.Utf8;
+
+import serializers.ArrayInputStream;
+import serializers.ByteBufferInputStream;
+import serializers.GrowableByteArrayOutputStream;
+import serializers.ReusingDeserializer;
+import serializers.StdMediaSerializer;
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Avro binary format (schema of {@link AvroGenericSerializer}), read into and
+ * written from the plain java classes by a hand-written
+ * {@link DatumReader} and {@link DatumWriter}, instead of going through
+ * generic or specific records. Encoder, decoder and streams are kept from
+ * call to call.
+ *<p>
+ * Schema has no nulls, so null strings are written as empty ones (as the
+ * other Avro serializers write the missing copyright) and empty strings are
+ * read as null; enums are written as ordinals.
+ */
+public class AvroPojoSerializer extends StdMediaSerializer implements ReusingDeserializer<MediaContent>
+{
+  private final MediaContentDatumWriter _writer = new MediaContentDatumWriter();
+  private final MediaContentDatumReader _reader = new MediaContentDatumReader();
+
+  private final GrowableByteArrayOutputStream _output = new GrowableByteArrayOutputStream();
+  private final BinaryEncoder _encoder = new BinaryEncoder(_output);
+  private final ArrayInputStream _input = new ArrayInputStream();
+  private final BinaryDecoder _decoder = new BinaryDecoder(_input);
+
+  public AvroPojoSerializer() {
+    super("avro-pojo");
+  }
+
+  public byte[] serialize(MediaContent content) throws Exception {
+    _output.reset();
+    _writer.write(content, _encoder);
+    return _output.toByteArray();
+  }
+
+  public void serialize(MediaContent content, OutputStream out) throws Exception {
+    _output.reset();
+    _writer.write(content, _encoder);
+    out.write(_output.getBuffer(), 0, _output.size());
+  }
+
+  public MediaContent deserialize(byte[] array) throws Exception {
+    _input.setInput(array, 0, array.length);
+    return _reader.read(null, _decoder);
+  }
+
+  public MediaContent deserialize(byte[] array, MediaContent reuse) throws Exception {
+    _input.setInput(array, 0, array.length);
+    return _reader.read(reuse, _decoder);
+  }
+
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+    if (buffer.hasArray()) {
+      _input.setInput(buffer.array(), buffer.arrayOffset() + offset, length);
+      return _reader.read(null, _decoder);
+    }
+    return _reader.read(null, new BinaryDecoder(new ByteBufferInputStream(buffer, offset, length)));
+  }
+
+  /**
+   * Writes {@link MediaContent} as a record of
+   * {@link AvroGenericSerializer#MEDIA_CONTENT_SCHEMA}; fields are written
+   * in schema order. Not thread-safe, as strings are encoded through a
+   * reused {@link Utf8}.
+   */
+  public static class MediaContentDatumWriter implements DatumWriter<MediaContent> {
+    private final Utf8 _utf8 = new Utf8();
+
+    public void setSchema(Schema schema) {
+      checkSchema(schema);
+    }
+
+    public void write(MediaContent content, Encoder out) throws IOException {
+      List<Image> images = content.getImages();
+      out.writeArrayStart();
+      if (images != null && !images.isEmpty()) {
+        out.setItemCount(images.size());
+        for (int i = 0, len = images.size(); i < len; ++i) {
+          out.startItem();
+          writeImage(images.get(i), out);
+        }
+      }
+      out.writeArrayEnd();
+      writeMedia(content.getMedia(), out);
+    }
+
+    private void writeImage(Image image, Encoder out) throws IOException {
+      writeString(image.getUri(), out);
+      writeString(image.getTitle(), out);
+      out.writeInt(image.getWidth());
+      out.writeInt(image.getHeight());
+      out.writeInt(image.getSize().ordinal());
+    }
+
+    private void writeMedia(Media media, Encoder out) throws IOException {
+      writeString(media.getUri(), out);
+      writeString(media.getTitle(), out);
+      out.writeInt(media.getWidth());
+      out.writeInt(media.getHeight());
+      writeString(media.getFormat(), out);
+      out.writeLong(media.getDuration());
+      out.writeLong(media.getSize());
+      out.writeInt(media.getBitrate());
+      List<String> persons = media.getPersons();
+      out.writeArrayStart();
+      if (persons != null && !persons.isEmpty()) {
+        out.setItemCount(persons.size());
+        for (int i = 0, len = persons.size(); i < len; ++i) {
+          out.startItem();
+          writeString(persons.get(i), out);
+        }
+      }
+      out.writeArrayEnd();
+      out.writeInt(media.getPlayer().ordinal());
+      writeString(media.getCopyright(), out);
+    }
+
+    private void writeString(String str, Encoder out) throws IOException {
+      if (str == null) {
+        out.writeString(_utf8.setLength(0));
+        return;
+      }
+      int len = str.length();
+      byte[] bytes = _utf8.setLength(len).getBytes();
+      for (int i = 0; i < len; ++i) {
+        char c = str.charAt(i);
+        if (c >= 0x80) { // not ASCII, let Utf8 encode it
+          out.writeString(new Utf8(str));
+          return;
+        }
+        bytes[i] = (byte) c;
+      }
+      out.writeString(_utf8);
+    }
+  }
+
+  /**
+   * Reads a record of {@link AvroGenericSerializer#MEDIA_CONTENT_SCHEMA}
+   * into {@link MediaContent}; given content to reuse is read into along
+   * with its media and images. Not thread-safe, as strings are decoded
+   * through a reused {@link Utf8}.
+   */
+  public static class MediaContentDatumReader implements DatumReader<MediaContent> {
+    private final static Media.Player[] PLAYERS = Media.Player.values();
+    private final static Image.Size[] SIZES = Image.Size.values();
+
+    private Utf8 _utf8 = new Utf8();
+
+    public void setSchema(Schema schema) {
+      checkSchema(schema);
+    }
+
+    public MediaContent read(MediaContent reuse, Decoder in) throws IOException {
+      MediaContent content = (reuse == null) ? new MediaContent() : reuse;
+      int count = 0;
+      for (long n = in.readArrayStart(); n != 0; n = in.arrayNext()) {
+        for (long i = 0; i < n; ++i) {
+          readImage(resetImage(content, count++), in);
+        }
+      }
+      truncateImages(content, count);
+      content.setMedia(readMedia(resetMedia(content.getMedia()), in));
+      return content;
+    }
+
+    private void readImage(Image image, Decoder in) throws IOException {
+      image.setUri(readString(in));
+      image.setTitle(readString(in));
+      image.setWidth(in.readInt());
+      image.setHeight(in.readInt());
+      image.setSize(SIZES[in.readInt()]);
+    }
+
+    private Media readMedia(Media media, Decoder in) throws IOException {
+      media.setUri(readString(in));
+      media.setTitle(readString(in));
+      media.setWidth(in.readInt());
+      media.setHeight(in.readInt());
+      media.setFormat(readString(in));
+      media.setDuration(in.readLong());
+      media.setSize(in.readLong());
+      media.setBitrate(in.readInt());
+      for (long n = in.readArrayStart(); n != 0; n = in.arrayNext()) {
+        if (media.getPersons() == null) {
+          media.setPersons(new ArrayList<String>((int) n));
+        }
+        for (long i = 0; i < n; ++i) {
+          media.addToPerson(readString(in));
+        }
+      }
+      media.setPlayer(PLAYERS[in.readInt()]);
+      media.setCopyright(readString(in));
+      return media;
+    }
+
+    private String readString(Decoder in) throws IOException {
+      _utf8 = in.readString(_utf8);
+      return (_utf8.getLength() == 0) ? null : _utf8.toString();
+    }
+  }
+
+  private static void checkSchema(Schema schema) {
+    if (!AvroGenericSerializer.MEDIA_CONTENT_SCHEMA.equals(schema)) {
+      throw new IllegalArgumentException("Only MediaContent schema is supported, not "+schema);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package serializers.avro.specific;
+
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+
+import serializers.payload.PayloadConverter;
+
+/**
+ * Lives next to the avro-specific classes (rather than with the other
+ * converters in <code>serializers.payload</code>) because the generated
+ * <code>Media</code> and <code>Image</code> classes are package-private.
+ */
+public class AvroSpecificPayloadConverter implements PayloadConverter<MediaContent>
+{
+  public MediaContent convert(serializers.java.MediaContent content)
+  {
+    serializers.java.Media media = content.getMedia();
+    Media am = new Media();
+    am.uri = new Utf8(media.getUri());
+    am.format = new Utf8(media.getFormat());
+    am.title = new Utf8(media.getTitle());
+    am.duration = media.getDuration();
+    am.bitrate = media.getBitrate();
+    am.person = new GenericData.Array<Utf8>(media.getPersons().size(), null);
+    for (String person : media.getPersons())
+      am.person.add(new Utf8(person));
+    am.player = media.getPlayer().ordinal();
+    am.height = media.getHeight();
+    am.width = media.getWidth();
+    am.size = media.getSize();
+    am.copyright = (media.getCopyright() == null) ? new Utf8() : new Utf8(media.getCopyright());
+
+    MediaContent ac = new MediaContent();
+    ac.media = am;
+    ac.image = new GenericData.Array<Image>(content.imageCount(), null);
+    for (serializers.java.Image image : content.getImages())
+    {
+      Image ai = new Image();
+      ai.uri = new Utf8(image.getUri());
+      ai.width = image.getWidth();
+      ai.height = image.getHeight();
+      ai.size = image.getSize().ordinal();
+      ai.title = new Utf8(image.getTitle());
+      ac.image.add(ai);
+    }
+    return ac;
+  }
+}
@@ -2,18 +2,29 @@ package serializers.avro.specific;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.Decoder;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.util.Utf8;
 
-import serializers.ObjectSerializer;
+import serializers.ArrayInputStream;
+import serializers.ByteBufferDeserializer;
+import serializers.ByteBufferInputStream;
+import serializers.CheckingObjectSerializer;
+import serializers.GrowableByteArrayOutputStream;
+import serializers.OutputStreamSerializer;
+import serializers.ReusingDeserializer;
 
-public class AvroSpecificSerializer implements ObjectSerializer<MediaContent> 
+public class AvroSpecificSerializer implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+                                               ReusingDeserializer<MediaContent>, CheckingObjectSerializer<MediaContent>
 
 {
   private static final Schema SCHEMA = new MediaContent().getSchema();
@@ -24,8 +35,39 @@ public class AvroSpecificSerializer implements ObjectSerializer<MediaContent>
   private static final SpecificDatumWriter WRITER =
     new SpecificDatumWriter(SCHEMA);
 
+  private final String _name;
+
+  // null unless reusing encoder and decoder
+  private final GrowableByteArrayOutputStream _output;
+  private final BinaryEncoder _encoder;
+  private final ArrayInputStream _input;
+  private final BinaryDecoder _decoder;
+
+  public AvroSpecificSerializer() {
+    this("avro-specific", false);
+  }
+
+  /**
+   * @param reuse Whether to keep encoder, decoder and their streams from
+   *   call to call, instead of constructing new ones for each message
+   */
+  public AvroSpecificSerializer(String name, boolean reuse) {
+    _name = name;
+    if (reuse) {
+      _output = new GrowableByteArrayOutputStream();
+      _encoder = new BinaryEncoder(_output);
+      _input = new ArrayInputStream();
+      _decoder = new BinaryDecoder(_input);
+    } else {
+      _output = null;
+      _encoder = null;
+      _input = null;
+      _decoder = null;
+    }
+  }
+
   public String getName() {
-    return "avro-specific";
+    return _name;
   }
 
   public MediaContent create() throws Exception {
@@ -68,13 +110,104 @@ public class AvroSpecificSerializer implements ObjectSerializer<MediaContent>
 
   public MediaContent deserialize(byte[] array) throws Exception {
     return (MediaContent) 
-      READER.read(null, new BinaryDecoder(new ByteArrayInputStream(array)));
+      READER.read(null, decoder(array, 0, array.length));
+  }
+
+  /**
+   * Avro reads records, arrays and strings into those of <code>reuse</code>,
+   * so the whole graph is reused.
+   */
+  public MediaContent deserialize(byte[] array, MediaContent reuse) throws Exception {
+    return (MediaContent) 
+      READER.read(reuse, decoder(array, 0, array.length));
+  }
+
+  public MediaContent deserialize(ByteBuffer buffer, int offset, int length) throws Exception {
+    Decoder decoder;
+    if (_decoder != null && buffer.hasArray()) {
+      decoder = decoder(buffer.array(), buffer.arrayOffset() + offset, length);
+    } else {
+      decoder = new BinaryDecoder(new ByteBufferInputStream(buffer, offset, length));
+    }
+    return (MediaContent) READER.read(null, decoder);
+  }
+
+  private Decoder decoder(byte[] array, int offset, int length) {
+    if (_decoder == null) {
+      return new BinaryDecoder(new ByteArrayInputStream(array, offset, length));
+    }
+    _input.setInput(array, offset, length);
+    return _decoder;
   }
 
   public byte[] serialize(MediaContent content) throws Exception {
+    if (_encoder != null) {
+      _output.reset();
+      WRITER.write(content, _encoder);
+      return _output.toByteArray();
+    }
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     WRITER.write(content, new BinaryEncoder(out));
     return out.toByteArray();
   }
 
+  public void serialize(MediaContent content, OutputStream out) throws Exception {
+    if (_encoder != null) {
+      _output.reset();
+      WRITER.write(content, _encoder);
+      out.write(_output.getBuffer(), 0, _output.size());
+      return;
+    }
+    BinaryEncoder encoder = new BinaryEncoder(out);
+    WRITER.write(content, encoder);
+    encoder.flush();
+  }
+
+  /*
+   * Strings are decoded from UTF-8 when accessed, as Avro reads them into Utf8
+   * instances; numbers are decoded while reading.
+   */
+
+  public void checkAllFields(MediaContent content) {
+    checkMediaField(content);
+    assetEquals(2L, content.image.size());
+
+    Iterator<Image> images = content.image.iterator();
+    Image image = images.next();
+    assetEquals(image.uri.toString(), "http://javaone.com/keynote_large.jpg");
+    assetEquals(image.size, 2);
+    assetEquals(image.title.toString(), "Javaone Keynote");
+    assetEquals(image.width, 0);
+    assetEquals(image.height, 0);
+
+    image = images.next();
+    assetEquals(image.uri.toString(), "http://javaone.com/keynote_thumbnail.jpg");
+    assetEquals(image.size, 1);
+    assetEquals(image.title.toString(), "Javaone Keynote");
+    assetEquals(image.width, 0);
+    assetEquals(image.height, 0);
+  }
+
+  public void checkMediaField(MediaContent content) {
+    Media media = content.media;
+    assetEquals(media.uri.toString(), "http://javaone.com/keynote.mpg");
+    assetEquals(media.format.toString(), "video/mpg4");
+    assetEquals(media.title.toString(), "Javaone Keynote");
+    assetEquals(media.duration, 1234567L);
+    assetEquals(media.size, 123L);
+    assetEquals(media.bitrate, 0);
+    assetEquals(media.player, 0);
+    assetEquals(media.width, 0);
+    assetEquals(media.height, 0);
+  }
+
+  public void checkMediaUri(MediaContent content) {
+    assetEquals(content.media.uri.toString(), "http://javaone.com/keynote.mpg");
+  }
+
+  static private void assetEquals(Object expected, Object actual) {
+    if( !expected.equals(actual) ) {
+      throw new RuntimeException(""+expected+"!="+actual);
+    }
+  }
 }
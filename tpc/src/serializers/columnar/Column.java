@@ -0,0 +1,59 @@
+package serializers.columnar;
+
+/**
+ * Columns of a batch that {@link ColumnarBatchCodec} writes, in the order
+ * they are written. Media columns have one value per record; person and
+ * image columns have one value per person or image of all records, in
+ * record order, with the count columns telling which belong to which
+ * record.
+ */
+public enum Column
+{
+  MEDIA_URI(Kind.STRING),
+  MEDIA_TITLE(Kind.STRING),
+  MEDIA_WIDTH(Kind.INT),
+  MEDIA_HEIGHT(Kind.INT),
+  MEDIA_FORMAT(Kind.STRING),
+  MEDIA_DURATION(Kind.LONG),
+  MEDIA_SIZE(Kind.LONG),
+  MEDIA_BITRATE(Kind.INT),
+  MEDIA_PLAYER(Kind.ENUM),
+  MEDIA_COPYRIGHT(Kind.STRING),
+  PERSON_COUNT(Kind.COUNT),
+  PERSON(Kind.STRING),
+  IMAGE_COUNT(Kind.COUNT),
+  IMAGE_URI(Kind.STRING),
+  IMAGE_TITLE(Kind.STRING),
+  IMAGE_WIDTH(Kind.INT),
+  IMAGE_HEIGHT(Kind.INT),
+  IMAGE_SIZE(Kind.ENUM);
+
+  /**
+   * How values of a column are encoded:
+   *<ul>
+   * <li>STRING: UTF-8, either all lengths followed by all bytes, or (when
+   *   few values are distinct) a dictionary of distinct values followed by
+   *   bit-packed indexes into it
+   *  </li>
+   * <li>INT: zigzag varints
+   *  </li>
+   * <li>LONG: zigzag varints of the difference from the previous value
+   *  </li>
+   * <li>COUNT: varints of list size + 1, 0 for a null list
+   *  </li>
+   * <li>ENUM: bit-packed ordinal + 1, 0 for null
+   *  </li>
+   *</ul>
+   */
+  public enum Kind
+  {
+    STRING, INT, LONG, COUNT, ENUM
+  }
+
+  public final Kind kind;
+
+  private Column(Kind kind)
+  {
+    this.kind = kind;
+  }
+}
@@ -0,0 +1,43 @@
+package serializers.columnar;
+
+import serializers.BinaryInput;
+
+/**
+ * Reads what {@link ColumnOutput} writes, from a given position of an
+ * array.
+ */
+final class ColumnInput extends BinaryInput
+{
+  ColumnInput(byte[] input, int position)
+  {
+    reset(input, position);
+  }
+
+  void skip(int bytes)
+  {
+    _position += bytes;
+  }
+
+  /**
+   * Reads <code>count</code> codes of <code>bits</code> bits each, as
+   * {@link ColumnOutput#writeBits} packs them.
+   */
+  void readBits(int[] codes, int count, int bits)
+  {
+    byte[] input = _input;
+    int pos = _position;
+    int mask = (1 << bits) - 1;
+    long acc = 0;
+    int accBits = 0;
+    for (int i = 0; i < count; ++i) {
+      while (accBits < bits) {
+        acc |= (long) (input[pos++] & 0xFF) << accBits;
+        accBits += 8;
+      }
+      codes[i] = (int) acc & mask;
+      acc >>>= bits;
+      accBits -= bits;
+    }
+    _position = pos;
+  }
+}
@@ -0,0 +1,48 @@
+package serializers.columnar;
+
+import serializers.BinaryOutput;
+
+/**
+ * Growable, reusable array that {@link ColumnarBatchCodec} writes columns
+ * to; adds bit-packing and appending one column to another.
+ */
+final class ColumnOutput extends BinaryOutput
+{
+  ColumnOutput()
+  {
+    super(1024);
+  }
+
+  void write(ColumnOutput other)
+  {
+    ensureCapacity(other._position);
+    System.arraycopy(other._buffer, 0, _buffer, _position, other._position);
+    _position += other._position;
+  }
+
+  /**
+   * Writes the low <code>bits</code> bits of each of the first
+   * <code>count</code> codes, packed least significant bit first.
+   */
+  void writeBits(int[] codes, int count, int bits)
+  {
+    ensureCapacity((int) (((long) count * bits + 7) / 8));
+    byte[] buffer = _buffer;
+    int pos = _position;
+    long acc = 0;
+    int accBits = 0;
+    for (int i = 0; i < count; ++i) {
+      acc |= (long) codes[i] << accBits;
+      accBits += bits;
+      while (accBits >= 8) {
+        buffer[pos++] = (byte) acc;
+        acc >>>= 8;
+        accBits -= 8;
+      }
+    }
+    if (accBits > 0) {
+      buffer[pos++] = (byte) acc;
+    }
+    _position = pos;
+  }
+}
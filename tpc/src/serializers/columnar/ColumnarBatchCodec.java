@@ -0,0 +1,453 @@
+package serializers.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Writes a batch of {@link MediaContent} records column by column (all
+ * media uris, then all media titles and so on; see {@link Column}) instead
+ * of record by record, so that similar values end up next to each other:
+ * low-cardinality strings are dictionary encoded, enums bit-packed and
+ * longs delta encoded. Each column is prefixed by its length, so a single
+ * column can be read without decoding the others (see
+ * {@link #readStrings}, {@link #readNumbers} and {@link #readEnums}).
+ *<p>
+ * Batch layout: number of records, then for each column its length in
+ * bytes, number of values and the values. Records must have media; other
+ * references may be null. Instances keep buffers between calls, so are not
+ * thread-safe.
+ */
+public class ColumnarBatchCodec
+{
+  private final static Column[] COLUMNS = Column.values();
+  private final static Media.Player[] PLAYERS = Media.Player.values();
+  private final static Image.Size[] SIZES = Image.Size.values();
+
+  private final static int STRINGS_PLAIN = 0;
+  private final static int STRINGS_DICTIONARY = 1;
+
+  private final static int DICTIONARY_SAMPLE = 64;
+
+  // values collected per column while encoding, indexed by column ordinal
+  private final String[][] _strings = new String[COLUMNS.length][];
+  private final long[][] _numbers = new long[COLUMNS.length][];
+  private final int[] _counts = new int[COLUMNS.length];
+
+  private final ColumnOutput _output = new ColumnOutput();
+  private final ColumnOutput _column = new ColumnOutput();
+  private final ColumnOutput _bytes = new ColumnOutput();
+  private int[] _codes = new int[64];
+  private final Map<String, Integer> _dictionary = new HashMap<String, Integer>();
+
+  // // // Encoding
+
+  public byte[] encode(List<MediaContent> records)
+  {
+    for (int i = 0; i < COLUMNS.length; ++i) {
+      _counts[i] = 0;
+    }
+    for (int i = 0, len = records.size(); i < len; ++i) {
+      collect(records.get(i));
+    }
+    _output.reset();
+    _output.writeVarint(records.size());
+    for (Column column : COLUMNS) {
+      _column.reset();
+      encodeColumn(column);
+      _output.writeVarint(_column.size());
+      _output.write(_column);
+    }
+    // values are only needed until written
+    for (int i = 0; i < COLUMNS.length; ++i) {
+      if (_strings[i] != null) {
+        Arrays.fill(_strings[i], 0, _counts[i], null);
+      }
+    }
+    return _output.toByteArray();
+  }
+
+  private void collect(MediaContent content)
+  {
+    Media media = content.getMedia();
+    add(Column.MEDIA_URI, media.getUri());
+    add(Column.MEDIA_TITLE, media.getTitle());
+    add(Column.MEDIA_WIDTH, media.getWidth());
+    add(Column.MEDIA_HEIGHT, media.getHeight());
+    add(Column.MEDIA_FORMAT, media.getFormat());
+    add(Column.MEDIA_DURATION, media.getDuration());
+    add(Column.MEDIA_SIZE, media.getSize());
+    add(Column.MEDIA_BITRATE, media.getBitrate());
+    add(Column.MEDIA_PLAYER, (media.getPlayer() == null) ? 0 : media.getPlayer().ordinal() + 1);
+    add(Column.MEDIA_COPYRIGHT, media.getCopyright());
+    List<String> persons = media.getPersons();
+    if (persons == null) {
+      add(Column.PERSON_COUNT, 0);
+    } else {
+      add(Column.PERSON_COUNT, persons.size() + 1);
+      for (int i = 0, len = persons.size(); i < len; ++i) {
+        add(Column.PERSON, persons.get(i));
+      }
+    }
+    List<Image> images = content.getImages();
+    if (images == null) {
+      add(Column.IMAGE_COUNT, 0);
+    } else {
+      add(Column.IMAGE_COUNT, images.size() + 1);
+      for (int i = 0, len = images.size(); i < len; ++i) {
+        Image image = images.get(i);
+        add(Column.IMAGE_URI, image.getUri());
+        add(Column.IMAGE_TITLE, image.getTitle());
+        add(Column.IMAGE_WIDTH, image.getWidth());
+        add(Column.IMAGE_HEIGHT, image.getHeight());
+        add(Column.IMAGE_SIZE, (image.getSize() == null) ? 0 : image.getSize().ordinal() + 1);
+      }
+    }
+  }
+
+  private void add(Column column, String value)
+  {
+    int ix = column.ordinal();
+    String[] values = _strings[ix];
+    if (values == null || _counts[ix] == values.length) {
+      String[] grown = new String[(values == null) ? 64 : values.length * 2];
+      if (values != null) {
+        System.arraycopy(values, 0, grown, 0, values.length);
+      }
+      _strings[ix] = values = grown;
+    }
+    values[_counts[ix]++] = value;
+  }
+
+  private void add(Column column, long value)
+  {
+    int ix = column.ordinal();
+    long[] values = _numbers[ix];
+    if (values == null || _counts[ix] == values.length) {
+      long[] grown = new long[(values == null) ? 64 : values.length * 2];
+      if (values != null) {
+        System.arraycopy(values, 0, grown, 0, values.length);
+      }
+      _numbers[ix] = values = grown;
+    }
+    values[_counts[ix]++] = value;
+  }
+
+  private void encodeColumn(Column column)
+  {
+    int ix = column.ordinal();
+    int count = _counts[ix];
+    _column.writeVarint(count);
+    switch (column.kind) {
+    case STRING:
+      encodeStrings(_strings[ix], count);
+      break;
+    case INT:
+      long[] ints = _numbers[ix];
+      for (int i = 0; i < count; ++i) {
+        _column.writeSignedVarint((int) ints[i]);
+      }
+      break;
+    case LONG:
+      long[] longs = _numbers[ix];
+      long previous = 0L;
+      for (int i = 0; i < count; ++i) {
+        _column.writeSignedVarlong(longs[i] - previous);
+        previous = longs[i];
+      }
+      break;
+    case COUNT:
+      long[] counts = _numbers[ix];
+      for (int i = 0; i < count; ++i) {
+        _column.writeVarint((int) counts[i]);
+      }
+      break;
+    case ENUM:
+      long[] codes = _numbers[ix];
+      int[] packed = codes(count);
+      for (int i = 0; i < count; ++i) {
+        packed[i] = (int) codes[i];
+      }
+      int bits = bitsFor(((column == Column.MEDIA_PLAYER) ? PLAYERS : SIZES).length);
+      _column.writeByte(bits);
+      _column.writeBits(packed, count, bits);
+      break;
+    }
+  }
+
+  /**
+   * Uses a dictionary if at most half of the values are distinct, as it
+   * then takes less space than the values themselves. Gives up on it as soon
+   * as more than half of the values so far are distinct (once there are
+   * {@link #DICTIONARY_SAMPLE} of them), so that columns of mostly distinct
+   * values are not hashed in vain.
+   */
+  private void encodeStrings(String[] values, int count)
+  {
+    Map<String, Integer> dictionary = _dictionary;
+    dictionary.clear();
+    int[] codes = codes(count);
+    int limit = count / 2;
+    for (int i = 0; i < count; ++i) {
+      String value = values[i];
+      if (value == null) {
+        codes[i] = 0;
+        continue;
+      }
+      Integer code = dictionary.get(value);
+      if (code == null) {
+        if (dictionary.size() >= limit || (i >= DICTIONARY_SAMPLE && dictionary.size() * 2 > i)) {
+          dictionary.clear();
+          _column.writeByte(STRINGS_PLAIN);
+          writePlainStrings(values, count);
+          return;
+        }
+        code = dictionary.size() + 1;
+        dictionary.put(value, code);
+      }
+      codes[i] = code;
+    }
+    String[] distinct = new String[dictionary.size()];
+    for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+      distinct[entry.getValue() - 1] = entry.getKey();
+    }
+    dictionary.clear();
+    _column.writeByte(STRINGS_DICTIONARY);
+    _column.writeVarint(distinct.length);
+    writePlainStrings(distinct, distinct.length);
+    int bits = bitsFor(distinct.length);
+    _column.writeByte(bits);
+    _column.writeBits(codes, count, bits);
+  }
+
+  /**
+   * Writes lengths + 1 (0 for null) of all values, then the bytes of all
+   * values.
+   */
+  private void writePlainStrings(String[] values, int count)
+  {
+    _bytes.reset();
+    for (int i = 0; i < count; ++i) {
+      String value = values[i];
+      _column.writeVarint((value == null) ? 0 : _bytes.writeUtf8(value) + 1);
+    }
+    _column.write(_bytes);
+  }
+
+  /**
+   * @return Number of bits needed for codes from 0 (null) to
+   *   <code>values</code>
+   */
+  private static int bitsFor(int values)
+  {
+    return 32 - Integer.numberOfLeadingZeros(values);
+  }
+
+  private int[] codes(int count)
+  {
+    if (_codes.length < count) {
+      _codes = new int[Math.max(count, _codes.length * 2)];
+    }
+    return _codes;
+  }
+
+  // // // Decoding
+
+  public List<MediaContent> decode(byte[] batch)
+  {
+    ColumnInput in = new ColumnInput(batch, 0);
+    int recordCount = in.readVarint();
+    Object[] columns = new Object[COLUMNS.length];
+    for (Column column : COLUMNS) {
+      int length = in.readVarint();
+      int end = in.position() + length;
+      columns[column.ordinal()] = decodeColumn(in, column);
+      in.skip(end - in.position());
+    }
+
+    List<MediaContent> records = new ArrayList<MediaContent>(recordCount);
+    int person = 0;
+    int image = 0;
+    for (int i = 0; i < recordCount; ++i) {
+      Media media = new Media();
+      media.setUri(strings(columns, Column.MEDIA_URI)[i]);
+      media.setTitle(strings(columns, Column.MEDIA_TITLE)[i]);
+      media.setWidth((int) numbers(columns, Column.MEDIA_WIDTH)[i]);
+      media.setHeight((int) numbers(columns, Column.MEDIA_HEIGHT)[i]);
+      media.setFormat(strings(columns, Column.MEDIA_FORMAT)[i]);
+      media.setDuration(numbers(columns, Column.MEDIA_DURATION)[i]);
+      media.setSize(numbers(columns, Column.MEDIA_SIZE)[i]);
+      media.setBitrate((int) numbers(columns, Column.MEDIA_BITRATE)[i]);
+      media.setPlayer((Media.Player) enums(columns, Column.MEDIA_PLAYER)[i]);
+      media.setCopyright(strings(columns, Column.MEDIA_COPYRIGHT)[i]);
+      int persons = (int) numbers(columns, Column.PERSON_COUNT)[i];
+      if (persons >= 0) {
+        List<String> list = new ArrayList<String>(persons);
+        String[] values = strings(columns, Column.PERSON);
+        for (int j = 0; j < persons; ++j) {
+          list.add(values[person++]);
+        }
+        media.setPersons(list);
+      }
+
+      MediaContent content = new MediaContent(media);
+      int images = (int) numbers(columns, Column.IMAGE_COUNT)[i];
+      if (images >= 0) {
+        content.setImages(new ArrayList<Image>(images));
+        for (int j = 0; j < images; ++j, ++image) {
+          content.addImage(new Image((int) numbers(columns, Column.IMAGE_HEIGHT)[image],
+                                     strings(columns, Column.IMAGE_TITLE)[image],
+                                     strings(columns, Column.IMAGE_URI)[image],
+                                     (int) numbers(columns, Column.IMAGE_WIDTH)[image],
+                                     (Image.Size) enums(columns, Column.IMAGE_SIZE)[image]));
+        }
+      }
+      records.add(content);
+    }
+    return records;
+  }
+
+  private static String[] strings(Object[] columns, Column column)
+  {
+    return (String[]) columns[column.ordinal()];
+  }
+
+  private static long[] numbers(Object[] columns, Column column)
+  {
+    return (long[]) columns[column.ordinal()];
+  }
+
+  private static Enum<?>[] enums(Object[] columns, Column column)
+  {
+    return (Enum<?>[]) columns[column.ordinal()];
+  }
+
+  // // // Single-column scans
+
+  /**
+   * Decodes values of a single {@link Column.Kind#STRING} column, skipping
+   * the others.
+   */
+  public String[] readStrings(byte[] batch, Column column)
+  {
+    checkKind(column, Column.Kind.STRING);
+    return (String[]) decodeColumn(seek(batch, column), column);
+  }
+
+  /**
+   * Decodes values of a single {@link Column.Kind#INT},
+   * {@link Column.Kind#LONG} or {@link Column.Kind#COUNT} column (where a
+   * null list has count -1), skipping the others.
+   */
+  public long[] readNumbers(byte[] batch, Column column)
+  {
+    if (column.kind == Column.Kind.STRING || column.kind == Column.Kind.ENUM) {
+      throw new IllegalArgumentException("Column "+column+" is not numeric");
+    }
+    return (long[]) decodeColumn(seek(batch, column), column);
+  }
+
+  /**
+   * Decodes values of a single {@link Column.Kind#ENUM} column, skipping
+   * the others.
+   */
+  public Enum<?>[] readEnums(byte[] batch, Column column)
+  {
+    checkKind(column, Column.Kind.ENUM);
+    return (Enum<?>[]) decodeColumn(seek(batch, column), column);
+  }
+
+  private static void checkKind(Column column, Column.Kind kind)
+  {
+    if (column.kind != kind) {
+      throw new IllegalArgumentException("Column "+column+" is "+column.kind+", not "+kind);
+    }
+  }
+
+  /**
+   * @return Input positioned at the value count of given column
+   */
+  private static ColumnInput seek(byte[] batch, Column column)
+  {
+    ColumnInput in = new ColumnInput(batch, 0);
+    in.readVarint(); // record count
+    for (int i = 0; i < column.ordinal(); ++i) {
+      in.skip(in.readVarint());
+    }
+    in.readVarint(); // length of the column itself
+    return in;
+  }
+
+  private Object decodeColumn(ColumnInput in, Column column)
+  {
+    int count = in.readVarint();
+    switch (column.kind) {
+    case STRING:
+      return decodeStrings(in, count);
+    case INT:
+      long[] ints = new long[count];
+      for (int i = 0; i < count; ++i) {
+        ints[i] = in.readSignedVarint();
+      }
+      return ints;
+    case LONG:
+      long[] longs = new long[count];
+      long previous = 0L;
+      for (int i = 0; i < count; ++i) {
+        previous += in.readSignedVarlong();
+        longs[i] = previous;
+      }
+      return longs;
+    case COUNT:
+      long[] counts = new long[count];
+      for (int i = 0; i < count; ++i) {
+        counts[i] = in.readVarint() - 1;
+      }
+      return counts;
+    case ENUM:
+    default:
+      Enum<?>[] constants = (column == Column.MEDIA_PLAYER) ? PLAYERS : SIZES;
+      Enum<?>[] enums = (column == Column.MEDIA_PLAYER) ? new Media.Player[count] : new Image.Size[count];
+      int[] codes = codes(count);
+      in.readBits(codes, count, in.readByte());
+      for (int i = 0; i < count; ++i) {
+        enums[i] = (codes[i] == 0) ? null : constants[codes[i] - 1];
+      }
+      return enums;
+    }
+  }
+
+  private String[] decodeStrings(ColumnInput in, int count)
+  {
+    if (in.readByte() == STRINGS_PLAIN) {
+      return readPlainStrings(in, count);
+    }
+    String[] distinct = readPlainStrings(in, in.readVarint());
+    int[] codes = codes(count);
+    in.readBits(codes, count, in.readByte());
+    String[] values = new String[count];
+    for (int i = 0; i < count; ++i) {
+      values[i] = (codes[i] == 0) ? null : distinct[codes[i] - 1];
+    }
+    return values;
+  }
+
+  private String[] readPlainStrings(ColumnInput in, int count)
+  {
+    int[] lengths = codes(count);
+    for (int i = 0; i < count; ++i) {
+      lengths[i] = in.readVarint();
+    }
+    String[] values = new String[count];
+    for (int i = 0; i < count; ++i) {
+      values[i] = (lengths[i] == 0) ? null : in.readUtf8(lengths[i] - 1);
+    }
+    return values;
+  }
+}
@@ -0,0 +1,16 @@
+package serializers.compression;
+
+import java.io.IOException;
+
+/**
+ * Compression algorithm that can be layered over any serializer with
+ * {@link CompressedSerializer}. Implementations may keep state (buffers,
+ * native compressor instances) between calls, so an instance must only be
+ * used by one thread at a time, same as serializers.
+ */
+public interface Codec
+{
+    public String getName();
+    public byte[] compress(byte[] data) throws IOException;
+    public byte[] decompress(byte[] data) throws IOException;
+}
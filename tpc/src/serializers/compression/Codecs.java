@@ -0,0 +1,79 @@
+package serializers.compression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs that can be benchmarked, and the length prefix they share: since
+ * neither deflate nor LZF output says how long the uncompressed data is,
+ * compressed data starts with that length as a varint, so that decompression
+ * can allocate the result array once.
+ */
+public class Codecs
+{
+  private Codecs() { }
+
+  /**
+   * @return New instances of all codecs, fastest first
+   */
+  public static List<Codec> all()
+  {
+    List<Codec> codecs = new ArrayList<Codec>();
+    codecs.add(new LzfCodec());
+    codecs.add(new DeflateCodec(1));
+    codecs.add(new DeflateCodec(6));
+    codecs.add(new DeflateCodec(9));
+    return codecs;
+  }
+
+  /**
+   * @return New instance of the codec with given name, or null if there is none
+   */
+  public static Codec forName(String name)
+  {
+    for (Codec codec : all())
+    {
+      if (codec.getName().equals(name)) {
+        return codec;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return Number of bytes written
+   */
+  static int writeLength(byte[] buffer, int length)
+  {
+    int pos = 0;
+    while ((length & ~0x7F) != 0)
+    {
+      buffer[pos++] = (byte) ((length & 0x7F) | 0x80);
+      length >>>= 7;
+    }
+    buffer[pos++] = (byte) length;
+    return pos;
+  }
+
+  /**
+   * @return Length, and number of bytes it took, packed into a long (length in
+   *   the high 32 bits)
+   */
+  static long readLength(byte[] data) throws IOException
+  {
+    int length = 0;
+    for (int pos = 0, shift = 0; pos < 5 && pos < data.length; ++pos, shift += 7)
+    {
+      int b = data[pos];
+      length |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        if (length < 0) {
+          break;
+        }
+        return ((long) length << 32) | (pos + 1);
+      }
+    }
+    throw new IOException("Corrupt compressed data: bad length prefix");
+  }
+}
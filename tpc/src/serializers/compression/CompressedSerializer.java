@@ -0,0 +1,100 @@
+package serializers.compression;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import serializers.ByteBufferDeserializer;
+import serializers.ByteBufferInputStream;
+import serializers.CheckingObjectSerializer;
+import serializers.ObjectSerializer;
+import serializers.OutputStreamSerializer;
+
+/**
+ * Decorator that compresses what given serializer produces with given
+ * {@link Codec}, and decompresses before deserializing. Name is that of the
+ * serializer and codec, joined with '+' (like "protobuf+lzf").
+ *<p>
+ * Use {@link #wrap} so that the result implements
+ * {@link CheckingObjectSerializer} if the wrapped serializer does.
+ */
+public class CompressedSerializer<T> implements OutputStreamSerializer<T>, ByteBufferDeserializer<T>
+{
+  protected final ObjectSerializer<T> _serializer;
+  protected final Codec _codec;
+
+  protected CompressedSerializer(ObjectSerializer<T> serializer, Codec codec)
+  {
+    _serializer = serializer;
+    _codec = codec;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> ObjectSerializer<T> wrap(ObjectSerializer<T> serializer, Codec codec)
+  {
+    if (serializer instanceof CheckingObjectSerializer) {
+      return new Checking<T>((CheckingObjectSerializer<T>) serializer, codec);
+    }
+    return new CompressedSerializer<T>(serializer, codec);
+  }
+
+  public T create() throws Exception
+  {
+    return _serializer.create();
+  }
+
+  public byte[] serialize(T content) throws Exception
+  {
+    return _codec.compress(_serializer.serialize(content));
+  }
+
+  /**
+   * Codecs work on arrays, so this writes the compressed array.
+   */
+  public void serialize(T content, OutputStream out) throws Exception
+  {
+    out.write(serialize(content));
+  }
+
+  public T deserialize(byte[] array) throws Exception
+  {
+    return _serializer.deserialize(_codec.decompress(array));
+  }
+
+  /**
+   * Codecs work on arrays, so this copies the compressed bytes into one.
+   */
+  public T deserialize(ByteBuffer buffer, int offset, int length) throws Exception
+  {
+    byte[] array = new byte[length];
+    ByteBufferInputStream.slice(buffer, offset, length).get(array);
+    return deserialize(array);
+  }
+
+  public String getName()
+  {
+    return _serializer.getName()+"+"+_codec.getName();
+  }
+
+  static class Checking<T> extends CompressedSerializer<T> implements CheckingObjectSerializer<T>
+  {
+    Checking(CheckingObjectSerializer<T> serializer, Codec codec)
+    {
+      super(serializer, codec);
+    }
+
+    public void checkAllFields(T obj)
+    {
+      ((CheckingObjectSerializer<T>) _serializer).checkAllFields(obj);
+    }
+
+    public void checkMediaField(T obj)
+    {
+      ((CheckingObjectSerializer<T>) _serializer).checkMediaField(obj);
+    }
+
+    public void checkMediaUri(T obj)
+    {
+      ((CheckingObjectSerializer<T>) _serializer).checkMediaUri(obj);
+    }
+  }
+}
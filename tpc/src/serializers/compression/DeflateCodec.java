@@ -0,0 +1,81 @@
+package serializers.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate (as in gzip and zip, but without the zlib header and checksum,
+ * which transports have anyway) at given level: 1 is fastest, 9 compresses
+ * best, 6 is the zlib default. {@link Deflater} and {@link Inflater} are
+ * reused across calls, as allocating them is costly.
+ */
+public class DeflateCodec implements Codec
+{
+  private final int _level;
+  private final Deflater _deflater;
+  private final Inflater _inflater = new Inflater(true);
+
+  private byte[] _buffer = new byte[1024];
+
+  public DeflateCodec(int level)
+  {
+    _level = level;
+    _deflater = new Deflater(level, true);
+  }
+
+  public String getName()
+  {
+    return "deflate-"+_level;
+  }
+
+  public byte[] compress(byte[] data)
+  {
+    int pos = Codecs.writeLength(_buffer, data.length);
+    _deflater.reset();
+    _deflater.setInput(data);
+    _deflater.finish();
+    while (!_deflater.finished())
+    {
+      if (pos == _buffer.length) {
+        byte[] larger = new byte[_buffer.length * 2];
+        System.arraycopy(_buffer, 0, larger, 0, pos);
+        _buffer = larger;
+      }
+      pos += _deflater.deflate(_buffer, pos, _buffer.length - pos);
+    }
+    byte[] result = new byte[pos];
+    System.arraycopy(_buffer, 0, result, 0, pos);
+    return result;
+  }
+
+  public byte[] decompress(byte[] data) throws IOException
+  {
+    long prefix = Codecs.readLength(data);
+    int offset = (int) prefix;
+    byte[] result = new byte[(int) (prefix >>> 32)];
+    _inflater.reset();
+    _inflater.setInput(data, offset, data.length - offset);
+    try
+    {
+      int pos = 0;
+      while (pos < result.length)
+      {
+        int count = _inflater.inflate(result, pos, result.length - pos);
+        if (count == 0 && (_inflater.finished() || _inflater.needsInput() || _inflater.needsDictionary())) {
+          break;
+        }
+        pos += count;
+      }
+      if (pos != result.length) {
+        throw new IOException("Corrupt compressed data: expected "+result.length+" bytes, got "+pos);
+      }
+    }
+    catch (DataFormatException e)
+    {
+      throw new IOException("Corrupt compressed data: "+e.getMessage());
+    }
+    return result;
+  }
+}
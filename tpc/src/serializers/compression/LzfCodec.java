@@ -0,0 +1,166 @@
+package serializers.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZF (the format of Marc Lehmann's liblzf): byte-oriented LZ77 with a
+ * small hash table and no entropy coding, so it compresses less than
+ * deflate but many times faster, in both directions.
+ *<p>
+ * Data is a sequence of runs, each starting with a control byte: values
+ * below 32 mean that many plus one literal bytes follow; otherwise the top
+ * 3 bits are the match length minus 2 (7 meaning that another byte with the
+ * rest of the length follows), and the low 5 bits plus the next byte are
+ * the distance back to the match minus 1.
+ */
+public class LzfCodec implements Codec
+{
+  private final static int MIN_HASH_LOG = 8, MAX_HASH_LOG = 14;
+  private final static int MAX_LITERAL = 32;
+  private final static int MAX_OFFSET = 8192;
+  private final static int MAX_MATCH = 264;
+
+  /**
+   * Positions (plus one, so that 0 means none) of last occurrence of 3-byte
+   * sequences, by hash. Only as much of it as the input needs is used (and
+   * cleared), since for small inputs clearing all of it would take longer
+   * than compressing.
+   */
+  private final int[] _hashTable = new int[1 << MAX_HASH_LOG];
+
+  private byte[] _buffer = new byte[1024];
+
+  public String getName()
+  {
+    return "lzf";
+  }
+
+  public byte[] compress(byte[] data)
+  {
+    // worst case: a control byte for every 32 literals
+    int maxLength = 5 + data.length + (data.length / MAX_LITERAL) + 1;
+    if (_buffer.length < maxLength) {
+      _buffer = new byte[maxLength];
+    }
+    byte[] out = _buffer;
+    int outPos = Codecs.writeLength(out, data.length);
+    int hashLog = MIN_HASH_LOG;
+    while (hashLog < MAX_HASH_LOG && (1 << hashLog) < data.length)
+      ++hashLog;
+    Arrays.fill(_hashTable, 0, 1 << hashLog, 0);
+
+    int literalStart = outPos++;  // room for control byte of the first literal run
+    int literals = 0;
+    int pos = 0;
+    int end = data.length;
+    while (pos < end - 2)
+    {
+      int hash = hash(data, pos, hashLog);
+      int ref = _hashTable[hash] - 1;
+      _hashTable[hash] = pos + 1;
+      int offset = pos - ref - 1;
+      if (ref >= 0 && offset < MAX_OFFSET
+          && data[ref] == data[pos] && data[ref + 1] == data[pos + 1] && data[ref + 2] == data[pos + 2]) {
+        int maxMatch = Math.min(MAX_MATCH, end - pos);
+        int length = 3;
+        while (length < maxMatch && data[ref + length] == data[pos + length])
+          ++length;
+        // close the literal run (or take back its unused control byte)
+        if (literals > 0) {
+          out[literalStart] = (byte) (literals - 1);
+        } else {
+          --outPos;
+        }
+        int code = length - 2;
+        if (code < 7) {
+          out[outPos++] = (byte) ((code << 5) | (offset >> 8));
+        } else {
+          out[outPos++] = (byte) ((7 << 5) | (offset >> 8));
+          out[outPos++] = (byte) (code - 7);
+        }
+        out[outPos++] = (byte) offset;
+        // index the positions inside the match, so later matches can refer to them
+        int matchEnd = pos + length;
+        for (++pos; pos < matchEnd && pos < end - 2; ++pos)
+          _hashTable[hash(data, pos, hashLog)] = pos + 1;
+        pos = matchEnd;
+        literalStart = outPos++;
+        literals = 0;
+      } else {
+        out[outPos++] = data[pos++];
+        if (++literals == MAX_LITERAL) {
+          out[literalStart] = (byte) (MAX_LITERAL - 1);
+          literalStart = outPos++;
+          literals = 0;
+        }
+      }
+    }
+    while (pos < end)
+    {
+      out[outPos++] = data[pos++];
+      if (++literals == MAX_LITERAL) {
+        out[literalStart] = (byte) (MAX_LITERAL - 1);
+        literalStart = outPos++;
+        literals = 0;
+      }
+    }
+    if (literals > 0) {
+      out[literalStart] = (byte) (literals - 1);
+    } else {
+      --outPos;
+    }
+    byte[] result = new byte[outPos];
+    System.arraycopy(out, 0, result, 0, outPos);
+    return result;
+  }
+
+  private static int hash(byte[] data, int pos, int hashLog)
+  {
+    int v = ((data[pos] & 0xFF) << 16) | ((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF);
+    // multiplicative hashing: top bits of the product mix all three bytes
+    return (int) (((v * 2654435761L) & 0xFFFFFFFFL) >>> (32 - hashLog));
+  }
+
+  public byte[] decompress(byte[] data) throws IOException
+  {
+    long prefix = Codecs.readLength(data);
+    byte[] out = new byte[(int) (prefix >>> 32)];
+    int pos = (int) prefix;
+    int outPos = 0;
+    try
+    {
+      while (pos < data.length)
+      {
+        int ctrl = data[pos++] & 0xFF;
+        if (ctrl < MAX_LITERAL) {
+          int count = ctrl + 1;
+          System.arraycopy(data, pos, out, outPos, count);
+          pos += count;
+          outPos += count;
+        } else {
+          int length = ctrl >> 5;
+          if (length == 7) {
+            length += data[pos++] & 0xFF;
+          }
+          length += 2;
+          int ref = outPos - ((ctrl & 0x1F) << 8) - (data[pos++] & 0xFF) - 1;
+          if (ref < 0) {
+            throw new IOException("Corrupt compressed data: back-reference before start");
+          }
+          // may overlap with what is being written, so byte by byte
+          for (int i = 0; i < length; ++i)
+            out[outPos++] = out[ref++];
+        }
+      }
+    }
+    catch (ArrayIndexOutOfBoundsException e)
+    {
+      throw new IOException("Corrupt compressed data: runs past end");
+    }
+    if (outPos != out.length) {
+      throw new IOException("Corrupt compressed data: expected "+out.length+" bytes, got "+outPos);
+    }
+    return out;
+  }
+}
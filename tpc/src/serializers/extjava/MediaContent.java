@@ -32,6 +32,10 @@ public class MediaContent implements Externalizable {
       return _images.get(i);
    }
 
+   public int imageCount() {
+      return _images.size();
+   }
+
    public Media getMedia() {
       return _media;
    }
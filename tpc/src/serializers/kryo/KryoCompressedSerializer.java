@@ -1,8 +1,6 @@
 
 package serializers.kryo;
 
-import serializers.java.MediaContent;
-
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.compress.DeflateCompressor;
 
@@ -1,24 +1,33 @@
 
 package serializers.kryo;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
-import serializers.ObjectSerializer;
+import serializers.ByteBufferDeserializer;
+import serializers.ByteBufferInputStream;
+import serializers.CheckingObjectSerializer;
+import serializers.OutputStreamSerializer;
+import serializers.ReusingDeserializer;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.ObjectBuffer;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.serialize.FieldSerializer;
 
 /**
  * This is the most basic Kryo usage. Just register the classes and go.
  */
-public class KryoSerializer implements ObjectSerializer<MediaContent> {
+public class KryoSerializer implements OutputStreamSerializer<MediaContent>, ByteBufferDeserializer<MediaContent>,
+	ReusingDeserializer<MediaContent>, CheckingObjectSerializer<MediaContent> {
 	protected Kryo kryo;
 	protected ObjectBuffer objectBuffer;
 
 	public KryoSerializer () {
 		kryo = new Kryo();
 		kryo.register(ArrayList.class);
-		kryo.register(MediaContent.class);
+		kryo.register(MediaContent.class, new ReusingFieldSerializer(kryo, MediaContent.class));
 		kryo.register(Media.Player.class);
 		kryo.register(Media.class);
 		kryo.register(Image.Size.class);
@@ -34,10 +43,31 @@ public class KryoSerializer implements ObjectSerializer<MediaContent> {
 		return objectBuffer.readObjectData(array, MediaContent.class);
 	}
 
+	public MediaContent deserialize (ByteBuffer buffer, int offset, int length) throws Exception {
+		// Kryo reads from buffers natively, starting at their position
+		return kryo.readObjectData(ByteBufferInputStream.slice(buffer, offset, length), MediaContent.class);
+	}
+
+	/**
+	 * Reads fields into the existing content; media and images are still new objects. Falls back to a new content if
+	 * the serializer of MediaContent has been replaced (as by compression).
+	 */
+	public MediaContent deserialize (byte[] array, MediaContent reuse) throws Exception {
+		Serializer serializer = kryo.getRegisteredClass(MediaContent.class).getSerializer();
+		if (reuse == null || !(serializer instanceof ReusingFieldSerializer)) {
+			return deserialize(array);
+		}
+		return ((ReusingFieldSerializer)serializer).readObjectData(reuse, ByteBuffer.wrap(array));
+	}
+
 	public byte[] serialize (MediaContent content) throws Exception {
 		return objectBuffer.writeObjectData(content);
 	}
 
+	public void serialize (MediaContent content, OutputStream out) throws Exception {
+		objectBuffer.writeObjectData(out, content);
+	}
+
 	public final MediaContent create () throws Exception {
 		Media media = new Media(null, "video/mpg4", Media.Player.JAVA, "Javaone Keynote", "http://javaone.com/keynote.mpg",
 			1234567, 123, 0, 0, 0);
@@ -48,4 +78,60 @@ public class KryoSerializer implements ObjectSerializer<MediaContent> {
 		content.addImage(new Image(0, "Javaone Keynote", "http://javaone.com/keynote_thumbnail.jpg", 0, Image.Size.SMALL));
 		return content;
 	}
+
+	public void checkAllFields (MediaContent content) {
+		checkMediaField(content);
+		assetEquals(2, content.imageCount());
+
+		Image image = content.getImage(0);
+		assetEquals(image.getUri(), "http://javaone.com/keynote_large.jpg");
+		assetEquals(image.getSize(), Image.Size.LARGE);
+		assetEquals(image.getTitle(), "Javaone Keynote");
+		assetEquals(image.getWidth(), 0);
+		assetEquals(image.getHeight(), 0);
+
+		image = content.getImage(1);
+		assetEquals(image.getUri(), "http://javaone.com/keynote_thumbnail.jpg");
+		assetEquals(image.getSize(), Image.Size.SMALL);
+		assetEquals(image.getTitle(), "Javaone Keynote");
+		assetEquals(image.getWidth(), 0);
+		assetEquals(image.getHeight(), 0);
+	}
+
+	public void checkMediaField (MediaContent content) {
+		Media media = content.getMedia();
+		assetEquals(media.getUri(), "http://javaone.com/keynote.mpg");
+		assetEquals(media.getFormat(), "video/mpg4");
+		assetEquals(media.getTitle(), "Javaone Keynote");
+		assetEquals(media.getDuration(), 1234567L);
+		assetEquals(media.getSize(), 123L);
+		assetEquals(media.getBitrate(), 0);
+		assetEquals(media.getPlayer(), Media.Player.JAVA);
+		assetEquals(media.getWidth(), 0);
+		assetEquals(media.getHeight(), 0);
+	}
+
+	public void checkMediaUri (MediaContent content) {
+		assetEquals(content.getMedia().getUri(), "http://javaone.com/keynote.mpg");
+	}
+
+	static private void assetEquals (Object expected, Object actual) {
+		if (!expected.equals(actual)) {
+			throw new RuntimeException("" + expected + "!=" + actual);
+		}
+	}
+
+	/**
+	 * FieldSerializer can read into an existing object, but only lets subclasses do so.
+	 */
+	static class ReusingFieldSerializer extends FieldSerializer {
+		ReusingFieldSerializer (Kryo kryo, Class<?> type) {
+			super(kryo, type);
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> T readObjectData (T object, ByteBuffer buffer) {
+			return readObjectData(object, buffer, (Class<T>)object.getClass());
+		}
+	}
 }
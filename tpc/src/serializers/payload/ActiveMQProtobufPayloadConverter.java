@@ -0,0 +1,44 @@
+package serializers.payload;
+
+import serializers.activemq.protobuf.MediaContentHolder;
+import serializers.activemq.protobuf.MediaContentHolder.Image.ImageBean;
+import serializers.activemq.protobuf.MediaContentHolder.Media.MediaBean;
+import serializers.activemq.protobuf.MediaContentHolder.MediaContent.MediaContentBean;
+import serializers.java.Image;
+import serializers.java.Media;
+
+public class ActiveMQProtobufPayloadConverter implements PayloadConverter<MediaContentHolder.MediaContent>
+{
+  public MediaContentHolder.MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    MediaBean mb = new MediaBean()
+      .setUri(media.getUri())
+      .setFormat(media.getFormat())
+      .setTitle(media.getTitle())
+      .setDuration(media.getDuration())
+      .setSize(media.getSize())
+      .setBitrate(media.getBitrate())
+      // media.proto gives FLASH the same number as JAVA, so both are JAVA on the wire
+      .setPlayer(MediaContentHolder.Media.Player.JAVA)
+      .setWidth(media.getWidth())
+      .setHeight(media.getHeight());
+    if (media.getCopyright() != null) {
+      mb.setCopyright(media.getCopyright());
+    }
+    for (String person : media.getPersons())
+      mb.addPerson(person);
+
+    MediaContentBean cb = new MediaContentBean().setMedia(mb);
+    for (Image image : content.getImages())
+    {
+      cb.addImage(new ImageBean()
+                  .setUri(image.getUri())
+                  .setSize(MediaContentHolder.Image.Size.valueOf(image.getSize().name()))
+                  .setTitle(image.getTitle())
+                  .setWidth(image.getWidth())
+                  .setHeight(image.getHeight()));
+    }
+    return cb.freeze();
+  }
+}
@@ -0,0 +1,54 @@
+package serializers.payload;
+
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+import serializers.avro.AvroGenericSerializer;
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Enums are stored as ordinals, as avro 1.2 schemas here use plain ints
+ * for them.
+ */
+public class AvroGenericPayloadConverter implements PayloadConverter<GenericRecord>
+{
+  public GenericRecord convert(MediaContent content)
+  {
+    Media media = content.getMedia();
+    GenericRecord gm = new GenericData.Record(AvroGenericSerializer.MEDIA_SCHEMA);
+    gm.put("uri", new Utf8(media.getUri()));
+    gm.put("format", new Utf8(media.getFormat()));
+    gm.put("title", new Utf8(media.getTitle()));
+    gm.put("duration", media.getDuration());
+    gm.put("bitrate", media.getBitrate());
+    GenericData.Array<Utf8> persons = new GenericData.Array<Utf8>(media.getPersons().size(), null);
+    for (String person : media.getPersons())
+      persons.add(new Utf8(person));
+    gm.put("person", persons);
+    gm.put("player", media.getPlayer().ordinal());
+    gm.put("height", media.getHeight());
+    gm.put("width", media.getWidth());
+    gm.put("size", media.getSize());
+    gm.put("copyright", (media.getCopyright() == null) ? new Utf8() : new Utf8(media.getCopyright()));
+
+    GenericData.Array<GenericRecord> images = new GenericData.Array<GenericRecord>(content.imageCount(), null);
+    for (Image image : content.getImages())
+    {
+      GenericRecord gi = new GenericData.Record(AvroGenericSerializer.IMAGE_SCHEMA);
+      gi.put("uri", new Utf8(image.getUri()));
+      gi.put("width", image.getWidth());
+      gi.put("height", image.getHeight());
+      gi.put("size", image.getSize().ordinal());
+      gi.put("title", new Utf8(image.getTitle()));
+      images.add(gi);
+    }
+
+    GenericRecord gc = new GenericData.Record(AvroGenericSerializer.MEDIA_CONTENT_SCHEMA);
+    gc.put("media", gm);
+    gc.put("image", images);
+    return gc;
+  }
+}
@@ -0,0 +1,36 @@
+package serializers.payload;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.extjava.MediaContent;
+
+public class ExtJavaPayloadConverter implements PayloadConverter<MediaContent>
+{
+  public MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    serializers.extjava.Media em = new serializers.extjava.Media(media.getCopyright(),
+                                                                 media.getFormat(),
+                                                                 serializers.extjava.Media.Player.valueOf(media.getPlayer().name()),
+                                                                 media.getTitle(),
+                                                                 media.getUri(),
+                                                                 media.getDuration(),
+                                                                 media.getSize(),
+                                                                 media.getHeight(),
+                                                                 media.getWidth(),
+                                                                 media.getBitrate());
+    for (String person : media.getPersons())
+      em.addToPerson(person);
+
+    MediaContent ec = new MediaContent(em);
+    for (Image image : content.getImages())
+    {
+      ec.addImage(new serializers.extjava.Image(image.getHeight(),
+                                                image.getTitle(),
+                                                image.getUri(),
+                                                image.getWidth(),
+                                                serializers.extjava.Image.Size.valueOf(image.getSize().name())));
+    }
+    return ec;
+  }
+}
@@ -0,0 +1,36 @@
+package serializers.payload;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.kryo.MediaContent;
+
+public class KryoPayloadConverter implements PayloadConverter<MediaContent>
+{
+  public MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    serializers.kryo.Media km = new serializers.kryo.Media(media.getCopyright(),
+                                                           media.getFormat(),
+                                                           serializers.kryo.Media.Player.valueOf(media.getPlayer().name()),
+                                                           media.getTitle(),
+                                                           media.getUri(),
+                                                           media.getDuration(),
+                                                           media.getSize(),
+                                                           media.getHeight(),
+                                                           media.getWidth(),
+                                                           media.getBitrate());
+    for (String person : media.getPersons())
+      km.addToPerson(person);
+
+    MediaContent kc = new MediaContent(km);
+    for (Image image : content.getImages())
+    {
+      kc.addImage(new serializers.kryo.Image(image.getHeight(),
+                                             image.getTitle(),
+                                             image.getUri(),
+                                             image.getWidth(),
+                                             serializers.kryo.Image.Size.valueOf(image.getSize().name())));
+    }
+    return kc;
+  }
+}
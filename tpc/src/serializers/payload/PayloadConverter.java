@@ -0,0 +1,13 @@
+package serializers.payload;
+
+import serializers.java.MediaContent;
+
+/**
+ * Converts a generated {@link MediaContent} into the equivalent object of
+ * another data model, so that the same payload can be fed to serializers
+ * that work on generated or hand-written classes of their own.
+ */
+public interface PayloadConverter<T>
+{
+    public T convert(MediaContent content);
+}
@@ -0,0 +1,56 @@
+package serializers.payload;
+
+import org.apache.avro.generic.GenericRecord;
+
+import serializers.avro.specific.AvroSpecificPayloadConverter;
+import serializers.java.MediaContent;
+
+/**
+ * Finds the {@link PayloadConverter} for the data model a serializer works
+ * with, based on a sample object (as returned by its <code>create()</code>).
+ */
+public class PayloadConverters
+{
+  private final static PayloadConverter<MediaContent> JAVA = new PayloadConverter<MediaContent>() {
+    public MediaContent convert(MediaContent content)
+    {
+      return content;
+    }
+  };
+
+  /**
+   * @return Converter to the model of given object; or null if there is none
+   */
+  public static PayloadConverter<?> converterFor(Object sample)
+  {
+    if (sample instanceof MediaContent) {
+      return JAVA;
+    }
+    if (sample instanceof serializers.protobuf.MediaContentHolder.MediaContent) {
+      return new ProtobufPayloadConverter();
+    }
+    if (sample instanceof serializers.activemq.protobuf.MediaContentHolder.MediaContent) {
+      return new ActiveMQProtobufPayloadConverter();
+    }
+    if (sample instanceof serializers.thrift.MediaContent) {
+      return new ThriftPayloadConverter();
+    }
+    // specific records are generic records too, so check them first
+    if (sample instanceof serializers.avro.specific.MediaContent) {
+      return new AvroSpecificPayloadConverter();
+    }
+    if (sample instanceof GenericRecord) {
+      return new AvroGenericPayloadConverter();
+    }
+    if (sample instanceof serializers.kryo.MediaContent) {
+      return new KryoPayloadConverter();
+    }
+    if (sample instanceof serializers.extjava.MediaContent) {
+      return new ExtJavaPayloadConverter();
+    }
+    if (sample instanceof serializers.scala.MediaContent) {
+      return new ScalaPayloadConverter();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,104 @@
+package serializers.payload;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.java.MediaContent;
+
+/**
+ * Generates {@link MediaContent} instances of configurable shape, as opposed
+ * to the single fixed two-image document that the serializers'
+ * <code>create()</code> methods build. Content is pseudo-random but fully
+ * determined by the seed, so every call to {@link #generate} (and every
+ * run) produces the same document for the same parameters; use a
+ * {@link PayloadConverter} to get the equivalent object for other models.
+ */
+public class PayloadGenerator
+{
+  public final static long DEFAULT_SEED = 0x5eed1e55L;
+
+  private final static char[] CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_-./".toCharArray();
+
+  final long seed;
+  final int imageCount;
+  final int personCount;
+  final int stringLength;
+  final long numericMagnitude;
+
+  /**
+   * @param imageCount Number of images in the document
+   * @param personCount Number of persons in the media part
+   * @param stringLength Length of the uri, title and person strings
+   * @param numericMagnitude Exclusive upper bound for numeric fields (for
+   *   <code>int</code> fields capped at <code>Integer.MAX_VALUE</code>)
+   */
+  public PayloadGenerator(long seed, int imageCount, int personCount, int stringLength, long numericMagnitude)
+  {
+    this.seed = seed;
+    this.imageCount = imageCount;
+    this.personCount = personCount;
+    this.stringLength = stringLength;
+    this.numericMagnitude = numericMagnitude;
+  }
+
+  public PayloadGenerator(int imageCount, int personCount, int stringLength, long numericMagnitude)
+  {
+    this(DEFAULT_SEED, imageCount, personCount, stringLength, numericMagnitude);
+  }
+
+  public MediaContent generate()
+  {
+    Random rnd = new Random(seed);
+    Media media = new Media(null,
+                            "video/" + string(rnd, 4),
+                            Media.Player.values()[rnd.nextInt(Media.Player.values().length)],
+                            string(rnd, stringLength),
+                            "http://" + string(rnd, stringLength),
+                            number(rnd),
+                            number(rnd),
+                            intNumber(rnd),
+                            intNumber(rnd),
+                            intNumber(rnd));
+    media.setPersons(new ArrayList<String>(personCount));
+    for (int i = 0; i < personCount; ++i)
+      media.addToPerson(string(rnd, stringLength));
+
+    MediaContent content = new MediaContent(media);
+    content.setImages(new ArrayList<Image>(imageCount));
+    for (int i = 0; i < imageCount; ++i)
+    {
+      content.addImage(new Image(intNumber(rnd),
+                                 string(rnd, stringLength),
+                                 "http://" + string(rnd, stringLength),
+                                 intNumber(rnd),
+                                 Image.Size.values()[rnd.nextInt(Image.Size.values().length)]));
+    }
+    return content;
+  }
+
+  public String toString()
+  {
+    return "images="+imageCount+", persons="+personCount+", strings="+stringLength+", numbers<"+numericMagnitude+", seed="+seed;
+  }
+
+  private String string(Random rnd, int length)
+  {
+    char[] c = new char[length];
+    for (int i = 0; i < length; ++i)
+      c[i] = CHARS[rnd.nextInt(CHARS.length)];
+    return new String(c);
+  }
+
+  private long number(Random rnd)
+  {
+    // nextLong() % n is not uniform, but close enough for sizing purposes
+    return Math.abs(rnd.nextLong() % numericMagnitude);
+  }
+
+  private int intNumber(Random rnd)
+  {
+    return (int) Math.min(number(rnd), Integer.MAX_VALUE);
+  }
+}
@@ -0,0 +1,42 @@
+package serializers.payload;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.protobuf.MediaContentHolder;
+
+public class ProtobufPayloadConverter implements PayloadConverter<MediaContentHolder.MediaContent>
+{
+  public MediaContentHolder.MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    MediaContentHolder.Media.Builder mb = MediaContentHolder.Media.newBuilder()
+      .setFormat(media.getFormat())
+      // media.proto gives FLASH the same number as JAVA, so both are JAVA on the wire
+      .setPlayer(MediaContentHolder.Media.Player.JAVA)
+      .setTitle(media.getTitle())
+      .setUri(media.getUri())
+      .setDuration(media.getDuration())
+      .setSize(media.getSize())
+      .setHeight(media.getHeight())
+      .setWidth(media.getWidth())
+      .setBitrate(media.getBitrate());
+    if (media.getCopyright() != null) {
+      mb.setCopyright(media.getCopyright());
+    }
+    for (String person : media.getPersons())
+      mb.addPerson(person);
+
+    MediaContentHolder.MediaContent.Builder cb = MediaContentHolder.MediaContent.newBuilder().setMedia(mb.build());
+    for (Image image : content.getImages())
+    {
+      cb.addImage(MediaContentHolder.Image.newBuilder()
+                  .setHeight(image.getHeight())
+                  .setTitle(image.getTitle())
+                  .setUri(image.getUri())
+                  .setWidth(image.getWidth())
+                  .setSize(MediaContentHolder.Image.Size.valueOf(image.getSize().name()))
+                  .build());
+    }
+    return cb.build();
+  }
+}
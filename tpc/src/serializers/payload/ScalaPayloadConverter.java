@@ -0,0 +1,39 @@
+package serializers.payload;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.scala.MediaContent;
+import serializers.scala.Player;
+import serializers.scala.Size;
+
+public class ScalaPayloadConverter implements PayloadConverter<MediaContent>
+{
+  public MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    serializers.scala.Media sm = new serializers.scala.Media(media.getUri(),
+                                                             media.getTitle(),
+                                                             media.getWidth(),
+                                                             media.getHeight(),
+                                                             media.getFormat(),
+                                                             media.getDuration(),
+                                                             media.getSize(),
+                                                             media.getBitrate(),
+                                                             media.getPlayer() == Media.Player.JAVA ? Player.JAVA() : Player.FLASH());
+    // Scala model prepends, so add in reverse to keep the order
+    for (int i = media.getPersons().size(); --i >= 0; )
+      sm.addPerson(media.getPersons().get(i));
+
+    MediaContent sc = new MediaContent(sm);
+    for (int i = content.imageCount(); --i >= 0; )
+    {
+      Image image = content.getImage(i);
+      sc.addImage(new serializers.scala.Image(image.getUri(),
+                                              image.getTitle(),
+                                              image.getWidth(),
+                                              image.getHeight(),
+                                              image.getSize() == Image.Size.SMALL ? Size.SMALL() : Size.LARGE()));
+    }
+    return sc;
+  }
+}
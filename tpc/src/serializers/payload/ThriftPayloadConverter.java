@@ -0,0 +1,42 @@
+package serializers.payload;
+
+import serializers.java.Image;
+import serializers.java.Media;
+import serializers.thrift.MediaContent;
+import serializers.thrift.Player;
+import serializers.thrift.Size;
+
+public class ThriftPayloadConverter implements PayloadConverter<MediaContent>
+{
+  public MediaContent convert(serializers.java.MediaContent content)
+  {
+    Media media = content.getMedia();
+    serializers.thrift.Media tm = new serializers.thrift.Media();
+    tm.setUri(media.getUri());
+    tm.setFormat(media.getFormat());
+    tm.setTitle(media.getTitle());
+    tm.setDuration(media.getDuration());
+    tm.setBitrate(media.getBitrate());
+    tm.setSize(media.getSize());
+    tm.setWidth(media.getWidth());
+    tm.setHeight(media.getHeight());
+    for (String person : media.getPersons())
+      tm.addToPerson(person);
+    tm.setPlayer(media.getPlayer() == Media.Player.JAVA ? Player.JAVA : Player.FLASH);
+    if (media.getCopyright() != null) {
+      tm.setCopyright(media.getCopyright());
+    }
+
+    MediaContent tc = new MediaContent();
+    tc.setMedia(tm);
+    for (Image image : content.getImages())
+    {
+      tc.addToImage(new serializers.thrift.Image(image.getUri(),
+                                                 image.getTitle(),
+                                                 image.getWidth(),
+                                                 image.getHeight(),
+                                                 image.getSize() == Image.Size.SMALL ? Size.SMALL : Size.LARGE));
+    }
+    return tc;
+  }
+}